@@ -0,0 +1,86 @@
+package org.cqframework.cql.cql2elm;
+
+import org.antlr.v4.runtime.CharStream;
+import org.hl7.elm.r1.VersionedIdentifier;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A library source provider that keeps the sources provided by another provider in memory. The source of a library is
+ * read from the underlying provider the first time it is requested, and is then provided from memory, decoded, so that
+ * services translating the same libraries repeatedly neither read nor decode their sources again.
+ *
+ * Sources are kept until they are cleared, so the underlying provider should provide sources that do not change while
+ * they are cached. The underlying provider is only asked for the first request for each library, so it should not
+ * depend on the context of the request (e.g. on the namespaces of the translation, see NamespaceAware) or modify the
+ * library identifier it is given. Libraries the underlying provider has no source for are not cached.
+ */
+public class CachingLibrarySourceProvider implements CharStreamLibrarySourceProvider {
+    private final LibrarySourceProvider provider;
+    private final Map<String, LibrarySourceContent> sources = new ConcurrentHashMap<>();
+
+    public CachingLibrarySourceProvider(LibrarySourceProvider provider) {
+        if (provider == null) {
+            throw new IllegalArgumentException("provider is null.");
+        }
+
+        this.provider = provider;
+    }
+
+    private static String getKey(VersionedIdentifier libraryIdentifier) {
+        String libraryPath = NamespaceManager.getPath(libraryIdentifier.getSystem(), libraryIdentifier.getId());
+        return libraryIdentifier.getVersion() != null ? libraryPath + "|" + libraryIdentifier.getVersion() : libraryPath;
+    }
+
+    private LibrarySourceContent getContent(VersionedIdentifier libraryIdentifier) {
+        String key = getKey(libraryIdentifier);
+        LibrarySourceContent result = sources.get(key);
+        if (result == null) {
+            InputStream source = provider.getLibrarySource(libraryIdentifier);
+            if (source == null) {
+                return null;
+            }
+
+            try {
+                result = LibrarySourceContent.read(source);
+            }
+            catch (IOException e) {
+                throw new IllegalArgumentException(String.format("Could not load source for library %s, version %s.",
+                        libraryIdentifier.getId(), libraryIdentifier.getVersion()), e);
+            }
+
+            LibrarySourceContent existing = sources.putIfAbsent(key, result);
+            if (existing != null) {
+                result = existing;
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public InputStream getLibrarySource(VersionedIdentifier libraryIdentifier) {
+        LibrarySourceContent content = getContent(libraryIdentifier);
+        return content != null ? content.openStream() : null;
+    }
+
+    @Override
+    public CharStream getLibraryCharStream(VersionedIdentifier libraryIdentifier) {
+        LibrarySourceContent content = getContent(libraryIdentifier);
+        return content != null ? content.openCharStream() : null;
+    }
+
+    // Libraries that are not cached are looked up without reading their source
+    @Override
+    public boolean hasLibrarySource(VersionedIdentifier libraryIdentifier) {
+        return sources.containsKey(getKey(libraryIdentifier)) || provider.hasLibrarySource(libraryIdentifier);
+    }
+
+    // Clears the cached sources, the sources of libraries requested after this are read from the underlying provider again
+    public void clear() {
+        sources.clear();
+    }
+}
@@ -0,0 +1,15 @@
+package org.cqframework.cql.cql2elm;
+
+import org.antlr.v4.runtime.CharStream;
+import org.hl7.elm.r1.VersionedIdentifier;
+
+/**
+ * A library source provider that can provide the source of a library as a CharStream, ready to be translated. Library
+ * managers use getLibraryCharStream rather than getLibrarySource to obtain the source of the libraries they translate,
+ * so a provider that keeps library sources in memory can provide them without reading or decoding them again.
+ *
+ * A new CharStream must be returned for each request, a CharStream is consumed by the translation it is given to.
+ */
+public interface CharStreamLibrarySourceProvider extends LibrarySourceProvider {
+    CharStream getLibraryCharStream(VersionedIdentifier libraryIdentifier);
+}
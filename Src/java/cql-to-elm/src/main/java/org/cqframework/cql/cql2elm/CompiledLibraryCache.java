@@ -0,0 +1,15 @@
+package org.cqframework.cql.cql2elm;
+
+/**
+ * A persistent cache of compiled libraries, used by the LibraryManager to avoid translating included libraries whose
+ * source has not changed. Entries are opaque content keyed by a hash of the library source, the translator version and
+ * the translator options.
+ *
+ * Implementations must be safe to use from multiple threads, and a put must never expose a partially written entry to
+ * a concurrent get. Failures are not reported, a cache that cannot read or write an entry behaves as a cache miss.
+ */
+public interface CompiledLibraryCache {
+    byte[] get(String key);
+
+    void put(String key, byte[] content);
+}
@@ -0,0 +1,538 @@
+package org.cqframework.cql.cql2elm;
+
+import org.cqframework.cql.cql2elm.model.Model;
+import org.cqframework.cql.cql2elm.model.TranslatedLibrary;
+import org.cqframework.cql.elm.tracking.TrackBack;
+import org.hl7.cql.model.*;
+import org.hl7.elm.r1.*;
+import org.hl7.elm_modelinfo.r1.ModelInfo;
+
+import javax.xml.bind.DataBindingException;
+import javax.xml.bind.JAXB;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.transform.stream.StreamSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/*
+Reads and writes the entries of a CompiledLibraryCache.
+
+An entry is a header (MAGIC, VERSION), followed by:
+    the messages reported by the translation of the library
+    the cache keys of the included libraries the library was translated against
+    the model keys of the models the library was translated against (see getModelKey)
+    the ELM of the library, as XML
+    the result types of the definitions of the library (parameters, code systems, value sets, codes, concepts and
+    statements, in that order), and of the operands of its functions
+
+The result types are what the ELM alone does not carry: they are needed to resolve references to the library from
+other libraries, and to register its functions as operators.
+
+Entry keys are a SHA-256 hash of the entry format version, the translator version, the library path, the translator
+options and the library source. The models a library uses are only known once it is translated, so they cannot be part
+of the key of its entry. Instead, the entry keeps the model keys of the models it uses, and it is not read if any of
+those models now has a different key.
+ */
+class CompiledLibraryFormat {
+    private static final int MAGIC = 0x43514c43; // "CQLC"
+    private static final int VERSION = 2;
+
+    private static final int NULL_TYPE = 0;
+    private static final int NAMED_TYPE = 1;
+    private static final int LIST_TYPE = 2;
+    private static final int INTERVAL_TYPE = 3;
+    private static final int TUPLE_TYPE = 4;
+    private static final int CHOICE_TYPE = 5;
+
+    private static final String TRANSLATOR_VERSION = getTranslatorVersion();
+
+    // Model keys by model, models do not change once they are built
+    private static final Map<Model, String> modelKeys = Collections.synchronizedMap(new WeakHashMap<>());
+
+    static class Entry {
+        private final TranslatedLibrary library;
+        private final List<CqlTranslatorException> messages;
+        private final Map<String, String> dependencyKeys;
+
+        Entry(TranslatedLibrary library, List<CqlTranslatorException> messages, Map<String, String> dependencyKeys) {
+            this.library = library;
+            this.messages = messages;
+            this.dependencyKeys = dependencyKeys;
+        }
+
+        TranslatedLibrary getLibrary() {
+            return library;
+        }
+
+        List<CqlTranslatorException> getMessages() {
+            return messages;
+        }
+
+        /*
+        The cache keys of the included libraries, by library path
+         */
+        Map<String, String> getDependencyKeys() {
+            return dependencyKeys;
+        }
+    }
+
+    /*
+    The implementation version alone does not identify a snapshot build, so the time the translator classes were built
+    is included as well.
+     */
+    private static String getTranslatorVersion() {
+        long lastModified = 0;
+        try {
+            URL url = CqlTranslator.class.getResource("CqlTranslator.class");
+            if (url != null) {
+                lastModified = url.openConnection().getLastModified();
+            }
+        }
+        catch (IOException e) {
+            // Use the implementation version only
+        }
+
+        return String.format("%s/%d", CqlTranslator.class.getPackage().getImplementationVersion(), lastModified);
+    }
+
+    private static MessageDigest getDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] hash) {
+        StringBuilder result = new StringBuilder();
+        for (byte b : hash) {
+            result.append(String.format("%02x", b));
+        }
+        return result.toString();
+    }
+
+    static String getKey(String libraryPath, byte[] source, CqlTranslatorOptions options, boolean validatesUnits) {
+        MessageDigest digest = getDigest();
+        try (DataOutputStream out = new DataOutputStream(new DigestOutputStream(new NullOutputStream(), digest))) {
+            out.writeInt(VERSION);
+            out.writeUTF(TRANSLATOR_VERSION);
+            out.writeUTF(libraryPath);
+            out.writeUTF(getOptionsKey(options, validatesUnits));
+            out.write(source);
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return toHex(digest.digest());
+    }
+
+    /*
+    Returns a SHA-256 hash of the name, URL and version of the model info of the given model, and of its content, so
+    that a model info that changes without a change of version, or that is provided by another provider, has another key.
+     */
+    static String getModelKey(Model model) {
+        String result = modelKeys.get(model);
+        if (result == null) {
+            ModelInfo modelInfo = model.getModelInfo();
+            MessageDigest digest = getDigest();
+            try (DataOutputStream out = new DataOutputStream(new DigestOutputStream(new NullOutputStream(), digest))) {
+                writeString(out, modelInfo.getName());
+                writeString(out, modelInfo.getUrl());
+                writeString(out, modelInfo.getVersion());
+                JAXB.marshal(modelInfo, out);
+            }
+            catch (IOException | DataBindingException e) {
+                throw new IllegalArgumentException(String.format("Could not compute the key of model %s.", modelInfo.getName()), e);
+            }
+
+            result = toHex(digest.digest());
+            modelKeys.put(model, result);
+        }
+
+        return result;
+    }
+
+    private static String getOptionsKey(CqlTranslatorOptions options, boolean validatesUnits) {
+        if (options == null) {
+            return "";
+        }
+
+        return String.format("%s;%s;%s;%s;%s;%s;%s", options.toString(), options.getCompatibilityLevel(),
+                options.getErrorLevel(), options.getSignatureLevel(), validatesUnits,
+                options.getAnalyzeDataRequirements(), options.getCollapseDataRequirements());
+    }
+
+    private static class NullOutputStream extends OutputStream {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+
+    private static List<Element> getDefinitions(Library library) {
+        List<Element> result = new ArrayList<>();
+        if (library.getParameters() != null) {
+            result.addAll(library.getParameters().getDef());
+        }
+        if (library.getCodeSystems() != null) {
+            result.addAll(library.getCodeSystems().getDef());
+        }
+        if (library.getValueSets() != null) {
+            result.addAll(library.getValueSets().getDef());
+        }
+        if (library.getCodes() != null) {
+            result.addAll(library.getCodes().getDef());
+        }
+        if (library.getConcepts() != null) {
+            result.addAll(library.getConcepts().getDef());
+        }
+        if (library.getStatements() != null) {
+            result.addAll(library.getStatements().getDef());
+        }
+        return result;
+    }
+
+    /*
+    Returns the entry for the given translated library, or throws IllegalArgumentException if the library cannot be
+    represented, for example because it declares conversions (translated libraries currently never do).
+     */
+    static byte[] write(TranslatedLibrary library, List<CqlTranslatorException> messages, Map<String, String> dependencyKeys,
+                        ModelManager modelManager) throws IOException {
+        if (library.getConversions().iterator().hasNext()) {
+            throw new IllegalArgumentException(String.format("Library %s declares conversions.", library.getIdentifier().getId()));
+        }
+
+        // The types are written first to find the models they belong to, the library may use models it does not declare
+        // through the libraries it includes
+        Set<String> modelNames = new LinkedHashSet<>();
+        if (library.getLibrary().getUsings() != null) {
+            for (UsingDef usingDef : library.getLibrary().getUsings().getDef()) {
+                modelNames.add(usingDef.getLocalIdentifier());
+            }
+        }
+
+        ByteArrayOutputStream types = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(types)) {
+            for (Element definition : getDefinitions(library.getLibrary())) {
+                writeType(out, definition.getResultType(), modelNames);
+                if (definition instanceof FunctionDef) {
+                    List<OperandDef> operands = ((FunctionDef)definition).getOperand();
+                    out.writeInt(operands.size());
+                    for (OperandDef operand : operands) {
+                        writeType(out, operand.getResultType(), modelNames);
+                    }
+                }
+            }
+        }
+
+        LibraryModels models = new LibraryModels(library.getLibrary(), modelManager);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            out.writeInt(messages.size());
+            for (CqlTranslatorException message : messages) {
+                writeMessage(out, message);
+            }
+
+            out.writeInt(dependencyKeys.size());
+            for (Map.Entry<String, String> dependency : dependencyKeys.entrySet()) {
+                writeString(out, dependency.getKey());
+                writeString(out, dependency.getValue());
+            }
+
+            out.writeInt(modelNames.size());
+            for (String modelName : modelNames) {
+                writeString(out, modelName);
+                writeString(out, getModelKey(models.getModel(modelName)));
+            }
+
+            ByteArrayOutputStream elm = new ByteArrayOutputStream();
+            try {
+                Marshaller marshaller = CqlTranslator.getJaxbContext().createMarshaller();
+                marshaller.marshal(new ObjectFactory().createLibrary(library.getLibrary()), elm);
+            }
+            catch (JAXBException e) {
+                throw new IOException("Could not write library ELM.", e);
+            }
+            out.writeInt(elm.size());
+            elm.writeTo(out);
+
+            types.writeTo(out);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /*
+    Reads an entry, resolving the types of its definitions in the given model manager. Throws IOException if the
+    content is not a valid entry, or if it was translated against models that differ from those of the model manager.
+     */
+    static Entry read(byte[] content, ModelManager modelManager) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(content))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Content is not a compiled library.");
+            }
+
+            int messageCount = in.readInt();
+            List<CqlTranslatorException> messages = new ArrayList<>(messageCount);
+            for (int i = 0; i < messageCount; i++) {
+                messages.add(readMessage(in));
+            }
+
+            int dependencyCount = in.readInt();
+            Map<String, String> dependencyKeys = new LinkedHashMap<>();
+            for (int i = 0; i < dependencyCount; i++) {
+                dependencyKeys.put(readString(in), readString(in));
+            }
+
+            int modelCount = in.readInt();
+            Map<String, String> modelKeys = new LinkedHashMap<>();
+            for (int i = 0; i < modelCount; i++) {
+                modelKeys.put(readString(in), readString(in));
+            }
+
+            byte[] elm = new byte[in.readInt()];
+            in.readFully(elm);
+            Library library;
+            try {
+                library = CqlTranslator.getJaxbContext().createUnmarshaller()
+                        .unmarshal(new StreamSource(new ByteArrayInputStream(elm)), Library.class).getValue();
+            }
+            catch (JAXBException e) {
+                throw new IOException("Could not read library ELM.", e);
+            }
+
+            LibraryModels models = new LibraryModels(library, modelManager);
+            for (Map.Entry<String, String> modelKey : modelKeys.entrySet()) {
+                if (!modelKey.getValue().equals(getModelKey(models.getModel(modelKey.getKey())))) {
+                    throw new IOException(String.format("Compiled library was translated against different model information for model %s.", modelKey.getKey()));
+                }
+            }
+
+            TypeReader typeReader = new TypeReader(in, models);
+            for (Element definition : getDefinitions(library)) {
+                definition.setResultType(typeReader.readType());
+                if (definition instanceof FunctionDef) {
+                    List<OperandDef> operands = ((FunctionDef)definition).getOperand();
+                    if (in.readInt() != operands.size()) {
+                        throw new IOException("Compiled library types do not match the library.");
+                    }
+                    for (OperandDef operand : operands) {
+                        operand.setResultType(typeReader.readType());
+                    }
+                }
+            }
+
+            return new Entry(new TranslatedLibraryLoader(modelManager).load(library), messages, dependencyKeys);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeMessage(DataOutputStream out, CqlTranslatorException message) throws IOException {
+        writeString(out, message.getSeverity().name());
+        writeString(out, message.getMessage());
+        TrackBack locator = message.getLocator();
+        out.writeBoolean(locator != null);
+        if (locator != null) {
+            VersionedIdentifier library = locator.getLibrary();
+            writeString(out, library != null ? library.getSystem() : null);
+            writeString(out, library != null ? library.getId() : null);
+            writeString(out, library != null ? library.getVersion() : null);
+            out.writeInt(locator.getStartLine());
+            out.writeInt(locator.getStartChar());
+            out.writeInt(locator.getEndLine());
+            out.writeInt(locator.getEndChar());
+        }
+    }
+
+    private static CqlTranslatorException readMessage(DataInputStream in) throws IOException {
+        CqlTranslatorException.ErrorSeverity severity;
+        try {
+            severity = CqlTranslatorException.ErrorSeverity.valueOf(readString(in));
+        }
+        catch (IllegalArgumentException | NullPointerException e) {
+            throw new IOException("Unknown message severity.", e);
+        }
+
+        String message = readString(in);
+        TrackBack locator = null;
+        if (in.readBoolean()) {
+            VersionedIdentifier library = new VersionedIdentifier()
+                    .withSystem(readString(in))
+                    .withId(readString(in))
+                    .withVersion(readString(in));
+            locator = new TrackBack(library, in.readInt(), in.readInt(), in.readInt(), in.readInt());
+        }
+
+        return new CqlTranslatorException(message, severity, locator);
+    }
+
+    // Writes the given type, and adds the names of the models of the named types it refers to to modelNames
+    private static void writeType(DataOutputStream out, DataType type, Set<String> modelNames) throws IOException {
+        if (type == null) {
+            out.writeByte(NULL_TYPE);
+        }
+        else if (type instanceof NamedType) {
+            out.writeByte(NAMED_TYPE);
+            if (((NamedType)type).getNamespace() != null) {
+                modelNames.add(((NamedType)type).getNamespace());
+            }
+            writeString(out, ((NamedType)type).getNamespace());
+            writeString(out, ((NamedType)type).getName());
+        }
+        else if (type instanceof ListType) {
+            out.writeByte(LIST_TYPE);
+            writeType(out, ((ListType)type).getElementType(), modelNames);
+        }
+        else if (type instanceof IntervalType) {
+            out.writeByte(INTERVAL_TYPE);
+            writeType(out, ((IntervalType)type).getPointType(), modelNames);
+        }
+        else if (type instanceof TupleType) {
+            List<TupleTypeElement> elements = new ArrayList<>();
+            ((TupleType)type).getElements().forEach(elements::add);
+            out.writeByte(TUPLE_TYPE);
+            out.writeInt(elements.size());
+            for (TupleTypeElement element : elements) {
+                writeString(out, element.getName());
+                writeType(out, element.getType(), modelNames);
+            }
+        }
+        else if (type instanceof ChoiceType) {
+            List<DataType> types = new ArrayList<>();
+            ((ChoiceType)type).getTypes().forEach(types::add);
+            out.writeByte(CHOICE_TYPE);
+            out.writeInt(types.size());
+            for (DataType choice : types) {
+                writeType(out, choice, modelNames);
+            }
+        }
+        else {
+            throw new IllegalArgumentException(String.format("Type %s cannot be written to a compiled library.", type));
+        }
+    }
+
+    /*
+    The models of the types of a library, resolved in a model manager at the versions the library uses
+     */
+    private static class LibraryModels {
+        private final ModelManager modelManager;
+        private final Map<String, UsingDef> usingDefs = new HashMap<>();
+        private final Map<String, Model> models = new HashMap<>();
+
+        LibraryModels(Library library, ModelManager modelManager) {
+            this.modelManager = modelManager;
+            if (library.getUsings() != null) {
+                for (UsingDef usingDef : library.getUsings().getDef()) {
+                    usingDefs.put(usingDef.getLocalIdentifier(), usingDef);
+                }
+            }
+        }
+
+        Model getModel(String modelName) {
+            return models.computeIfAbsent(modelName, name -> {
+                UsingDef usingDef = usingDefs.get(name);
+                return modelManager.resolveModel(name, usingDef != null ? usingDef.getVersion() : null);
+            });
+        }
+    }
+
+    private static class TypeReader {
+        private final DataInputStream in;
+        private final LibraryModels models;
+
+        TypeReader(DataInputStream in, LibraryModels models) {
+            this.in = in;
+            this.models = models;
+        }
+
+        DataType readType() throws IOException {
+            int kind = in.readUnsignedByte();
+            switch (kind) {
+                case NULL_TYPE:
+                    return null;
+
+                case NAMED_TYPE:
+                    String modelName = readString(in);
+                    String typeName = readString(in);
+                    DataType result = models.getModel(modelName).resolveTypeName(typeName);
+                    if (result == null) {
+                        throw new IOException(String.format("Could not resolve type %s of a compiled library.", typeName));
+                    }
+                    return result;
+
+                case LIST_TYPE:
+                    return TypeInterner.listOf(readType());
+
+                case INTERVAL_TYPE:
+                    return TypeInterner.intervalOf(readType());
+
+                case TUPLE_TYPE:
+                    int elementCount = in.readInt();
+                    List<TupleTypeElement> elements = new ArrayList<>(elementCount);
+                    for (int i = 0; i < elementCount; i++) {
+                        elements.add(new TupleTypeElement(readString(in), readType()));
+                    }
+                    return new TupleType(elements);
+
+                case CHOICE_TYPE:
+                    int choiceCount = in.readInt();
+                    List<DataType> choices = new ArrayList<>(choiceCount);
+                    for (int i = 0; i < choiceCount; i++) {
+                        choices.add(readType());
+                    }
+                    return TypeInterner.choiceOf(choices);
+
+                default:
+                    throw new IOException("Malformed compiled library types.");
+            }
+        }
+    }
+}
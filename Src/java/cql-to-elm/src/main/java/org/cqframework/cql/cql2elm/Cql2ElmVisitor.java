@@ -710,9 +710,7 @@ public class Cql2ElmVisitor extends cqlBaseVisitor {
                 .withPath(path)
                 .withVersion(parseString(ctx.versionSpecifier()));
 
-        // TODO: This isn't great because it complicates the loading process (and results in the source being loaded twice in the general case)
-        // But the full fix is to introduce source resolution/caching to enable this layer to determine whether the library identifier resolved
-        // with the namespace
+        // Determining whether the library identifier resolves with the namespace does not read the library source
         if (!libraryBuilder.canResolveLibrary(library)) {
             namespaceName = identifiers.size() > 0 ? String.join(".", identifiers) :
                     libraryBuilder.isWellKnownLibraryName(unqualifiedIdentifier) ? null :
@@ -831,7 +829,7 @@ public class Cql2ElmVisitor extends cqlBaseVisitor {
             typeSpecifier.getElement().add(element);
         }
 
-        typeSpecifier.setResultType(resultType);
+        typeSpecifier.setResultType(TypeInterner.intern(resultType));
 
         return typeSpecifier;
     }
@@ -849,7 +847,7 @@ public class Cql2ElmVisitor extends cqlBaseVisitor {
         if (includeDeprecatedElements) {
             result.getType().addAll(typeSpecifiers);
         }
-        ChoiceType choiceType = new ChoiceType(types);
+        ChoiceType choiceType = TypeInterner.choiceOf(types);
         result.setResultType(choiceType);
         return result;
     }
@@ -857,7 +855,7 @@ public class Cql2ElmVisitor extends cqlBaseVisitor {
     @Override
     public IntervalTypeSpecifier visitIntervalTypeSpecifier(cqlParser.IntervalTypeSpecifierContext ctx) {
         IntervalTypeSpecifier result = of.createIntervalTypeSpecifier().withPointType(parseTypeSpecifier(ctx.typeSpecifier()));
-        IntervalType intervalType = new IntervalType(result.getPointType().getResultType());
+        IntervalType intervalType = TypeInterner.intervalOf(result.getPointType().getResultType());
         result.setResultType(intervalType);
         return result;
     }
@@ -865,7 +863,7 @@ public class Cql2ElmVisitor extends cqlBaseVisitor {
     @Override
     public ListTypeSpecifier visitListTypeSpecifier(cqlParser.ListTypeSpecifierContext ctx) {
         ListTypeSpecifier result = of.createListTypeSpecifier().withElementType(parseTypeSpecifier(ctx.typeSpecifier()));
-        ListType listType = new ListType(result.getElementType().getResultType());
+        ListType listType = TypeInterner.listOf(result.getElementType().getResultType());
         result.setResultType(listType);
         return result;
     }
@@ -1036,7 +1034,7 @@ public class Cql2ElmVisitor extends cqlBaseVisitor {
                     else {
                         Retrieve contextRetrieve = of.createRetrieve().withDataType(libraryBuilder.dataTypeToQName(contextType));
                         track(contextRetrieve, ctx);
-                        contextRetrieve.setResultType(new ListType(contextType));
+                        contextRetrieve.setResultType(TypeInterner.listOf(contextType));
                         String contextClassIdentifier = ((ClassType) contextType).getIdentifier();
                         if (contextClassIdentifier != null) {
                             contextRetrieve.setTemplateId(contextClassIdentifier);
@@ -1183,7 +1181,7 @@ public class Cql2ElmVisitor extends cqlBaseVisitor {
             tupleType.addElement(new TupleTypeElement(element.getName(), element.getResultType()));
             tuple.getElement().add(element);
         }
-        tuple.setResultType(tupleType);
+        tuple.setResultType(TypeInterner.intern(tupleType));
         return tuple;
     }
 
@@ -1254,7 +1252,7 @@ public class Cql2ElmVisitor extends cqlBaseVisitor {
         if (elementTypeSpecifier != null) {
             ListTypeSpecifier listTypeSpecifier = of.createListTypeSpecifier().withElementType(elementTypeSpecifier);
             track(listTypeSpecifier, ctx.typeSpecifier());
-            listType = new ListType(elementTypeSpecifier.getResultType());
+            listType = TypeInterner.listOf(elementTypeSpecifier.getResultType());
             listTypeSpecifier.setResultType(listType);
         }
 
@@ -1306,7 +1304,7 @@ public class Cql2ElmVisitor extends cqlBaseVisitor {
         }
 
         if (listType == null) {
-            listType = new ListType(elementType);
+            listType = TypeInterner.listOf(elementType);
         }
 
         list.setResultType(listType);
@@ -1733,7 +1731,7 @@ DATETIME
 
             libraryBuilder.resolveBinaryCall("System", operatorName, (BinaryExpression)exp);
 
-            if (exp.getResultType() == libraryBuilder.resolveTypeName("System", "String")) {
+            if (libraryBuilder.resolveTypeName("System", "String").equals(exp.getResultType())) {
                 Concatenate concatenate = of.createConcatenate();
                 concatenate.getOperand().addAll(((BinaryExpression)exp).getOperand());
                 concatenate.setResultType(exp.getResultType());
@@ -3457,7 +3455,7 @@ DATETIME
 
         retrieves.add(retrieve);
 
-        retrieve.setResultType(new ListType((DataType) namedType));
+        retrieve.setResultType(TypeInterner.listOf((DataType) namedType));
 
         return retrieve;
     }
@@ -3546,7 +3544,7 @@ DATETIME
                         returnExpression.getElement().add(element);
                     }
 
-                    returnExpression.setResultType(queryContext.isSingular() ? returnType : new ListType(returnType));
+                    returnExpression.setResultType(queryContext.isSingular() ? returnType : TypeInterner.listOf(returnType));
                     ret.setExpression(returnExpression);
                     ret.setResultType(returnExpression.getResultType());
                 }
@@ -3816,7 +3814,7 @@ DATETIME
     private boolean isRHSEligibleForDateRangeOptimization(Expression rhs) {
         return
             rhs.getResultType().isSubTypeOf(libraryBuilder.resolveTypeName("System", "DateTime"))
-                || rhs.getResultType().isSubTypeOf(new IntervalType(libraryBuilder.resolveTypeName("System", "DateTime")));
+                || rhs.getResultType().isSubTypeOf(TypeInterner.intervalOf(libraryBuilder.resolveTypeName("System", "DateTime")));
 
         // BTR: The only requirement for the optimization is that the expression be of type DateTime or Interval<DateTime>
         // Whether or not the expression can be statically evaluated (literal, in the loose sense of the word) is really
@@ -3946,7 +3944,7 @@ DATETIME
         returnClause.setExpression(parseExpression(ctx.expression()));
         returnClause.setResultType(libraryBuilder.peekQueryContext().isSingular()
                 ? returnClause.getExpression().getResultType()
-                : new ListType(returnClause.getExpression().getResultType()));
+                : TypeInterner.listOf(returnClause.getExpression().getResultType()));
 
         return returnClause;
     }
@@ -4494,7 +4492,7 @@ DATETIME
         TrackBack tb = getTrackBack(pt);
 
         if (tb != null) {
-            trackable.getTrackbacks().add(tb);
+            trackable.addTrackback(tb);
         }
 
         if (trackable instanceof Element) {
@@ -4505,10 +4503,10 @@ DATETIME
     }
 
     private TrackBack track(Trackable trackable, Element from) {
-        TrackBack tb = from.getTrackbacks().size() > 0 ? from.getTrackbacks().get(0) : null;
+        TrackBack tb = from.getFirstTrackback();
 
         if (tb != null) {
-            trackable.getTrackbacks().add(tb);
+            trackable.addTrackback(tb);
         }
 
         if (trackable instanceof Element) {
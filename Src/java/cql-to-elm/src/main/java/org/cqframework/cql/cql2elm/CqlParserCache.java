@@ -0,0 +1,126 @@
+package org.cqframework.cql.cql2elm;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.LexerATNSimulator;
+import org.antlr.v4.runtime.atn.ParserATNSimulator;
+import org.antlr.v4.runtime.atn.PredictionContextCache;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.cqframework.cql.gen.cqlLexer;
+import org.cqframework.cql.gen.cqlParser;
+
+/**
+ * Manages the prediction caches (DFA) used by the CQL lexer and parser. ANTLR keeps these caches in static fields of the
+ * generated lexer and parser, where they grow for the life of the JVM. Lexers and parsers created through this class
+ * use caches owned by this class instead, which can be warmed from a representative set of libraries at startup,
+ * cleared at any time, and bounded to a maximum number of states.
+ *
+ * Clearing the caches does not affect parses that are in progress, they keep using the caches they started with.
+ */
+public class CqlParserCache {
+    private static class Caches {
+        private final DFA[] lexerDecisionToDFA = createDecisionToDFA(cqlLexer._ATN);
+        private final PredictionContextCache lexerContextCache = new PredictionContextCache();
+        private final DFA[] parserDecisionToDFA = createDecisionToDFA(cqlParser._ATN);
+        private final PredictionContextCache parserContextCache = new PredictionContextCache();
+
+        private static DFA[] createDecisionToDFA(ATN atn) {
+            DFA[] result = new DFA[atn.getNumberOfDecisions()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = new DFA(atn.getDecisionState(i), i);
+            }
+            return result;
+        }
+
+        private static int getStateCount(DFA[] decisionToDFA) {
+            int result = 0;
+            for (DFA dfa : decisionToDFA) {
+                result += dfa.states.size();
+            }
+            return result;
+        }
+
+        private int getStateCount() {
+            return getStateCount(lexerDecisionToDFA) + getStateCount(parserDecisionToDFA);
+        }
+    }
+
+    private static volatile Caches caches = new Caches();
+    private static volatile int maxStates = 0;
+
+    private CqlParserCache() {
+    }
+
+    /**
+     * Returns the maximum number of DFA states kept before the caches are cleared, 0 if the caches are not bounded.
+     */
+    public static int getMaxStates() {
+        return maxStates;
+    }
+
+    /**
+     * Sets the maximum number of DFA states kept. When a lexer or parser is created and the caches hold more states,
+     * the caches are cleared first. The default, 0, does not bound the caches.
+     */
+    public static void setMaxStates(int maxStates) {
+        if (maxStates < 0) {
+            throw new IllegalArgumentException("maxStates must not be negative");
+        }
+
+        CqlParserCache.maxStates = maxStates;
+    }
+
+    /**
+     * Returns the number of DFA states currently cached by the lexer and parser.
+     */
+    public static int getStateCount() {
+        return caches.getStateCount();
+    }
+
+    /**
+     * Discards all cached DFA states. Lexers and parsers created afterwards start with empty caches.
+     */
+    public static void clear() {
+        caches = new Caches();
+    }
+
+    private static Caches getCaches() {
+        Caches result = caches;
+        if (maxStates > 0 && result.getStateCount() > maxStates) {
+            clear();
+            result = caches;
+        }
+        return result;
+    }
+
+    public static cqlLexer createLexer(CharStream input) {
+        Caches current = getCaches();
+        cqlLexer result = new cqlLexer(input);
+        result.setInterpreter(new LexerATNSimulator(result, result.getATN(), current.lexerDecisionToDFA, current.lexerContextCache));
+        return result;
+    }
+
+    public static cqlParser createParser(TokenStream input) {
+        Caches current = getCaches();
+        cqlParser result = new cqlParser(input);
+        result.setInterpreter(new ParserATNSimulator(result, result.getATN(), current.parserDecisionToDFA, current.parserContextCache));
+        return result;
+    }
+
+    /**
+     * Parses the given libraries to populate the caches, so that the first translations do not pay for building them.
+     * Errors in the libraries are ignored.
+     */
+    public static void warm(Iterable<String> cqlTexts) {
+        for (String cqlText : cqlTexts) {
+            cqlLexer lexer = createLexer(CharStreams.fromString(cqlText));
+            lexer.removeErrorListeners();
+            cqlParser parser = createParser(new CommonTokenStream(lexer));
+            parser.removeErrorListeners();
+            parser.library();
+        }
+    }
+}
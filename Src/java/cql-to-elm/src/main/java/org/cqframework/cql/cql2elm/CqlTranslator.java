@@ -9,6 +9,8 @@ import joptsimple.OptionParser;
 import joptsimple.OptionSet;
 import joptsimple.OptionSpec;
 import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.tree.ParseTree;
 import org.cqframework.cql.cql2elm.model.TranslatedLibrary;
 import org.cqframework.cql.cql2elm.model.serialization.LibraryWrapper;
@@ -31,6 +33,7 @@ import java.io.*;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.concurrent.*;
 
 import static java.nio.file.FileVisitResult.CONTINUE;
 
@@ -322,6 +325,11 @@ public class CqlTranslator {
         return new CqlTranslator(namespaceInfo, sourceInfo, CharStreams.fromStream(cqlStream), modelManager, libraryManager, ucumService, options);
     }
 
+    public static CqlTranslator fromCharStream(NamespaceInfo namespaceInfo, VersionedIdentifier sourceInfo, CharStream cqlStream, ModelManager modelManager,
+                                               LibraryManager libraryManager, UcumService ucumService, CqlTranslatorOptions options) {
+        return new CqlTranslator(namespaceInfo, sourceInfo, cqlStream, modelManager, libraryManager, ucumService, options);
+    }
+
     public static CqlTranslator fromFile(File cqlFile, ModelManager modelManager,
                                          LibraryManager libraryManager, UcumService ucumService, CqlTranslatorOptions options) throws IOException {
         return new CqlTranslator(null, getSourceInfo(cqlFile), CharStreams.fromStream(new FileInputStream(cqlFile)), modelManager, libraryManager, ucumService, options);
@@ -591,16 +599,35 @@ public class CqlTranslator {
 
         CqlTranslator.CqlErrorListener errorListener = new CqlTranslator.CqlErrorListener(builder, visitor.isDetailedErrorsEnabled());
 
-        cqlLexer lexer = new cqlLexer(is);
+        cqlLexer lexer = CqlParserCache.createLexer(is);
         lexer.removeErrorListeners();
         lexer.addErrorListener(errorListener);
         CommonTokenStream tokens = new CommonTokenStream(lexer);
-        cqlParser parser = new cqlParser(tokens);
+        cqlParser parser = CqlParserCache.createParser(tokens);
         parser.setBuildParseTree(true);
 
         parser.removeErrorListeners(); // Clear the default console listener
-        parser.addErrorListener(errorListener);
-        ParseTree tree = parser.library();
+        ParseTree tree = null;
+        if (options.getTwoStageParsing()) {
+            // Try the faster SLL prediction first, it succeeds for almost all input. Syntax errors (or input that
+            // requires full context) cancel the parse, and the library is parsed again with LL prediction below so
+            // that errors are reported and recovered from as usual
+            parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+            parser.setErrorHandler(new BailErrorStrategy());
+            try {
+                tree = parser.library();
+            }
+            catch (ParseCancellationException e) {
+                parser.reset();
+                parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+                parser.setErrorHandler(new DefaultErrorStrategy());
+            }
+        }
+
+        if (tree == null) {
+            parser.addErrorListener(errorListener);
+            tree = parser.library();
+        }
 
         CqlPreprocessorVisitor preprocessor = new CqlPreprocessorVisitor();
         preprocessor.setTokenStream(tokens);
@@ -672,47 +699,61 @@ public class CqlTranslator {
         modelInfoLoader.registerModelInfoProvider(modelProvider);
     }
 
-    private static void outputExceptions(Iterable<CqlTranslatorException> exceptions) {
+    private static void outputExceptions(PrintStream err, Iterable<CqlTranslatorException> exceptions) {
         for (CqlTranslatorException error : exceptions) {
             TrackBack tb = error.getLocator();
             String lines = tb == null ? "[n/a]" : String.format("[%d:%d, %d:%d]",
                     tb.getStartLine(), tb.getStartChar(), tb.getEndLine(), tb.getEndChar());
-            System.err.printf("%s:%s %s%n", error.getSeverity(), lines, error.getMessage());
+            err.printf("%s:%s %s%n", error.getSeverity(), lines, error.getMessage());
         }
     }
 
-    private static void writeELM(Path inPath, Path outPath, CqlTranslator.Format format, CqlTranslatorOptions options) throws IOException {
-
-        System.err.println("================================================================================");
-        System.err.printf("TRANSLATE %s%n", inPath);
+    private static UcumService createUcumService() {
+        try {
+            return new UcumEssenceService(UcumEssenceService.class.getResourceAsStream("/ucum-essence.xml"));
+        } catch (UcumException e) {
+            System.err.println("Could not create UCUM validation service:");
+            e.printStackTrace();
+            return null;
+        }
+    }
 
+    /*
+    Returns a library manager to translate a file in the given directory, which resolves included libraries and model info
+    from that directory. Each file is translated with its own library and model managers, so that files in the same
+    directory can use different versions of a model or of an included library. If a compiled library cache is given,
+    included libraries are shared through it; it is keyed by the library source, and is safe to share between threads.
+     */
+    private static LibraryManager createLibraryManager(Path directory, UcumService ucumService, CompiledLibraryCache compiledLibraryCache) {
         ModelManager modelManager = new ModelManager();
         LibraryManager libraryManager = new LibraryManager(modelManager);
-        UcumService ucumService = null;
-        if (options.getValidateUnits()) {
-            try {
-                ucumService = new UcumEssenceService(UcumEssenceService.class.getResourceAsStream("/ucum-essence.xml"));
-            } catch (UcumException e) {
-                System.err.println("Could not create UCUM validation service:");
-                e.printStackTrace();
-            }
-        }
-        modelManager.getModelInfoLoader().registerModelInfoProvider(new DefaultModelInfoProvider(inPath.getParent()), true);
-        libraryManager.getLibrarySourceLoader().registerProvider(new DefaultLibrarySourceProvider(inPath.getParent()));
+        libraryManager.setUcumService(ucumService);
+        libraryManager.setCompiledLibraryCache(compiledLibraryCache);
+        modelManager.getModelInfoLoader().registerModelInfoProvider(new DefaultModelInfoProvider(directory), true);
+        libraryManager.getLibrarySourceLoader().registerProvider(new DefaultLibrarySourceProvider(directory));
         libraryManager.getLibrarySourceLoader().registerProvider(new FhirLibrarySourceProvider());
-        CqlTranslator translator = fromFile(inPath.toFile(), modelManager, libraryManager, ucumService, options);
+        return libraryManager;
+    }
+
+    private static void writeELM(Path inPath, Path outPath, CqlTranslator.Format format, CqlTranslatorOptions options,
+                                 LibraryManager libraryManager, UcumService ucumService, PrintStream err) throws IOException {
+
+        err.println("================================================================================");
+        err.printf("TRANSLATE %s%n", inPath);
+
+        CqlTranslator translator = fromFile(inPath.toFile(), libraryManager.getModelManager(), libraryManager, ucumService, options);
         libraryManager.getLibrarySourceLoader().clearProviders();
 
         if (translator.getErrors().size() > 0) {
-            System.err.println("Translation failed due to errors:");
-            outputExceptions(translator.getExceptions());
+            err.println("Translation failed due to errors:");
+            outputExceptions(err, translator.getExceptions());
         } else if (!options.getVerifyOnly()) {
             if (translator.getExceptions().size() == 0) {
-                System.err.println("Translation completed successfully.");
+                err.println("Translation completed successfully.");
             }
             else {
-                System.err.println("Translation completed with messages:");
-                outputExceptions(translator.getExceptions());
+                err.println("Translation completed with messages:");
+                outputExceptions(err, translator.getExceptions());
             }
             try (PrintWriter pw = new PrintWriter(outPath.toFile(), "UTF-8")) {
                 switch (format) {
@@ -732,10 +773,33 @@ public class CqlTranslator {
                 }
                 pw.println();
             }
-            System.err.println(String.format("ELM output written to: %s", outPath.toString()));
+            err.println(String.format("ELM output written to: %s", outPath.toString()));
         }
 
-        System.err.println();
+        err.println();
+    }
+
+    /*
+    Translates a file, buffering its messages so that the output for each file is written to System.err as a group,
+    even when files are translated concurrently.
+     */
+    private static Void translateFile(Path inPath, Path outPath, CqlTranslator.Format format, CqlTranslatorOptions options,
+                                      LibraryManager libraryManager, UcumService ucumService) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (PrintStream err = new PrintStream(buffer, true, "UTF-8")) {
+            try {
+                writeELM(inPath, outPath, format, options, libraryManager, ucumService, err);
+            }
+            finally {
+                err.flush();
+                synchronized (System.err) {
+                    System.err.print(buffer.toString("UTF-8"));
+                    System.err.flush();
+                }
+            }
+        }
+
+        return null;
     }
 
     @SuppressWarnings({ "unchecked", "rawtypes"})
@@ -762,8 +826,11 @@ public class CqlTranslator {
         OptionSpec strict = parser.accepts("strict");
         OptionSpec debug = parser.accepts("debug");
         OptionSpec validateUnits = parser.accepts("validate-units");
+        OptionSpec disableTwoStageParsing = parser.accepts("disable-two-stage-parsing");
         OptionSpec<LibraryBuilder.SignatureLevel> signatures = parser.accepts("signatures").withRequiredArg().ofType(LibraryBuilder.SignatureLevel.class).defaultsTo(LibraryBuilder.SignatureLevel.None).describedAs("Indicates whether signatures should be included for invocations in the output ELM. Differing will include invocation signatures that differ from the declared signature. Overloads will include declaration signatures when the operator or function has more than one overload with the same number of arguments as the invocation");
         OptionSpec<String> compatibilityLevel = parser.accepts("compatibility-level").withRequiredArg().ofType(String.class).describedAs("Compatibility level for the translator, valid values are 1.3, 1.4, and 1.5");
+        OptionSpec<File> libraryCache = parser.accepts("library-cache").withRequiredArg().ofType(File.class).describedAs("A directory in which to cache compiled included libraries, so that libraries whose source is unchanged are not translated again. The directory can be shared by concurrent translator processes");
+        OptionSpec<Integer> threads = parser.accepts("threads").withRequiredArg().ofType(Integer.class).defaultsTo(1).describedAs("The number of files to translate concurrently when the input is a directory");
 
         OptionSet options = parser.parse(args);
 
@@ -774,6 +841,10 @@ public class CqlTranslator {
                         : source.toFile().isDirectory() ? source : source.getParent();
         final CqlTranslator.Format outputFormat = format.value(options);
         final LibraryBuilder.SignatureLevel signatureLevel = signatures.value(options);
+        final int threadCount = threads.value(options);
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("threads must be at least 1!");
+        }
 
         Map<Path, Path> inOutMap = new HashMap<>();
         if (source.toFile().isDirectory()) {
@@ -798,6 +869,40 @@ public class CqlTranslator {
             inOutMap.put(source, destination);
         }
 
+        if (options.has(model)) {
+            final File modelFile = options.valueOf(model);
+            if (! modelFile.exists() || modelFile.isDirectory()) {
+                throw new IllegalArgumentException("model must be a valid file!");
+            }
+            loadModelInfo(modelFile);
+        }
+
+        final CqlTranslatorOptions translatorOptions = new CqlTranslatorOptions(outputFormat, options.has(optimization),
+                options.has(debug) || options.has(annotations),
+                options.has(debug) || options.has(locators),
+                options.has(debug) || options.has(resultTypes),
+                options.has(verify),
+                options.has(detailedErrors), // Didn't include in debug, maybe should...
+                options.has(errorLevel)
+                        ? (CqlTranslatorException.ErrorSeverity)options.valueOf(errorLevel)
+                        : CqlTranslatorException.ErrorSeverity.Info,
+                options.has(strict) || options.has(disableListTraversal),
+                options.has(strict) || options.has(disableListDemotion),
+                options.has(strict) || options.has(disableListPromotion),
+                options.has(enableIntervalDemotion),
+                options.has(enableIntervalPromotion),
+                options.has(strict) || options.has(disableMethodInvocation),
+                options.has(requireFromKeyword),
+                options.has(validateUnits),
+                signatureLevel,
+                options.has(compatibilityLevel) ? options.valueOf(compatibilityLevel) : null)
+                .withTwoStageParsing(!options.has(disableTwoStageParsing));
+
+        final UcumService ucumService = translatorOptions.getValidateUnits() ? createUcumService() : null;
+        // Without a library cache, included libraries are translated by each translation that uses them, as before
+        final CompiledLibraryCache compiledLibraryCache = options.has(libraryCache)
+                ? new FileCompiledLibraryCache(libraryCache.value(options).toPath()) : null;
+        List<Callable<Void>> translations = new ArrayList<>();
         for (Map.Entry<Path, Path> inOut : inOutMap.entrySet()) {
             Path in = inOut.getKey();
             Path out = inOut.getValue();
@@ -828,33 +933,33 @@ public class CqlTranslator {
                 throw new IllegalArgumentException("input and output file must be different!");
             }
 
-            if (options.has(model)) {
-                final File modelFile = options.valueOf(model);
-                if (! modelFile.exists() || modelFile.isDirectory()) {
-                    throw new IllegalArgumentException("model must be a valid file!");
+            final Path outPath = out;
+            translations.add(() -> translateFile(in, outPath, outputFormat, translatorOptions,
+                    createLibraryManager(in.getParent(), ucumService, compiledLibraryCache), ucumService));
+        }
+
+        ExecutorService executor = Executors.newWorkStealingPool(threadCount);
+        try {
+            for (Future<Void> translation : executor.invokeAll(translations)) {
+                try {
+                    translation.get();
+                }
+                catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException)e.getCause();
+                    }
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException)e.getCause();
+                    }
+                    if (e.getCause() instanceof Error) {
+                        throw (Error)e.getCause();
+                    }
+                    throw new RuntimeException(e.getCause());
                 }
-                loadModelInfo(modelFile);
             }
-
-            writeELM(in, out, outputFormat, new CqlTranslatorOptions(outputFormat, options.has(optimization),
-                    options.has(debug) || options.has(annotations),
-                    options.has(debug) || options.has(locators),
-                    options.has(debug) || options.has(resultTypes),
-                    options.has(verify),
-                    options.has(detailedErrors), // Didn't include in debug, maybe should...
-                    options.has(errorLevel)
-                            ? (CqlTranslatorException.ErrorSeverity)options.valueOf(errorLevel)
-                            : CqlTranslatorException.ErrorSeverity.Info,
-                    options.has(strict) || options.has(disableListTraversal),
-                    options.has(strict) || options.has(disableListDemotion),
-                    options.has(strict) || options.has(disableListPromotion),
-                    options.has(enableIntervalDemotion),
-                    options.has(enableIntervalPromotion),
-                    options.has(strict) || options.has(disableMethodInvocation),
-                    options.has(requireFromKeyword),
-                    options.has(validateUnits),
-                    signatureLevel,
-                    options.has(compatibilityLevel) ? options.valueOf(compatibilityLevel) : null));
+        }
+        finally {
+            executor.shutdownNow();
         }
     }
 }
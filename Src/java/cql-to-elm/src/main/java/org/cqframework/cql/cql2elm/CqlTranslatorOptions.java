@@ -11,6 +11,8 @@ public class CqlTranslatorOptions {
     private EnumSet<CqlTranslator.Options> options = EnumSet.noneOf(CqlTranslator.Options.class);
     private List<CqlTranslator.Format> formats = new ArrayList<>();
     private boolean validateUnits = true;
+    private boolean twoStageParsing = true;
+    private boolean cacheConversions = false;
     private boolean verifyOnly = false;
     private String compatibilityLevel = "1.5";
     private CqlTranslatorException.ErrorSeverity errorLevel = CqlTranslatorException.ErrorSeverity.Info;
@@ -174,6 +176,40 @@ public class CqlTranslatorOptions {
         return this;
     }
 
+    /**
+     * Whether the library is first parsed with SLL prediction, falling back to a full LL parse only if that fails.
+     * SLL parsing is much faster, and the LL parse still reports syntax errors as usual. Enabled by default.
+     */
+    public boolean getTwoStageParsing() {
+        return this.twoStageParsing;
+    }
+
+    public void setTwoStageParsing(boolean twoStageParsing) {
+        this.twoStageParsing = twoStageParsing;
+    }
+
+    public CqlTranslatorOptions withTwoStageParsing(boolean twoStageParsing) {
+        setTwoStageParsing(twoStageParsing);
+        return this;
+    }
+
+    /**
+     * Whether conversion lookups made while resolving operators are cached for the duration of the translation (see
+     * ConversionMap.enableConversionCache). Disabled by default.
+     */
+    public boolean getCacheConversions() {
+        return this.cacheConversions;
+    }
+
+    public void setCacheConversions(boolean cacheConversions) {
+        this.cacheConversions = cacheConversions;
+    }
+
+    public CqlTranslatorOptions withCacheConversions(boolean cacheConversions) {
+        setCacheConversions(cacheConversions);
+        return this;
+    }
+
     public CqlTranslatorException.ErrorSeverity getErrorLevel() {
         return this.errorLevel;
     }
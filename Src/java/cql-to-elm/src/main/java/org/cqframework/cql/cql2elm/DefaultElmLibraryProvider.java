@@ -0,0 +1,52 @@
+package org.cqframework.cql.cql2elm;
+
+import org.hl7.elm.r1.Library;
+import org.hl7.elm.r1.VersionedIdentifier;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.transform.stream.StreamSource;
+import java.io.File;
+import java.nio.file.Path;
+
+// NOTE: This implementation assumes library ELM file names will always take the form:
+// <filename>[-<version>].xml or <filename>[-<version>].json
+// as written by the translator. Unlike DefaultLibrarySourceProvider, it does not look for compatible versions, a
+// versioned reference only resolves to ELM for exactly that version.
+public class DefaultElmLibraryProvider implements ElmLibraryProvider {
+
+    public DefaultElmLibraryProvider(Path path) {
+        if (path == null || ! path.toFile().isDirectory()) {
+            throw new IllegalArgumentException(String.format("path '%s' is not a valid directory", path));
+        }
+
+        this.path = path;
+    }
+
+    private Path path;
+
+    @Override
+    public Library getLibrary(VersionedIdentifier libraryIdentifier) {
+        String libraryName = String.format("%s%s", libraryIdentifier.getId(),
+                libraryIdentifier.getVersion() != null ? ("-" + libraryIdentifier.getVersion()) : "");
+
+        try {
+            File xmlFile = path.resolve(libraryName + ".xml").toFile();
+            if (xmlFile.isFile()) {
+                return CqlTranslator.getJaxbContext().createUnmarshaller()
+                        .unmarshal(new StreamSource(xmlFile), Library.class).getValue();
+            }
+
+            File jsonFile = path.resolve(libraryName + ".json").toFile();
+            if (jsonFile.isFile()) {
+                Unmarshaller unmarshaller = CqlTranslator.getJaxbContext().createUnmarshaller();
+                unmarshaller.setProperty("eclipselink.media-type", "application/json");
+                return unmarshaller.unmarshal(new StreamSource(jsonFile), Library.class).getValue();
+            }
+        } catch (JAXBException e) {
+            throw new IllegalArgumentException(String.format("Could not load ELM for library %s.", libraryIdentifier.getId()), e);
+        }
+
+        return null;
+    }
+}
@@ -22,8 +22,7 @@ public class DefaultLibrarySourceProvider implements LibrarySourceProvider {
 
     private Path path;
 
-    @Override
-    public InputStream getLibrarySource(VersionedIdentifier libraryIdentifier) {
+    private File resolveLibraryFile(VersionedIdentifier libraryIdentifier) {
         String libraryName = libraryIdentifier.getId();
         Path libraryPath = this.path.resolve(String.format("%s%s.cql", libraryName,
                 libraryIdentifier.getVersion() != null ? ("-" + libraryIdentifier.getVersion()) : ""));
@@ -72,6 +71,13 @@ public class DefaultLibrarySourceProvider implements LibrarySourceProvider {
 
             libraryFile = mostRecentFile;
         }
+
+        return libraryFile;
+    }
+
+    @Override
+    public InputStream getLibrarySource(VersionedIdentifier libraryIdentifier) {
+        File libraryFile = resolveLibraryFile(libraryIdentifier);
         try {
             if (libraryFile != null) {
                 return new FileInputStream(libraryFile);
@@ -82,4 +88,9 @@ public class DefaultLibrarySourceProvider implements LibrarySourceProvider {
 
         return null;
     }
+
+    @Override
+    public boolean hasLibrarySource(VersionedIdentifier libraryIdentifier) {
+        return resolveLibraryFile(libraryIdentifier) != null;
+    }
 }
@@ -0,0 +1,12 @@
+package org.cqframework.cql.cql2elm;
+
+import org.hl7.elm.r1.Library;
+import org.hl7.elm.r1.VersionedIdentifier;
+
+/**
+ * Provides the previously translated ELM of libraries. A LibraryManager with an ElmLibraryProvider resolves included
+ * libraries from their ELM where it is available, rather than translating their CQL source.
+ */
+public interface ElmLibraryProvider {
+    Library getLibrary(VersionedIdentifier libraryIdentifier);
+}
@@ -1,40 +1,91 @@
 package org.cqframework.cql.cql2elm;
 
+import org.antlr.v4.runtime.CharStream;
 import org.hl7.elm.r1.VersionedIdentifier;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by Bryn on 3/28/2017.
  */
-public class FhirLibrarySourceProvider implements LibrarySourceProvider, NamespaceAware {
+public class FhirLibrarySourceProvider implements CharStreamLibrarySourceProvider, NamespaceAware {
+
+    // The library sources are resources of this module, so they are read and decoded once, and shared by all instances
+    private static final Map<String, LibrarySourceContent> sources = new ConcurrentHashMap<>();
 
     private final String namespaceName = "FHIR";
     private final String namespaceUri = "http://hl7.org/fhir";
 
     @Override
     public InputStream getLibrarySource(VersionedIdentifier libraryIdentifier) {
-        InputStream result = FhirLibrarySourceProvider.class.getResourceAsStream(String.format("/org/hl7/fhir/%s-%s.cql", libraryIdentifier.getId(),
-                libraryIdentifier.getVersion()));
+        LibrarySourceContent content = getContent(libraryIdentifier);
+        return content != null ? content.openStream() : null;
+    }
 
-        if (result != null) {
-            // If the FHIRHelpers library is referenced in a namespace-enabled context,
-            // set the namespace to the FHIR namespace URI
-            if (namespaceManager != null && namespaceManager.hasNamespaces()) {
-                // If the context already has a namespace registered for FHIR, use that.
-                NamespaceInfo namespaceInfo = namespaceManager.getNamespaceInfoFromUri(namespaceUri);
-                if (namespaceInfo == null) {
-                    namespaceInfo = new NamespaceInfo(namespaceName, namespaceUri);
-                    namespaceManager.ensureNamespaceRegistered(namespaceInfo);
+    @Override
+    public CharStream getLibraryCharStream(VersionedIdentifier libraryIdentifier) {
+        LibrarySourceContent content = getContent(libraryIdentifier);
+        return content != null ? content.openCharStream() : null;
+    }
+
+    private static String getResourceName(VersionedIdentifier libraryIdentifier) {
+        return String.format("/org/hl7/fhir/%s-%s.cql", libraryIdentifier.getId(), libraryIdentifier.getVersion());
+    }
+
+    private LibrarySourceContent getContent(VersionedIdentifier libraryIdentifier) {
+        String resourceName = getResourceName(libraryIdentifier);
+        LibrarySourceContent result = sources.get(resourceName);
+        if (result == null) {
+            InputStream source = FhirLibrarySourceProvider.class.getResourceAsStream(resourceName);
+            if (source != null) {
+                try {
+                    result = LibrarySourceContent.read(source);
+                }
+                catch (IOException e) {
+                    throw new IllegalArgumentException(String.format("Could not load source for library %s, version %s.",
+                            libraryIdentifier.getId(), libraryIdentifier.getVersion()), e);
                 }
-                libraryIdentifier.setSystem(namespaceUri);
+                sources.putIfAbsent(resourceName, result);
             }
         }
 
+        if (result != null) {
+            setNamespace(libraryIdentifier);
+        }
+
         return result;
     }
 
+    private void setNamespace(VersionedIdentifier libraryIdentifier) {
+        // If the FHIRHelpers library is referenced in a namespace-enabled context,
+        // set the namespace to the FHIR namespace URI
+        if (namespaceManager != null && namespaceManager.hasNamespaces()) {
+            // If the context already has a namespace registered for FHIR, use that.
+            NamespaceInfo namespaceInfo = namespaceManager.getNamespaceInfoFromUri(namespaceUri);
+            if (namespaceInfo == null) {
+                namespaceInfo = new NamespaceInfo(namespaceName, namespaceUri);
+                namespaceManager.ensureNamespaceRegistered(namespaceInfo);
+            }
+            libraryIdentifier.setSystem(namespaceUri);
+        }
+    }
+
+    // The resource is looked up without reading it
+    @Override
+    public boolean hasLibrarySource(VersionedIdentifier libraryIdentifier) {
+        String resourceName = getResourceName(libraryIdentifier);
+        if (sources.containsKey(resourceName) || FhirLibrarySourceProvider.class.getResource(resourceName) != null) {
+            setNamespace(libraryIdentifier);
+            return true;
+        }
+
+        return false;
+    }
+
     private NamespaceManager namespaceManager;
 
     @Override
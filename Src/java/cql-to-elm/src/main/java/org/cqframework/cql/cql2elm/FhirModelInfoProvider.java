@@ -2,8 +2,7 @@ package org.cqframework.cql.cql2elm;
 
 import org.hl7.elm.r1.VersionedIdentifier;
 import org.hl7.elm_modelinfo.r1.ModelInfo;
-
-import javax.xml.bind.JAXB;
+import org.hl7.elm_modelinfo.r1.serializing.ModelInfoResources;
 
 /**
  * Created by Bryn on 4/15/2016.
@@ -29,41 +28,32 @@ public class FhirModelInfoProvider implements ModelInfoProvider, NamespaceAware
             String localVersion = modelIdentifier.getVersion() == null ? "" : modelIdentifier.getVersion();
             switch (localVersion) {
                 case "1.0.2":
-                    return JAXB.unmarshal(FhirModelInfoProvider.class.getResourceAsStream("/org/hl7/fhir/fhir-modelinfo-1.0.2.xml"),
-                            ModelInfo.class);
+                    return ModelInfoResources.load(FhirModelInfoProvider.class, "/org/hl7/fhir/fhir-modelinfo-1.0.2.xml");
 
                 case "1.4":
-                    return JAXB.unmarshal(FhirModelInfoProvider.class.getResourceAsStream("/org/hl7/fhir/fhir-modelinfo-1.4.xml"),
-                            ModelInfo.class);
+                    return ModelInfoResources.load(FhirModelInfoProvider.class, "/org/hl7/fhir/fhir-modelinfo-1.4.xml");
 
                 case "1.6":
-                    return JAXB.unmarshal(FhirModelInfoProvider.class.getResourceAsStream("/org/hl7/fhir/fhir-modelinfo-1.6.xml"),
-                            ModelInfo.class);
+                    return ModelInfoResources.load(FhirModelInfoProvider.class, "/org/hl7/fhir/fhir-modelinfo-1.6.xml");
 
                 case "1.8":
-                    return JAXB.unmarshal(FhirModelInfoProvider.class.getResourceAsStream("/org/hl7/fhir/fhir-modelinfo-1.8.xml"),
-                            ModelInfo.class);
+                    return ModelInfoResources.load(FhirModelInfoProvider.class, "/org/hl7/fhir/fhir-modelinfo-1.8.xml");
 
                 case "3.0.0":
                 case "":
-                    return JAXB.unmarshal(FhirModelInfoProvider.class.getResourceAsStream("/org/hl7/fhir/fhir-modelinfo-3.0.0.xml"),
-                            ModelInfo.class);
+                    return ModelInfoResources.load(FhirModelInfoProvider.class, "/org/hl7/fhir/fhir-modelinfo-3.0.0.xml");
 
                 case "3.0.1":
-                    return JAXB.unmarshal(FhirModelInfoProvider.class.getResourceAsStream("/org/hl7/fhir/fhir-modelinfo-3.0.1.xml"),
-                            ModelInfo.class);
+                    return ModelInfoResources.load(FhirModelInfoProvider.class, "/org/hl7/fhir/fhir-modelinfo-3.0.1.xml");
 
                 case "3.2.0":
-                    return JAXB.unmarshal(FhirModelInfoProvider.class.getResourceAsStream("/org/hl7/fhir/fhir-modelinfo-3.2.0.xml"),
-                            ModelInfo.class);
+                    return ModelInfoResources.load(FhirModelInfoProvider.class, "/org/hl7/fhir/fhir-modelinfo-3.2.0.xml");
 
                 case "4.0.0":
-                    return JAXB.unmarshal(FhirModelInfoProvider.class.getResourceAsStream("/org/hl7/fhir/fhir-modelinfo-4.0.0.xml"),
-                            ModelInfo.class);
+                    return ModelInfoResources.load(FhirModelInfoProvider.class, "/org/hl7/fhir/fhir-modelinfo-4.0.0.xml");
 
                 case "4.0.1":
-                    return JAXB.unmarshal(FhirModelInfoProvider.class.getResourceAsStream("/org/hl7/fhir/fhir-modelinfo-4.0.1.xml"),
-                            ModelInfo.class);
+                    return ModelInfoResources.load(FhirModelInfoProvider.class, "/org/hl7/fhir/fhir-modelinfo-4.0.1.xml");
 
                 // Do not throw, allow other providers to return the model if known
                 //default:
@@ -0,0 +1,78 @@
+package org.cqframework.cql.cql2elm;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * A compiled library cache that stores each entry as a file in a directory. Entries are written to a temporary file in
+ * the same directory and then renamed into place, so the directory can be shared by translators running in different
+ * processes on the same host: a reader sees either no entry or a complete one.
+ */
+public class FileCompiledLibraryCache implements CompiledLibraryCache {
+    private static final String ENTRY_EXTENSION = ".elmc";
+
+    private final Path directory;
+
+    public FileCompiledLibraryCache(Path directory) {
+        if (directory == null) {
+            throw new IllegalArgumentException("directory is null");
+        }
+
+        this.directory = directory;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    private Path getEntryPath(String key) {
+        return directory.resolve(key + ENTRY_EXTENSION);
+    }
+
+    @Override
+    public byte[] get(String key) {
+        try {
+            return Files.readAllBytes(getEntryPath(key));
+        }
+        catch (NoSuchFileException e) {
+            return null;
+        }
+        catch (IOException e) {
+            // Treat an unreadable entry as a miss, it will be replaced when the library is translated
+            return null;
+        }
+    }
+
+    @Override
+    public void put(String key, byte[] content) {
+        Path temporaryPath = null;
+        try {
+            Files.createDirectories(directory);
+            temporaryPath = Files.createTempFile(directory, key, ".tmp");
+            Files.write(temporaryPath, content);
+            try {
+                Files.move(temporaryPath, getEntryPath(key), StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryPath, getEntryPath(key), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        catch (IOException e) {
+            // Do not throw, the library will be translated again the next time it is requested
+        }
+        finally {
+            if (temporaryPath != null) {
+                try {
+                    Files.deleteIfExists(temporaryPath);
+                }
+                catch (IOException e) {
+                    // Ignore, the temporary file is not visible as an entry
+                }
+            }
+        }
+    }
+}
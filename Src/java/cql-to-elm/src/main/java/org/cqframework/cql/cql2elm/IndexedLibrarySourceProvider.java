@@ -0,0 +1,292 @@
+package org.cqframework.cql.cql2elm;
+
+import org.cqframework.cql.cql2elm.model.Version;
+import org.hl7.elm.r1.VersionedIdentifier;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A library source provider for a directory of library files, named and resolved as by DefaultLibrarySourceProvider:
+ *   &lt;filename&gt;[-&lt;version&gt;].cql
+ * The requested version is used if there is a file for it, otherwise the most recent compatible version (see
+ * Version.compatibleWith), otherwise the unversioned file for the library.
+ *
+ * Rather than listing the directory each time a requested version has no file, the files of the directory are indexed
+ * by library name and version when the provider is created, so that the most recent compatible version is found with
+ * a lookup in a sorted map. The directory is watched for changes, which are applied to the index before each lookup.
+ * If the directory cannot be watched, the index is rebuilt each time a library is not found.
+ *
+ * Unlike DefaultLibrarySourceProvider, files whose version is not of the form &lt;major&gt;[.&lt;minor&gt;[.&lt;patch&gt;]]
+ * are only used when that exact version is requested, and only files named for the requested library are considered
+ * when looking for a compatible version.
+ *
+ * The provider may be used by concurrent translations, and should be closed when it is no longer used to stop
+ * watching the directory.
+ */
+public class IndexedLibrarySourceProvider implements LibrarySourceProvider, Closeable {
+
+    /*
+    The files of a library, by file name, and the versions of the library in those files
+     */
+    private static class LibraryFiles {
+        private final Map<String, Path> files = new HashMap<>();
+        private final TreeMap<Version, Path> versionedFiles = new TreeMap<>();
+        private Path unversionedFile;
+
+        void add(String fileName, Path file) {
+            files.put(fileName, file);
+            Version version = getVersion(fileName);
+            if (version != null) {
+                versionedFiles.putIfAbsent(version, file);
+            }
+            else {
+                unversionedFile = file;
+            }
+        }
+
+        void remove(String fileName) {
+            files.remove(fileName);
+            versionedFiles.clear();
+            unversionedFile = null;
+            for (Map.Entry<String, Path> entry : files.entrySet()) {
+                Version version = getVersion(entry.getKey());
+                if (version != null) {
+                    versionedFiles.putIfAbsent(version, entry.getValue());
+                }
+                else {
+                    unversionedFile = entry.getValue();
+                }
+            }
+        }
+
+        boolean isEmpty() {
+            return files.isEmpty();
+        }
+
+        Path getMostRecentFile(Version requestedVersion) {
+            Map.Entry<Version, Path> mostRecent;
+            if (requestedVersion == null) {
+                mostRecent = versionedFiles.lastEntry();
+            }
+            else {
+                // Compatible versions have the major version of the requested version, so if any version is compatible,
+                // the most recent version with that major version is
+                String major = requestedVersion.toString().split("\\.")[0];
+                mostRecent = versionedFiles.lowerEntry(new Version(Long.toString(Long.parseLong(major) + 1)));
+                if (mostRecent != null && !mostRecent.getKey().compatibleWith(requestedVersion)) {
+                    mostRecent = null;
+                }
+            }
+
+            return mostRecent != null ? mostRecent.getValue() : unversionedFile;
+        }
+    }
+
+    private final Path path;
+    private final WatchService watchService;
+    // Indexed files by file name, and by library name
+    private final Map<String, Path> files = new HashMap<>();
+    private final Map<String, LibraryFiles> libraries = new HashMap<>();
+
+    public IndexedLibrarySourceProvider(Path path) {
+        if (path == null || ! path.toFile().isDirectory()) {
+            throw new IllegalArgumentException(String.format("path '%s' is not a valid directory", path));
+        }
+
+        this.path = path;
+        // The directory is watched before it is indexed, so that no change is missed
+        this.watchService = watch(path);
+        index();
+    }
+
+    private static WatchService watch(Path path) {
+        WatchService result = null;
+        try {
+            result = path.getFileSystem().newWatchService();
+            path.register(result, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE);
+            return result;
+        }
+        catch (IOException | UnsupportedOperationException e) {
+            if (result != null) {
+                try {
+                    result.close();
+                }
+                catch (IOException ce) {
+                    // Ignore, the directory is not watched
+                }
+            }
+            return null;
+        }
+    }
+
+    private static String getLibraryName(String fileName) {
+        String name = fileName.substring(0, fileName.length() - ".cql".length());
+        int indexOfVersionSeparator = name.indexOf("-");
+        return indexOfVersionSeparator >= 0 ? name.substring(0, indexOfVersionSeparator) : name;
+    }
+
+    // Returns the version of the given library file name, or null if the file name has no version
+    private static Version getVersion(String fileName) {
+        String name = fileName.substring(0, fileName.length() - ".cql".length());
+        int indexOfVersionSeparator = name.indexOf("-");
+        return indexOfVersionSeparator >= 0 ? new Version(name.substring(indexOfVersionSeparator + 1)) : null;
+    }
+
+    private void index() {
+        files.clear();
+        libraries.clear();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(path, "*.cql")) {
+            for (Path file : stream) {
+                add(file);
+            }
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException(String.format("Could not index library sources in directory '%s'", path), e);
+        }
+    }
+
+    private void add(Path file) {
+        String fileName = file.getFileName().toString();
+        if (!fileName.endsWith(".cql")) {
+            return;
+        }
+
+        files.put(fileName, file);
+        try {
+            getVersion(fileName);
+        }
+        catch (IllegalArgumentException e) {
+            // The version is not valid, the file is only used if that version is requested
+            return;
+        }
+
+        libraries.computeIfAbsent(getLibraryName(fileName), k -> new LibraryFiles()).add(fileName, file);
+    }
+
+    private void remove(Path file) {
+        String fileName = file.getFileName().toString();
+        if (files.remove(fileName) == null) {
+            return;
+        }
+
+        String libraryName = getLibraryName(fileName);
+        LibraryFiles library = libraries.get(libraryName);
+        if (library != null) {
+            library.remove(fileName);
+            if (library.isEmpty()) {
+                libraries.remove(libraryName);
+            }
+        }
+    }
+
+    // Applies the changes to the directory since the last lookup
+    private void update() {
+        if (watchService == null) {
+            return;
+        }
+
+        boolean overflow = false;
+        WatchKey key;
+        while ((key = watchService.poll()) != null) {
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    overflow = true;
+                }
+                else {
+                    applyChange(event.kind(), (Path)event.context());
+                }
+            }
+            key.reset();
+        }
+
+        // Events were lost, the index is rebuilt
+        if (overflow) {
+            index();
+        }
+    }
+
+    /*
+    Applies a change to the directory, as reported by the watch service, to the index. A change may be applied more
+    than once, or after the file has been deleted again. Package-private so that the index can be tested without
+    waiting for the file system to report changes.
+     */
+    synchronized void applyChange(WatchEvent.Kind<?> kind, Path fileName) {
+        if (kind == StandardWatchEventKinds.ENTRY_CREATE) {
+            Path file = path.resolve(fileName);
+            // The deletion will be reported too, but the file must not be used until then
+            if (Files.exists(file)) {
+                add(file);
+            }
+        }
+        else if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
+            remove(path.resolve(fileName));
+        }
+    }
+
+    private Path resolveLibraryFile(VersionedIdentifier libraryIdentifier) {
+        String libraryName = libraryIdentifier.getId();
+        Path result = files.get(String.format("%s%s.cql", libraryName,
+                libraryIdentifier.getVersion() != null ? ("-" + libraryIdentifier.getVersion()) : ""));
+        if (result == null) {
+            LibraryFiles library = libraries.get(libraryName);
+            if (library != null) {
+                Version requestedVersion = libraryIdentifier.getVersion() == null ? null : new Version(libraryIdentifier.getVersion());
+                result = library.getMostRecentFile(requestedVersion);
+            }
+        }
+
+        return result;
+    }
+
+    private Path findLibraryFile(VersionedIdentifier libraryIdentifier) {
+        update();
+        Path libraryFile = resolveLibraryFile(libraryIdentifier);
+        if (libraryFile == null && watchService == null) {
+            // Without a watch, the index may not reflect files added since it was built
+            index();
+            libraryFile = resolveLibraryFile(libraryIdentifier);
+        }
+
+        return libraryFile;
+    }
+
+    @Override
+    public synchronized InputStream getLibrarySource(VersionedIdentifier libraryIdentifier) {
+        Path libraryFile = findLibraryFile(libraryIdentifier);
+        try {
+            if (libraryFile != null) {
+                return new FileInputStream(libraryFile.toFile());
+            }
+        } catch (FileNotFoundException e) {
+            throw new IllegalArgumentException(String.format("Could not load source for library %s.", libraryIdentifier.getId()), e);
+        }
+
+        return null;
+    }
+
+    @Override
+    public synchronized boolean hasLibrarySource(VersionedIdentifier libraryIdentifier) {
+        return findLibraryFile(libraryIdentifier) != null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+}
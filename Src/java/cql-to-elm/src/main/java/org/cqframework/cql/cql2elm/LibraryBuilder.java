@@ -3,6 +3,7 @@ package org.cqframework.cql.cql2elm;
 import org.cqframework.cql.cql2elm.CqlTranslator;
 import org.cqframework.cql.cql2elm.model.*;
 import org.cqframework.cql.cql2elm.model.invocation.*;
+import org.cqframework.cql.cql2elm.targetmap.TargetMap;
 import org.cqframework.cql.elm.tracking.TrackBack;
 import org.fhir.ucum.UcumService;
 import org.hl7.cql.model.*;
@@ -107,6 +108,7 @@ public class LibraryBuilder {
     private final Stack<String> expressionContext = new Stack<>();
     private final ExpressionDefinitionContextStack expressionDefinitions = new ExpressionDefinitionContextStack();
     private final Stack<FunctionDef> functionDefs = new Stack<>();
+    private final Stack<Map<String, OperandDef>> functionOperands = new Stack<>();
     private int literalContext = 0;
     private int typeSpecifierContext = 0;
     private NamespaceInfo namespaceInfo = null;
@@ -128,6 +130,7 @@ public class LibraryBuilder {
     private final ObjectFactory of = new ObjectFactory();
     private final org.hl7.cql_annotations.r1.ObjectFactory af = new org.hl7.cql_annotations.r1.ObjectFactory();
     private boolean listTraversal = true;
+    private final Map<ClassType, Map<String, PropertyResolution>> propertyResolutions = new HashMap<>();
     private UcumService ucumService = null;
     private CqlTranslatorOptions options;
     private CqlToElmInfo cqlToElmInfo = null;
@@ -157,6 +160,9 @@ public class LibraryBuilder {
         if (options.getOptions().contains(CqlTranslator.Options.EnableIntervalPromotion)) {
             this.getConversionMap().enableIntervalPromotion();
         }
+        if (options.getCacheConversions()) {
+            this.getConversionMap().enableConversionCache();
+        }
         setCompatibilityLevel(options.getCompatibilityLevel());
         this.cqlToElmInfo.setTranslatorOptions(options.toString());
     }
@@ -176,6 +182,7 @@ public class LibraryBuilder {
     }
     public void setCompatibilityLevel(String compatibilityLevel) {
         this.compatibilityLevel = compatibilityLevel;
+        this.propertyResolutions.clear();
         if (compatibilityLevel != null) {
             this.compatibilityVersion = new Version(compatibilityLevel);
         }
@@ -405,11 +412,11 @@ public class LibraryBuilder {
         // listTypeSpecifier: 'list' '<' typeSpecifier '>'
         if (typeSpecifier.toLowerCase().startsWith("interval<")) {
             DataType pointType = resolveTypeSpecifier(typeSpecifier.substring(typeSpecifier.indexOf('<') + 1, typeSpecifier.lastIndexOf('>')));
-            return new IntervalType(pointType);
+            return TypeInterner.intervalOf(pointType);
         }
         else if (typeSpecifier.toLowerCase().startsWith("list<")) {
             DataType elementType = resolveTypeName(typeSpecifier.substring(typeSpecifier.indexOf('<') + 1, typeSpecifier.lastIndexOf('>')));
-            return new ListType(elementType);
+            return TypeInterner.listOf(elementType);
         }
         else if (typeSpecifier.indexOf(".") >= 0) {
             String modelName = typeSpecifier.substring(0, typeSpecifier.indexOf("."));
@@ -452,9 +459,11 @@ public class LibraryBuilder {
     }
 
     private void loadSystemLibrary() {
-        TranslatedLibrary systemLibrary = SystemLibraryHelper.load(getSystemModel());
+        SystemModel systemModel = getSystemModel();
+        TranslatedLibrary systemLibrary = SystemLibraryHelper.getSystemLibrary(systemModel);
+        systemLibrary.getOperatorMap().setInstantiationCache(modelManager.getInstantiationCache());
         libraries.put(systemLibrary.getIdentifier().getId(), systemLibrary);
-        loadConversionMap(systemLibrary);
+        conversionMap.setBaseConversionMap(SystemLibraryHelper.getSystemConversionMap(systemModel));
     }
 
     private void loadConversionMap(TranslatedLibrary library) {
@@ -846,7 +855,7 @@ public class LibraryBuilder {
                 }
 
                 if (elementTypes.size() > 1) {
-                    ListType targetType = new ListType(new ChoiceType(elementTypes));
+                    ListType targetType = TypeInterner.listOf(TypeInterner.choiceOf(elementTypes));
                     left = of.createAs().withOperand(left).withAsTypeSpecifier(dataTypeToTypeSpecifier(targetType));
                     left.setResultType(targetType);
 
@@ -1301,7 +1310,7 @@ public class LibraryBuilder {
     }
 
     private void reportWarning(String message, Expression expression) {
-        TrackBack trackback = expression.getTrackbacks() != null && expression.getTrackbacks().size() > 0 ? expression.getTrackbacks().get(0) : null;
+        TrackBack trackback = expression.getFirstTrackback();
         CqlSemanticException warning = new CqlSemanticException(message, CqlTranslatorException.ErrorSeverity.Warning, trackback);
         recordParsingException(warning);
     }
@@ -1340,7 +1349,7 @@ public class LibraryBuilder {
     public Expression resolveToList(Expression expression) {
         // Use a ToList operator here to avoid duplicate evaluation of the operand.
         ToList toList = of.createToList().withOperand(expression);
-        toList.setResultType(new ListType(expression.getResultType()));
+        toList.setResultType(TypeInterner.listOf(expression.getResultType()));
         return toList;
     }
 
@@ -1375,9 +1384,9 @@ public class LibraryBuilder {
     public Expression resolveToInterval(Expression expression) {
         If condition = of.createIf();
         condition.setCondition(buildIsNull(expression));
-        condition.setThen(buildNull(new IntervalType(expression.getResultType())));
+        condition.setThen(buildNull(TypeInterner.intervalOf(expression.getResultType())));
         Interval toInterval = of.createInterval().withLow(expression).withHigh(expression).withLowClosed(true).withHighClosed(true);
-        toInterval.setResultType(new IntervalType(expression.getResultType()));
+        toInterval.setResultType(TypeInterner.intervalOf(expression.getResultType()));
         condition.setElse(toInterval);
         condition.setResultType(resolveTypeName("System", "Boolean"));
         return condition;
@@ -1830,7 +1839,7 @@ public class LibraryBuilder {
                 .withHighClosed(highClosed);
 
         DataType pointType = ensureCompatibleTypes(result.getLow().getResultType(), result.getHigh().getResultType());
-        result.setResultType(new IntervalType(pointType));
+        result.setResultType(TypeInterner.intervalOf(pointType));
 
         result.setLow(ensureCompatible(result.getLow(), pointType));
         result.setHigh(ensureCompatible(result.getHigh(), pointType));
@@ -1947,27 +1956,45 @@ public class LibraryBuilder {
 
     // TODO: Support case-insensitive models
     public PropertyResolution resolveProperty(DataType sourceType, String identifier, boolean mustResolve) {
+        // Resolutions of class type members are cached, they only depend on the type and the compatibility level
+        Map<String, PropertyResolution> classResolutions = null;
+        if (sourceType instanceof ClassType) {
+            classResolutions = propertyResolutions.computeIfAbsent((ClassType)sourceType, t -> new HashMap<>());
+            PropertyResolution resolution = classResolutions.get(identifier);
+            if (resolution != null) {
+                return resolution;
+            }
+        }
+
         DataType currentType = sourceType;
         while (currentType != null) {
             if (currentType instanceof ClassType) {
+                // Class types resolve members inherited from their base types, so a class type resolves the
+                // identifier against the whole base type chain
                 ClassType classType = (ClassType)currentType;
                 if (identifier.startsWith("?") && isCompatibleWith("1.5")) {
                     String searchPath = identifier.substring(1);
-                    for (SearchType s : classType.getSearches()) {
-                        if (s.getName().equals(searchPath)) {
-                            return new PropertyResolution(s);
+                    SearchType s = classType.resolveSearch(searchPath);
+                    if (s != null) {
+                        PropertyResolution resolution = new PropertyResolution(s);
+                        if (classResolutions != null) {
+                            classResolutions.put(identifier, resolution);
                         }
+                        return resolution;
                     }
                 }
                 else {
-                    for (ClassTypeElement e : classType.getElements()) {
-                        if (e.getName().equals(identifier)) {
-                            if (e.isProhibited()) {
-                                throw new IllegalArgumentException(String.format("Element %s cannot be referenced because it is marked prohibited in type %s.", e.getName(), ((ClassType) currentType).getName()));
-                            }
+                    ClassTypeElement e = classType.resolveElement(identifier);
+                    if (e != null) {
+                        if (e.isProhibited()) {
+                            throw new IllegalArgumentException(String.format("Element %s cannot be referenced because it is marked prohibited in type %s.", e.getName(), ((ClassType) currentType).getName()));
+                        }
 
-                            return new PropertyResolution(e);
+                        PropertyResolution resolution = new PropertyResolution(e);
+                        if (classResolutions != null) {
+                            classResolutions.put(identifier, resolution);
                         }
+                        return resolution;
                     }
                 }
             }
@@ -2037,7 +2064,7 @@ public class LibraryBuilder {
 
                 // The result type is a choice of all the resolved types
                 if (resultTypes.size() > 1) {
-                    return new PropertyResolution(new ChoiceType(resultTypes), name, resultTargetMaps);
+                    return new PropertyResolution(TypeInterner.choiceOf(resultTypes), name, resultTargetMaps);
                 }
 
                 if (resultTypes.size() == 1) {
@@ -2051,7 +2078,7 @@ public class LibraryBuilder {
                 // Resolve property as a list of items of property of the element type
                 ListType listType = (ListType)currentType;
                 PropertyResolution resolution = resolveProperty(listType.getElementType(), identifier);
-                return new PropertyResolution(new ListType(resolution.getType()), resolution.getTargetMap());
+                return new PropertyResolution(TypeInterner.listOf(resolution.getType()), resolution.getTargetMap());
             }
 
             if (currentType.getBaseType() != null) {
@@ -2338,169 +2365,132 @@ public class LibraryBuilder {
             return source;
         }
 
-        // TODO: This only works for simple mappings, nested mappings will require the targetMap.g4 parser
-        // Supported target mapping syntax:
-          // %value.<property name>
-            // Resolves as a property accessor with the given source and <property name> as the path
-          // <qualified function name>(%value)
-            // Resolves as a function ref with the given function name and the source as an operand
-          // <type name>:<map>;<type name>:<map>...
-            // Semi-colon delimited list of type names and associated maps
-            // Resolves as a case with whens for each type, with target mapping applied per the target map for that type
-          // %parent.<qualified path>[<key path>=<key value>,<key path>=<key value>,...].<qualified path>
-            // Resolves as a replacement of the property on which it appears
-            // Replaces the path of the property on which it appears with the given qualified path, which then becomes the
-            // source of a query with a where clause with criteria built for each comparison in the indexer
-            // If there is a trailing qualified path, the query is wrapped in a singletonFrom and a property access
-        // Any other target map results in an exception
-
-        if (targetMap.contains(";")) {
-            String[] typeCases = targetMap.split(";");
-            Case c = of.createCase();
-            for (String typeCase : typeCases) {
-                if (!typeCase.isEmpty()) {
-                    String[] caseElements = typeCase.split(":");
-                    if (caseElements.length != 2) {
-                        throw new IllegalArgumentException(String.format("Malformed type case in targetMap %s", targetMap));
-                    }
-                    CaseItem ci = of.createCaseItem().withWhen(of.createIs().withOperand(applyTargetMap(source, caseElements[1])).withIsType(dataTypeToQName(resolveTypeName(caseElements[0]))))
-                            .withThen(applyTargetMap(source, caseElements[1]));
+        // Target maps are compiled once, see TargetMap for the supported target mapping syntax
+        return applyTargetMap(source, TargetMap.compile(targetMap));
+    }
+
+    private Expression applyTargetMap(Expression source, TargetMap targetMap) {
+        switch (targetMap.getKind()) {
+            case NULL:
+                return source;
+
+            case CHOICE: {
+                Case c = of.createCase();
+                for (TargetMap.ChoiceItem choiceItem : targetMap.getChoiceItems()) {
+                    CaseItem ci = of.createCaseItem().withWhen(of.createIs().withOperand(applyTargetMap(source, choiceItem.getMap())).withIsType(dataTypeToQName(resolveTypeName(choiceItem.getTypeName()))))
+                            .withThen(applyTargetMap(source, choiceItem.getMap()));
                     c.getCaseItem().add(ci);
                 }
+                c.setElse(this.buildNull(source.getResultType()));
+                c.setResultType(source.getResultType());
+                return c;
             }
-            c.setElse(this.buildNull(source.getResultType()));
-            c.setResultType(source.getResultType());
-            return c;
-        }
-        else if (targetMap.contains("(")) {
-            int invocationStart = targetMap.indexOf("(");
-            String qualifiedFunctionName = targetMap.substring(0, invocationStart);
-            String[] nameParts = qualifiedFunctionName.split("\\.");
-            String libraryName = null;
-            String functionName = qualifiedFunctionName;
-            if (nameParts.length == 2) {
-                libraryName = nameParts[0];
-                functionName = nameParts[1];
-
-                ensureLibraryIncluded(libraryName, source);
-            }
-            
-            String functionArgument = targetMap.substring(invocationStart + 1, targetMap.lastIndexOf(')'));
-            FunctionRef fr = of.createFunctionRef()
-                    .withLibraryName(libraryName).withName(functionName)
-                    .withOperand(functionArgument.equals("%value") ? source : applyTargetMap(source, functionArgument));
-            fr.setResultType(source.getResultType());
-            return fr;
-        }
-        else if (targetMap.contains("[")) {
-            int indexerStart = targetMap.indexOf("[");
-            int indexerEnd = targetMap.indexOf("]");
-            String indexer = targetMap.substring(indexerStart + 1, indexerEnd);
-            String indexerPath = targetMap.substring(0, indexerStart);
-
-            Expression result = null;
-
-            // Apply sourcePaths to get to the indexer
-            String[] indexerPaths = indexerPath.split("\\.");
-            for (String path : indexerPaths) {
-                if (path.equals("%parent")) {
-                    if (!(source instanceof Property)) {
-                        throw new IllegalArgumentException(String.format("Cannot expand target map %s for non-property-accessor type %s",
-                                targetMap, source.getClass().getSimpleName()));
-                    }
-                    Property sourceProperty = (Property)source;
-                    if (sourceProperty.getSource() != null) {
-                        result = sourceProperty.getSource();
-                    }
-                    else if (sourceProperty.getScope() != null) {
-                        result = resolveIdentifier(sourceProperty.getScope(), true);
+
+            case FUNCTION: {
+                if (targetMap.getLibraryName() != null) {
+                    ensureLibraryIncluded(targetMap.getLibraryName(), source);
+                }
+
+                FunctionRef fr = of.createFunctionRef()
+                        .withLibraryName(targetMap.getLibraryName()).withName(targetMap.getFunctionName())
+                        .withOperand(targetMap.getArgument() == null ? source : applyTargetMap(source, targetMap.getArgument()));
+                fr.setResultType(source.getResultType());
+                return fr;
+            }
+
+            case INDEXER: {
+                Expression result = null;
+
+                // Apply sourcePaths to get to the indexer
+                for (String path : targetMap.getIndexerPath()) {
+                    if (path.equals("%parent")) {
+                        if (!(source instanceof Property)) {
+                            throw new IllegalArgumentException(String.format("Cannot expand target map %s for non-property-accessor type %s",
+                                    targetMap.getText(), source.getClass().getSimpleName()));
+                        }
+                        Property sourceProperty = (Property)source;
+                        if (sourceProperty.getSource() != null) {
+                            result = sourceProperty.getSource();
+                        }
+                        else if (sourceProperty.getScope() != null) {
+                            result = resolveIdentifier(sourceProperty.getScope(), true);
+                        }
+                        else {
+                            throw new IllegalArgumentException(String.format("Cannot resolve %%parent reference in targetMap %s",
+                                    targetMap.getText()));
+                        }
                     }
                     else {
-                        throw new IllegalArgumentException(String.format("Cannot resolve %parent reference in targetMap %s",
-                                targetMap));
+                        Property p = of.createProperty().withSource(result).withPath(path);
+                        result = p;
                     }
                 }
-                else {
-                    Property p = of.createProperty().withSource(result).withPath(path);
-                    result = p;
-                }
-            }
 
-            // Build a query with the current result as source and the indexer content as criteria in the where clause
-            AliasedQuerySource querySource = of.createAliasedQuerySource().withExpression(result).withAlias("$this");
+                // Build a query with the current result as source and the indexer content as criteria in the where clause
+                AliasedQuerySource querySource = of.createAliasedQuerySource().withExpression(result).withAlias("$this");
 
-            Expression criteria = null;
-            for (String indexerItem : indexer.split(",")) {
-                String[] indexerItems = indexerItem.split("=");
-                if (indexerItems.length != 2) {
-                    throw new IllegalArgumentException(String.format("Invalid indexer item %s in targetMap %s", indexerItem, targetMap));
-                }
+                Expression criteria = null;
+                for (TargetMap.IndexerItem indexerItem : targetMap.getIndexerItems()) {
+                    Expression left = null;
+                    for (String path : indexerItem.getPathParts()) {
+                        if (left == null) {
+                            left = of.createProperty().withScope("$this").withPath(path);
+                        }
+                        else {
+                            left = of.createProperty().withSource(left).withPath(path);
+                        }
 
-                Expression left = null;
-                for (String path : indexerItems[0].split("\\.")) {
-                    if (left == null) {
-                        left = of.createProperty().withScope("$this").withPath(path);
-                    }
-                    else {
-                        left = of.createProperty().withSource(left).withPath(path);
+                        // HACK: Workaround the fact that we don't have type information for the mapping expansions...
+                        if (path.equals("coding")) {
+                            left = of.createFirst().withSource(left);
+                        }
+                        if (path.equals("url")) {
+                            left = of.createFunctionRef().withLibraryName("FHIRHelpers").withName("ToString").withOperand(left);
+                        }
                     }
 
                     // HACK: Workaround the fact that we don't have type information for the mapping expansions...
-                    if (path.equals("coding")) {
-                        left = of.createFirst().withSource(left);
-                    }
-                    if (path.equals("url")) {
+                    // These hacks will be removed when addressed by the model info
+                    if (indexerItem.getPath().equals("code.coding.system") || indexerItem.getPath().equals("code.coding.code")) {
                         left = of.createFunctionRef().withLibraryName("FHIRHelpers").withName("ToString").withOperand(left);
                     }
-                }
-
-                // HACK: Workaround the fact that we don't have type information for the mapping expansions...
-                // These hacks will be removed when addressed by the model info
-                if (indexerItems[0].equals("code.coding.system") || indexerItems[0].equals("code.coding.code")) {
-                    left = of.createFunctionRef().withLibraryName("FHIRHelpers").withName("ToString").withOperand(left);
-                }
 
-                String rightValue = indexerItems[1].substring(1, indexerItems[1].length() - 1);
-                Expression right = this.createLiteral(StringEscapeUtils.unescapeCql(rightValue));
+                    Expression right = this.createLiteral(indexerItem.getValue());
 
-                Expression criteriaItem = of.createEqual().withOperand(left, right);
-                if (criteria == null) {
-                    criteria = criteriaItem;
-                }
-                else {
-                    criteria = of.createAnd().withOperand(criteria, criteriaItem);
+                    Expression criteriaItem = of.createEqual().withOperand(left, right);
+                    if (criteria == null) {
+                        criteria = criteriaItem;
+                    }
+                    else {
+                        criteria = of.createAnd().withOperand(criteria, criteriaItem);
+                    }
                 }
-            }
-
-            Query query = of.createQuery().withSource(querySource).withWhere(criteria);
-            result = query;
 
-            if (indexerEnd < targetMap.length()) {
-                // There are additional paths following the indexer, apply them
-                String targetPath = targetMap.substring(indexerEnd + 1);
-                if (targetPath.startsWith(".")) {
-                    targetPath = targetPath.substring(1);
-                }
+                Query query = of.createQuery().withSource(querySource).withWhere(criteria);
+                result = query;
 
-                // Use a singleton from since the source of the query is a list
-                result = of.createSingletonFrom().withOperand(result);
+                if (targetMap.getTargetPath() != null) {
+                    // There are additional paths following the indexer, apply them
+                    // Use a singleton from since the source of the query is a list
+                    result = of.createSingletonFrom().withOperand(result);
 
-                for (String path : targetPath.split("\\.")) {
-                    result = of.createProperty().withSource(result).withPath(path);
+                    for (String path : targetMap.getTargetPath()) {
+                        result = of.createProperty().withSource(result).withPath(path);
+                    }
                 }
+
+                result.setResultType(source.getResultType());
+                return result;
             }
 
-            result.setResultType(source.getResultType());
-            return result;
-        }
-        else if (targetMap.contains("%value.")) {
-            String propertyName = targetMap.substring(7);
-            Property p = of.createProperty().withSource(source).withPath(propertyName);
-            p.setResultType(source.getResultType());
-            return p;
+            case PROPERTY: {
+                Property p = of.createProperty().withSource(source).withPath(targetMap.getPropertyName());
+                p.setResultType(source.getResultType());
+                return p;
+            }
         }
 
-        throw new IllegalArgumentException(String.format("TargetMapping not implemented: %s", targetMap));
+        throw new IllegalArgumentException(String.format("TargetMapping not implemented: %s", targetMap.getText()));
     }
 
     public Expression resolveAccessor(Expression left, String memberIdentifier) {
@@ -2609,7 +2599,7 @@ public class LibraryBuilder {
                     .withSource(source)
                     .withWhere(not)
                     .withReturn(of.createReturnClause().withDistinct(false).withExpression(accessor));
-            query.setResultType(new ListType(accessor.getResultType()));
+            query.setResultType(TypeInterner.listOf(accessor.getResultType()));
 
             if (accessor.getResultType() instanceof ListType) {
                 Flatten result = of.createFlatten().withOperand(query);
@@ -2653,14 +2643,9 @@ public class LibraryBuilder {
     }
 
     private AliasedQuerySource resolveAlias(String identifier) {
-        // Need to use a for loop to go through backwards, iteration on a Stack is bottom up
+        // The innermost query context resolves aliases of all the enclosing query contexts, see QueryContext.enterScope
         if (inQueryContext()) {
-            for (int i = getScope().getQueries().size() - 1; i >= 0; i--) {
-                AliasedQuerySource source = getScope().getQueries().get(i).resolveAlias(identifier);
-                if (source != null) {
-                    return source;
-                }
-            }
+            return peekQueryContext().resolveVisibleAlias(identifier);
         }
 
         return null;
@@ -2692,27 +2677,20 @@ public class LibraryBuilder {
     }
 
     private LetClause resolveQueryLet(String identifier) {
-        // Need to use a for loop to go through backwards, iteration on a Stack is bottom up
         if (inQueryContext()) {
-            for (int i = getScope().getQueries().size() - 1; i >= 0; i--) {
-                LetClause let = getScope().getQueries().get(i).resolveLet(identifier);
-                if (let != null) {
-                    return let;
-                }
-            }
+            return peekQueryContext().resolveVisibleLet(identifier);
         }
 
         return null;
     }
 
     private OperandRef resolveOperandRef(String identifier) {
-        if (!functionDefs.empty()) {
-            for (OperandDef operand : functionDefs.peek().getOperand()) {
-                if (operand.getName().equals(identifier)) {
-                    return (OperandRef)of.createOperandRef()
-                            .withName(identifier)
-                            .withResultType(operand.getResultType());
-                }
+        if (!functionOperands.empty()) {
+            OperandDef operand = functionOperands.peek().get(identifier);
+            if (operand != null) {
+                return (OperandRef)of.createOperandRef()
+                        .withName(identifier)
+                        .withResultType(operand.getResultType());
             }
         }
 
@@ -2741,7 +2719,7 @@ public class LibraryBuilder {
 
             DataType resultType = expressionDef.getResultType();
             if (!(resultType instanceof ListType)) {
-                return new ListType(resultType);
+                return TypeInterner.listOf(resultType);
             }
             else {
                 return resultType;
@@ -2874,6 +2852,9 @@ public class LibraryBuilder {
     }
 
     public void pushQueryContext(QueryContext context) {
+        if (!getScope().getQueries().empty()) {
+            context.enterScope(getScope().getQueries().peek());
+        }
         getScope().getQueries().push(context);
     }
 
@@ -2899,10 +2880,17 @@ public class LibraryBuilder {
 
     public void beginFunctionDef(FunctionDef functionDef) {
         functionDefs.push(functionDef);
+        // Operands are indexed by name, the first operand with a given name is the one referenced
+        Map<String, OperandDef> operands = new HashMap<>();
+        for (OperandDef operand : functionDef.getOperand()) {
+            operands.putIfAbsent(operand.getName(), operand);
+        }
+        functionOperands.push(operands);
     }
 
     public void endFunctionDef() {
         functionDefs.pop();
+        functionOperands.pop();
     }
 
     public void pushLiteralContext() {
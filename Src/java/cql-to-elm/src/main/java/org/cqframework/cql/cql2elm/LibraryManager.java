@@ -1,15 +1,25 @@
 package org.cqframework.cql.cql2elm;
 
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.misc.Interval;
 import org.cqframework.cql.cql2elm.model.TranslatedLibrary;
 import org.fhir.ucum.UcumService;
+import org.hl7.elm.r1.IncludeDef;
+import org.hl7.elm.r1.Library;
 import org.hl7.elm.r1.VersionedIdentifier;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Stack;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 
 import static org.cqframework.cql.cql2elm.CqlTranslatorException.HasErrors;
 
@@ -17,14 +27,60 @@ import static org.cqframework.cql.cql2elm.CqlTranslatorException.HasErrors;
  * Manages a set of CQL libraries. As new library references are encountered
  * during translation, the corresponding source is obtained via
  * librarySourceLoader, translated and cached for later use.
+ *
+ * A LibraryManager may be shared by translations running on different threads.
+ * Each library is translated at most once at a time: a thread that requests a
+ * library that is being translated by another thread waits for that translation
+ * to complete and uses its result. Circular library references are detected per
+ * thread, as well as across the threads waiting on each other's translations.
+ *
+ * If a compiled library cache is set, included libraries are read from the cache
+ * instead of being translated when their source, their included libraries and the
+ * translator options are unchanged since they were cached.
+ *
+ * If an ELM library provider is set, included libraries for which it provides ELM
+ * are loaded from that ELM, and their source is not used. The libraries included by
+ * a library loaded from ELM are resolved as they would be for its translation.
+ *
+ * Whether an include can be resolved (see canResolveLibrary) is determined without
+ * reading the source of the library where the source providers allow it. The ELM read
+ * to determine whether an include of the current translation can be resolved is the
+ * one used when the include is resolved, it is not kept beyond that translation.
  */
 public class LibraryManager {
     private ModelManager modelManager;
     private NamespaceManager namespaceManager;
     private UcumService ucumService;
     private final Map<String, TranslatedLibrary> libraries;
-    private final Stack<String> translationStack;
+    private final Map<String, LibraryTranslation> translations;
+    private final ThreadLocal<Deque<Translation>> translationStack;
+    // The library translation each thread is waiting on, used to detect circular references between translations
+    // running on different threads
+    private final Map<Thread, String> awaitedTranslations;
     private LibrarySourceLoader librarySourceLoader;
+    private CompiledLibraryCache compiledLibraryCache;
+    private ElmLibraryProvider elmLibraryProvider;
+    // The compiled library cache keys of the libraries in this manager, by library path
+    private final Map<String, String> libraryKeys;
+
+    private static class LibraryTranslation {
+        private final Thread owner = Thread.currentThread();
+        private final CompletableFuture<TranslatedLibrary> result = new CompletableFuture<>();
+        private final List<CqlTranslatorException> errors = new ArrayList<>();
+    }
+
+    /*
+    A library being translated on the current thread, and the ELM of its includes read by canResolveLibrary that has
+    not been used by resolveLibrary yet, see getSourceKey
+     */
+    private static class Translation {
+        private final String libraryName;
+        private final Map<String, Library> resolvedElmLibraries = new HashMap<>();
+
+        Translation(String libraryName) {
+            this.libraryName = libraryName;
+        }
+    }
 
     public LibraryManager(ModelManager modelManager) {
         if (modelManager == null) {
@@ -37,8 +93,11 @@ public class LibraryManager {
         else {
             this.namespaceManager = new NamespaceManager();
         }
-        libraries = new HashMap<>();
-        translationStack = new Stack<>();
+        libraries = new ConcurrentHashMap<>();
+        translations = new ConcurrentHashMap<>();
+        translationStack = new ThreadLocal<>();
+        awaitedTranslations = new ConcurrentHashMap<>();
+        libraryKeys = new ConcurrentHashMap<>();
         this.librarySourceLoader = new PriorityLibrarySourceLoader();
     }
 
@@ -66,6 +125,22 @@ public class LibraryManager {
         this.librarySourceLoader = librarySourceLoader;
     }
 
+    public CompiledLibraryCache getCompiledLibraryCache() {
+        return compiledLibraryCache;
+    }
+
+    public void setCompiledLibraryCache(CompiledLibraryCache compiledLibraryCache) {
+        this.compiledLibraryCache = compiledLibraryCache;
+    }
+
+    public ElmLibraryProvider getElmLibraryProvider() {
+        return elmLibraryProvider;
+    }
+
+    public void setElmLibraryProvider(ElmLibraryProvider elmLibraryProvider) {
+        this.elmLibraryProvider = elmLibraryProvider;
+    }
+
     public Map<String, TranslatedLibrary> getTranslatedLibraries() {
         return libraries;
     }
@@ -91,6 +166,12 @@ public class LibraryManager {
         libraries.put(libraryPath, library);
     }
 
+    /*
+    Returns true if the library is loaded, or if its ELM or source can be obtained. This does not translate the library,
+    nor read its source unless the source providers can only tell whether they have it by opening it (see
+    LibrarySourceProvider.hasLibrarySource). ELM read here for an include of the current translation is kept until the
+    include is resolved (see resolveLibrary) or the translation ends, rather than being read again.
+     */
     public boolean canResolveLibrary(VersionedIdentifier libraryIdentifier) {
         if (libraryIdentifier == null) {
             throw new IllegalArgumentException("libraryIdentifier is null.");
@@ -106,15 +187,49 @@ public class LibraryManager {
             return true;
         }
 
-        InputStream librarySource = null;
+        if (elmLibraryProvider != null) {
+            Translation translation = getCurrentTranslation();
+            String sourceKey = getSourceKey(libraryIdentifier);
+            if (translation != null && translation.resolvedElmLibraries.containsKey(sourceKey)) {
+                return true;
+            }
+
+            Library elmLibrary = getElmLibrary(libraryIdentifier);
+            if (elmLibrary != null) {
+                // Checks made outside of a translation are not followed by the resolution of an include, nothing is kept
+                if (translation != null) {
+                    translation.resolvedElmLibraries.put(sourceKey, elmLibrary);
+                }
+                return true;
+            }
+        }
+
         try {
-            librarySource = librarySourceLoader.getLibrarySource(libraryIdentifier);
+            return librarySourceLoader.hasLibrarySource(libraryIdentifier);
         }
         catch (Exception e) {
             throw new CqlTranslatorIncludeException(e.getMessage(), libraryIdentifier.getSystem(), libraryIdentifier.getId(), libraryIdentifier.getVersion(), e);
         }
+    }
+
+    // The translation in progress on the current thread, or null if there is none
+    private Translation getCurrentTranslation() {
+        Deque<Translation> stack = translationStack.get();
+        return stack != null ? stack.peek() : null;
+    }
 
-        return librarySource != null;
+    private static String getSourceKey(VersionedIdentifier libraryIdentifier) {
+        String libraryPath = NamespaceManager.getPath(libraryIdentifier.getSystem(), libraryIdentifier.getId());
+        return libraryIdentifier.getVersion() != null ? libraryPath + "|" + libraryIdentifier.getVersion() : libraryPath;
+    }
+
+    private CharStream getLibraryCharStream(VersionedIdentifier libraryIdentifier) {
+        try {
+            return librarySourceLoader.getLibraryCharStream(libraryIdentifier);
+        }
+        catch (Exception e) {
+            throw new CqlTranslatorIncludeException(e.getMessage(), libraryIdentifier.getSystem(), libraryIdentifier.getId(), libraryIdentifier.getVersion(), e);
+        }
     }
 
     public TranslatedLibrary resolveLibrary(VersionedIdentifier libraryIdentifier, CqlTranslatorOptions options, List<CqlTranslatorException> errors) {
@@ -127,40 +242,184 @@ public class LibraryManager {
         }
 
         String libraryPath = NamespaceManager.getPath(libraryIdentifier.getSystem(), libraryIdentifier.getId());
+        // ELM read by canResolveLibrary is only used by this resolution, whether or not it needs the ELM
+        Translation currentTranslation = getCurrentTranslation();
+        Library resolvedElmLibrary = currentTranslation != null
+                ? currentTranslation.resolvedElmLibraries.remove(getSourceKey(libraryIdentifier)) : null;
         TranslatedLibrary library = libraries.get(libraryPath);
+        if (library != null) {
+            return checkLoadedLibrary(libraryPath, libraryIdentifier, library);
+        }
+
+        LibraryTranslation translation = new LibraryTranslation();
+        LibraryTranslation existing = translations.putIfAbsent(libraryPath, translation);
+        if (existing != null) {
+            return awaitTranslation(libraryPath, libraryIdentifier, existing, errors);
+        }
+
+        try {
+            // A translation of this library may have completed since the lookup above
+            library = libraries.get(libraryPath);
+            if (library != null) {
+                translation.result.complete(library);
+                return checkLoadedLibrary(libraryPath, libraryIdentifier, library);
+            }
+
+            library = translateLibrary(libraryIdentifier, resolvedElmLibrary, options, translation.errors);
+            if (!HasErrors(translation.errors)) {
+                // The library is shared by every translation that includes it
+                library.getOperatorMap().freeze();
+                libraries.put(libraryPath, library);
+            }
+            translation.result.complete(library);
+        }
+        catch (RuntimeException e) {
+            translation.result.completeExceptionally(e);
+            throw e;
+        }
+        finally {
+            // Libraries that fail to translate are not cached, so later requests will attempt the translation again
+            translations.remove(libraryPath, translation);
+        }
+
+        if (errors != null) {
+            errors.addAll(translation.errors);
+        }
 
-        if (library != null
-                && libraryIdentifier.getVersion() != null
+        return library;
+    }
+
+    private TranslatedLibrary checkLoadedLibrary(String libraryPath, VersionedIdentifier libraryIdentifier, TranslatedLibrary library) {
+        if (libraryIdentifier.getVersion() != null
                 && !libraryIdentifier.getVersion().equals(library.getIdentifier().getVersion())) {
             throw new CqlTranslatorIncludeException(String.format("Could not resolve reference to library %s, version %s because version %s is already loaded.",
                     libraryPath, libraryIdentifier.getVersion(), library.getIdentifier().getVersion()), libraryIdentifier.getSystem(), libraryIdentifier.getId(), libraryIdentifier.getVersion());
         }
 
-        else if (library != null) {
-            if (libraryIdentifier.getSystem() == null && library.getIdentifier().getSystem() != null) {
-                libraryIdentifier.setSystem(library.getIdentifier().getSystem());
-            }
-            return library;
+        if (libraryIdentifier.getSystem() == null && library.getIdentifier().getSystem() != null) {
+            libraryIdentifier.setSystem(library.getIdentifier().getSystem());
         }
 
-        else {
-            library = translateLibrary(libraryIdentifier, options, errors);
-            if (!HasErrors(errors)) {
-                libraries.put(libraryPath, library);
+        return library;
+    }
+
+    private TranslatedLibrary awaitTranslation(String libraryPath, VersionedIdentifier libraryIdentifier, LibraryTranslation translation, List<CqlTranslatorException> errors) {
+        Thread currentThread = Thread.currentThread();
+        awaitedTranslations.put(currentThread, libraryPath);
+        TranslatedLibrary library;
+        try {
+            checkCircularTranslation(libraryPath, translation.owner);
+            library = translation.result.get();
+        }
+        catch (InterruptedException e) {
+            currentThread.interrupt();
+            throw new CqlTranslatorIncludeException(String.format("Interrupted while waiting for translation of library %s, version %s.",
+                    libraryPath, libraryIdentifier.getVersion()), libraryIdentifier.getSystem(), libraryIdentifier.getId(), libraryIdentifier.getVersion(), e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)e.getCause();
             }
+
+            throw new CqlTranslatorIncludeException(String.format("Errors occurred translating library %s, version %s.",
+                    libraryPath, libraryIdentifier.getVersion()), libraryIdentifier.getSystem(), libraryIdentifier.getId(), libraryIdentifier.getVersion(), e.getCause());
+        }
+        finally {
+            awaitedTranslations.remove(currentThread);
         }
 
-        return library;
+        if (errors != null) {
+            errors.addAll(translation.errors);
+        }
+
+        return checkLoadedLibrary(libraryPath, libraryIdentifier, library);
+    }
+
+    /*
+    Follows the chain of threads waiting on each other's library translations, starting with the thread translating the
+    awaited library. If the chain leads back to the current thread, the wait would never complete, the reference is circular.
+     */
+    private void checkCircularTranslation(String libraryPath, Thread owner) {
+        Thread currentThread = Thread.currentThread();
+        Thread thread = owner;
+        while (thread != null) {
+            if (thread == currentThread) {
+                throw new IllegalArgumentException(String.format("Circular library reference %s.", libraryPath));
+            }
+
+            String awaitedLibraryPath = awaitedTranslations.get(thread);
+            LibraryTranslation awaitedTranslation = awaitedLibraryPath != null ? translations.get(awaitedLibraryPath) : null;
+            thread = awaitedTranslation != null ? awaitedTranslation.owner : null;
+        }
     }
 
-    private TranslatedLibrary translateLibrary(VersionedIdentifier libraryIdentifier, CqlTranslatorOptions options, List<CqlTranslatorException> errors) {
-        InputStream librarySource = null;
+    private Library getElmLibrary(VersionedIdentifier libraryIdentifier) {
         try {
-            librarySource = librarySourceLoader.getLibrarySource(libraryIdentifier);
+            return elmLibraryProvider.getLibrary(libraryIdentifier);
         }
         catch (Exception e) {
             throw new CqlTranslatorIncludeException(e.getMessage(), libraryIdentifier.getSystem(), libraryIdentifier.getId(), libraryIdentifier.getVersion(), e);
         }
+    }
+
+    /*
+    Returns the library loaded from the given ELM, or null if it cannot be loaded. In that case, the library is
+    translated from its source. The libraries it includes are resolved, and failures to resolve them are reported as
+    errors, as they would be by its translation.
+     */
+    private TranslatedLibrary loadElmLibrary(VersionedIdentifier libraryIdentifier, Library library,
+                                             CqlTranslatorOptions options, List<CqlTranslatorException> errors) {
+        String libraryPath = NamespaceManager.getPath(libraryIdentifier.getSystem(), libraryIdentifier.getId());
+        TranslatedLibrary result;
+        try {
+            result = new TranslatedLibraryLoader(modelManager).load(library);
+        }
+        catch (IllegalArgumentException e) {
+            if (errors != null) {
+                errors.add(new CqlTranslatorException(String.format("Could not load library %s from ELM, its source will be translated instead: %s",
+                        libraryPath, e.getMessage()), CqlTranslatorException.ErrorSeverity.Warning));
+            }
+            return null;
+        }
+
+        checkLibraryVersion(libraryIdentifier, libraryPath, result);
+        if (library.getIncludes() != null) {
+            for (IncludeDef includeDef : library.getIncludes().getDef()) {
+                VersionedIdentifier includeIdentifier = new VersionedIdentifier()
+                        .withSystem(NamespaceManager.getUriPart(includeDef.getPath()))
+                        .withId(NamespaceManager.getNamePart(includeDef.getPath()))
+                        .withVersion(includeDef.getVersion());
+                List<CqlTranslatorException> includeErrors = errors != null ? errors : new ArrayList<>();
+                try {
+                    resolveLibrary(includeIdentifier, options, includeErrors);
+                }
+                catch (CqlTranslatorIncludeException e) {
+                    includeErrors.add(new CqlTranslatorException(e.getMessage(), e));
+                }
+                catch (RuntimeException e) {
+                    includeErrors.add(new CqlTranslatorException(e.getMessage(), new CqlTranslatorIncludeException(e.getMessage(),
+                            includeIdentifier.getSystem(), includeIdentifier.getId(), includeIdentifier.getVersion(), e)));
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private TranslatedLibrary translateLibrary(VersionedIdentifier libraryIdentifier, Library resolvedElmLibrary,
+                                               CqlTranslatorOptions options, List<CqlTranslatorException> errors) {
+        if (elmLibraryProvider != null) {
+            // The ELM read by canResolveLibrary, or if it was not read for the current translation, the ELM provided for it
+            Library elmLibrary = resolvedElmLibrary != null ? resolvedElmLibrary : getElmLibrary(libraryIdentifier);
+            if (elmLibrary != null) {
+                TranslatedLibrary result = loadElmLibrary(libraryIdentifier, elmLibrary, options, errors);
+                if (result != null) {
+                    return result;
+                }
+            }
+        }
+
+        CharStream librarySource = getLibraryCharStream(libraryIdentifier);
 
         String libraryPath = NamespaceManager.getPath(libraryIdentifier.getSystem(), libraryIdentifier.getId());
         if (librarySource == null) {
@@ -168,24 +427,141 @@ public class LibraryManager {
                     libraryPath, libraryIdentifier.getVersion()), libraryIdentifier.getSystem(), libraryIdentifier.getId(), libraryIdentifier.getVersion());
         }
 
-        try {
-            CqlTranslator translator = CqlTranslator.fromStream(namespaceManager.getNamespaceInfoFromUri(libraryIdentifier.getSystem()),
-                    libraryIdentifier, librarySource, modelManager, this, ucumService, options);
+        if (compiledLibraryCache != null) {
+            return translateCachedLibrary(libraryIdentifier, libraryPath, librarySource, options, errors);
+        }
+
+        return translateLibrary(libraryIdentifier, libraryPath, librarySource, options, errors);
+    }
+
+    private TranslatedLibrary translateLibrary(VersionedIdentifier libraryIdentifier, String libraryPath, CharStream librarySource,
+                                               CqlTranslatorOptions options, List<CqlTranslatorException> errors) {
+        CqlTranslator translator = CqlTranslator.fromCharStream(namespaceManager.getNamespaceInfoFromUri(libraryIdentifier.getSystem()),
+                libraryIdentifier, librarySource, modelManager, this, ucumService, options);
+        if (errors != null) {
+            errors.addAll(translator.getExceptions());
+        }
+
+        TranslatedLibrary result = translator.getTranslatedLibrary();
+        checkLibraryVersion(libraryIdentifier, libraryPath, result);
+        return result;
+    }
+
+    private void checkLibraryVersion(VersionedIdentifier libraryIdentifier, String libraryPath, TranslatedLibrary library) {
+        if (libraryIdentifier.getVersion() != null && !libraryIdentifier.getVersion().equals(library.getIdentifier().getVersion())) {
+            throw new CqlTranslatorIncludeException(String.format("Library %s was included as version %s, but version %s of the library was found.",
+                    libraryPath, libraryIdentifier.getVersion(), library.getIdentifier().getVersion()),
+                    libraryIdentifier.getSystem(), libraryIdentifier.getId(), libraryIdentifier.getVersion());
+        }
+    }
+
+    private TranslatedLibrary translateCachedLibrary(VersionedIdentifier libraryIdentifier, String libraryPath, CharStream librarySource,
+                                                     CqlTranslatorOptions options, List<CqlTranslatorException> errors) {
+        // The key is computed from the UTF-8 encoding of the decoded source, which is the source itself for valid UTF-8
+        byte[] source = librarySource.getText(Interval.of(0, librarySource.size() - 1)).getBytes(StandardCharsets.UTF_8);
+        String key = CompiledLibraryFormat.getKey(libraryPath, source, options, ucumService != null);
+        TranslatedLibrary result = readCachedLibrary(key, options, errors);
+        if (result == null) {
+            List<CqlTranslatorException> translationErrors = new ArrayList<>();
+            result = translateLibrary(libraryIdentifier, libraryPath, librarySource, options, translationErrors);
+
             if (errors != null) {
-                errors.addAll(translator.getExceptions());
+                errors.addAll(translationErrors);
             }
 
-            TranslatedLibrary result = translator.getTranslatedLibrary();
-            if (libraryIdentifier.getVersion() != null && !libraryIdentifier.getVersion().equals(result.getIdentifier().getVersion())) {
-                throw new CqlTranslatorIncludeException(String.format("Library %s was included as version %s, but version %s of the library was found.",
-                        libraryPath, libraryIdentifier.getVersion(), result.getIdentifier().getVersion()),
-                        libraryIdentifier.getSystem(), libraryIdentifier.getId(), libraryIdentifier.getVersion());
+            if (HasErrors(translationErrors)) {
+                return result;
             }
 
-            return result;
-        } catch (IOException e) {
-            throw new CqlTranslatorIncludeException(String.format("Errors occurred translating library %s, version %s.",
-                    libraryPath, libraryIdentifier.getVersion()), libraryIdentifier.getSystem(), libraryIdentifier.getId(), libraryIdentifier.getVersion(), e);
+            writeCachedLibrary(key, result, translationErrors);
+        }
+        else {
+            checkLibraryVersion(libraryIdentifier, libraryPath, result);
+            if (libraryIdentifier.getSystem() == null && result.getIdentifier().getSystem() != null) {
+                libraryIdentifier.setSystem(result.getIdentifier().getSystem());
+            }
+        }
+
+        libraryKeys.put(libraryPath, key);
+        return result;
+    }
+
+    /*
+    Returns the cached library with the given key, or null if there is no usable entry. An entry is only usable if the
+    libraries it includes resolve to the same entries they resolved to when it was cached.
+     */
+    private TranslatedLibrary readCachedLibrary(String key, CqlTranslatorOptions options, List<CqlTranslatorException> errors) {
+        byte[] content = compiledLibraryCache.get(key);
+        if (content == null) {
+            return null;
+        }
+
+        CompiledLibraryFormat.Entry entry;
+        try {
+            entry = CompiledLibraryFormat.read(content, modelManager);
+        }
+        catch (IOException | RuntimeException e) {
+            // The entry was written by an incompatible translator, or refers to types that no longer resolve
+            return null;
+        }
+
+        Library library = entry.getLibrary().getLibrary();
+        int dependencyCount = 0;
+        if (library.getIncludes() != null) {
+            for (IncludeDef includeDef : library.getIncludes().getDef()) {
+                String dependencyKey = entry.getDependencyKeys().get(includeDef.getPath());
+                if (dependencyKey == null) {
+                    return null;
+                }
+
+                List<CqlTranslatorException> dependencyErrors = new ArrayList<>();
+                try {
+                    resolveLibrary(new VersionedIdentifier()
+                            .withSystem(NamespaceManager.getUriPart(includeDef.getPath()))
+                            .withId(NamespaceManager.getNamePart(includeDef.getPath()))
+                            .withVersion(includeDef.getVersion()), options, dependencyErrors);
+                }
+                catch (RuntimeException e) {
+                    // Translate the library instead, so that the failure is reported as it would be without the cache
+                    return null;
+                }
+                if (HasErrors(dependencyErrors) || !dependencyKey.equals(libraryKeys.get(includeDef.getPath()))) {
+                    return null;
+                }
+                dependencyCount++;
+            }
+        }
+
+        if (dependencyCount != entry.getDependencyKeys().size()) {
+            return null;
+        }
+
+        if (errors != null) {
+            errors.addAll(entry.getMessages());
+        }
+
+        return entry.getLibrary();
+    }
+
+    private void writeCachedLibrary(String key, TranslatedLibrary library, List<CqlTranslatorException> messages) {
+        // A library can only be cached once the libraries it includes are cached, so that a change to any of them
+        // invalidates the entry
+        Map<String, String> dependencyKeys = new LinkedHashMap<>();
+        if (library.getLibrary().getIncludes() != null) {
+            for (IncludeDef includeDef : library.getLibrary().getIncludes().getDef()) {
+                String dependencyKey = libraryKeys.get(includeDef.getPath());
+                if (dependencyKey == null) {
+                    return;
+                }
+                dependencyKeys.put(includeDef.getPath(), dependencyKey);
+            }
+        }
+
+        try {
+            compiledLibraryCache.put(key, CompiledLibraryFormat.write(library, messages, dependencyKeys, modelManager));
+        }
+        catch (IOException | IllegalArgumentException e) {
+            // Do not throw, the library is translated again the next time it is requested
         }
     }
 
@@ -194,11 +570,19 @@ public class LibraryManager {
             throw new IllegalArgumentException("libraryName is null.");
         }
 
-        if (translationStack.contains(libraryName)) {
-            throw new IllegalArgumentException(String.format("Circular library reference %s.", libraryName));
+        Deque<Translation> stack = translationStack.get();
+        if (stack == null) {
+            stack = new ArrayDeque<>();
+            translationStack.set(stack);
         }
 
-        translationStack.push(libraryName);
+        for (Translation translation : stack) {
+            if (translation.libraryName.equals(libraryName)) {
+                throw new IllegalArgumentException(String.format("Circular library reference %s.", libraryName));
+            }
+        }
+
+        stack.push(new Translation(libraryName));
     }
 
     public void endTranslation(String libraryName) {
@@ -206,9 +590,15 @@ public class LibraryManager {
             throw new IllegalArgumentException("libraryName is null.");
         }
 
-        String currentLibraryName = translationStack.pop();
-        if (!libraryName.equals(currentLibraryName)) {
+        // ELM read by canResolveLibrary for includes that were not resolved is discarded with the translation
+        Deque<Translation> stack = translationStack.get();
+        Translation translation = stack != null ? stack.poll() : null;
+        if (translation == null || !libraryName.equals(translation.libraryName)) {
             throw new IllegalArgumentException(String.format("Translation stack imbalance for library %s.", libraryName));
         }
+
+        if (stack.isEmpty()) {
+            translationStack.remove();
+        }
     }
 }
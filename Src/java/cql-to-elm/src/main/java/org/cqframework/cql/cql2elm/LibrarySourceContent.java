@@ -0,0 +1,71 @@
+package org.cqframework.cql.cql2elm;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CodePointBuffer;
+import org.antlr.v4.runtime.CodePointCharStream;
+import org.hl7.elm.r1.VersionedIdentifier;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/*
+The content of a library source, read and decoded once. Any number of streams may be opened on the content, from any
+number of threads. A CharStream opened on the content shares the decoded content rather than copying it. The content is
+decoded as CharStreams.fromStream decodes the sources of libraries (UTF-8, replacing malformed input), so the
+translation of the content is the same as the translation of the source.
+ */
+class LibrarySourceContent {
+    private final byte[] content;
+    private final CodePointBuffer codePoints;
+
+    private LibrarySourceContent(byte[] content) throws CharacterCodingException {
+        this.content = content;
+        CharBuffer chars = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                .decode(ByteBuffer.wrap(content));
+        CodePointBuffer.Builder builder = CodePointBuffer.builder(chars.remaining());
+        builder.append(chars);
+        this.codePoints = builder.build();
+    }
+
+    // Reads the content of the given source, and closes it
+    public static LibrarySourceContent read(InputStream source) throws IOException {
+        try (InputStream is = source) {
+            ByteArrayOutputStream result = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                result.write(buffer, 0, read);
+            }
+            return new LibrarySourceContent(result.toByteArray());
+        }
+    }
+
+    // Decodes the given source of the given library, and closes it
+    public static CharStream toCharStream(VersionedIdentifier libraryIdentifier, InputStream source) {
+        try {
+            return CharStreams.fromStream(source);
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException(String.format("Could not load source for library %s, version %s.",
+                    libraryIdentifier.getId(), libraryIdentifier.getVersion()), e);
+        }
+    }
+
+    public InputStream openStream() {
+        return new ByteArrayInputStream(content);
+    }
+
+    public CharStream openCharStream() {
+        return CodePointCharStream.fromBuffer(codePoints);
+    }
+}
@@ -1,6 +1,8 @@
 package org.cqframework.cql.cql2elm;
 
+import java.io.IOException;
 import java.io.InputStream;
+import org.antlr.v4.runtime.CharStream;
 import org.hl7.elm.r1.VersionedIdentifier;
 
 /**
@@ -13,6 +15,29 @@ public interface LibrarySourceLoader {
 
   InputStream getLibrarySource(VersionedIdentifier libraryIdentifier);
 
+  /**
+   * Returns the source of the library as a CharStream, ready to be translated. Loaders that use
+   * CharStreamLibrarySourceProviders should override this to obtain the CharStream from the provider.
+   */
+  default CharStream getLibraryCharStream(VersionedIdentifier libraryIdentifier) {
+    InputStream source = getLibrarySource(libraryIdentifier);
+    return source != null ? LibrarySourceContent.toCharStream(libraryIdentifier, source) : null;
+  }
+
+  /**
+   * Returns true if the source of the library can be obtained, without reading it if the providers can tell without
+   * opening it (see LibrarySourceProvider.hasLibrarySource). By default the source is opened and closed.
+   */
+  default boolean hasLibrarySource(VersionedIdentifier libraryIdentifier) {
+    try (InputStream source = getLibrarySource(libraryIdentifier)) {
+      return source != null;
+    }
+    catch (IOException e) {
+      // The source was opened, only closing it failed
+      return true;
+    }
+  }
+
   void registerProvider(LibrarySourceProvider provider);
   
 }
@@ -2,8 +2,23 @@ package org.cqframework.cql.cql2elm;
 
 import org.hl7.elm.r1.VersionedIdentifier;
 
+import java.io.IOException;
 import java.io.InputStream;
 
 public interface LibrarySourceProvider {
     InputStream getLibrarySource(VersionedIdentifier libraryIdentifier);
+
+    /**
+     * Returns true if the provider has a source for the library. Providers that can tell without opening the source
+     * (e.g. from the name of a file) should override this, by default the source is opened and closed.
+     */
+    default boolean hasLibrarySource(VersionedIdentifier libraryIdentifier) {
+        try (InputStream source = getLibrarySource(libraryIdentifier)) {
+            return source != null;
+        }
+        catch (IOException e) {
+            // The source was opened, only closing it failed
+            return true;
+        }
+    }
 }
@@ -11,9 +11,13 @@ import java.util.Map;
 public class ModelInfoLoader {
 
     private final List<ModelInfoProvider> providers = new ArrayList<>();
+    // The number of well-known providers at the front of the provider list, zero once another provider is
+    // registered ahead of them or one of them is unregistered
+    private int wellKnownProviderCount;
 
     public ModelInfoLoader() {
         registerWellKnownModelInfoProviders();
+        wellKnownProviderCount = providers.size();
     }
 
     private void registerWellKnownModelInfoProviders() {
@@ -25,16 +29,37 @@ public class ModelInfoLoader {
         registerModelInfoProvider(new QICoreModelInfoProvider());
     }
 
-    public ModelInfo getModelInfo(VersionedIdentifier modelIdentifier) {
-        ModelInfo modelInfo = null;
+    /*
+    Returns true if the well-known providers are consulted ahead of any other registered provider. In that case, the
+    model info for any model the well-known providers know is the same for every loader, and models built from it can
+    be shared across model managers.
+     */
+    public boolean hasWellKnownProvidersFirst() {
+        return wellKnownProviderCount > 0;
+    }
 
-        for (ModelInfoProvider provider : providers) {
-            modelInfo = provider.load(modelIdentifier);
+    /*
+    Returns the model info for the given identifier if it is provided by the well-known providers and they are consulted
+    first, null otherwise.
+     */
+    public ModelInfo getWellKnownModelInfo(VersionedIdentifier modelIdentifier) {
+        return loadModelInfo(modelIdentifier, wellKnownProviderCount);
+    }
+
+    private ModelInfo loadModelInfo(VersionedIdentifier modelIdentifier, int providerCount) {
+        for (int i = 0; i < providerCount; i++) {
+            ModelInfo modelInfo = providers.get(i).load(modelIdentifier);
             if (modelInfo != null) {
-                break;
+                return modelInfo;
             }
         }
 
+        return null;
+    }
+
+    public ModelInfo getModelInfo(VersionedIdentifier modelIdentifier) {
+        ModelInfo modelInfo = loadModelInfo(modelIdentifier, providers.size());
+
         if (modelInfo == null) {
             throw new IllegalArgumentException(String.format("Could not resolve model info provider for model %s, version %s.",
                     modelIdentifier.getSystem() == null ? modelIdentifier.getId() : NamespaceManager.getPath(modelIdentifier.getSystem(), modelIdentifier.getId()),
@@ -55,6 +80,7 @@ public class ModelInfoLoader {
 
         if (priority) {
             providers.add(0, provider);
+            wellKnownProviderCount = 0;
         }
         else {
             providers.add(provider);
@@ -62,11 +88,17 @@ public class ModelInfoLoader {
     }
 
     public void unregisterModelInfoProvider(ModelInfoProvider provider) {
+        int index = providers.indexOf(provider);
+        if (index >= 0 && index < wellKnownProviderCount) {
+            wellKnownProviderCount = 0;
+        }
+
         providers.remove(provider);
     }
 
     public void clearModelInfoProviders() {
         providers.clear();
+        wellKnownProviderCount = 0;
     }
 
     private void checkModelIdentifier(VersionedIdentifier modelIdentifier) {
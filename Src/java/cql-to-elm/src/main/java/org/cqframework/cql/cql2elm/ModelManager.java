@@ -1,5 +1,6 @@
 package org.cqframework.cql.cql2elm;
 
+import org.cqframework.cql.cql2elm.model.InstantiationCache;
 import org.cqframework.cql.cql2elm.model.Model;
 import org.cqframework.cql.cql2elm.model.SystemModel;
 import org.hl7.elm.r1.VersionedIdentifier;
@@ -9,15 +10,25 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Created by Bryn on 12/29/2016.
  */
 public class ModelManager {
+    // Models built from the model info of the well-known providers, shared by all model managers. Models are not
+    // modified once built, so they can be used by translations running on any thread. Keyed by system, id and version.
+    // Each model is built once: the manager that adds the entry builds the model, other managers wait for the result
+    private static final Map<String, CompletableFuture<Model>> sharedModels = new ConcurrentHashMap<>();
+
     private NamespaceManager namespaceManager;
     private ModelInfoLoader modelInfoLoader;
     private final Map<String, Model> models = new HashMap<>();
     private final Set<String> loadingModels = new HashSet<>();
+    private boolean lazyTypeImport;
+    private final InstantiationCache instantiationCache = new InstantiationCache();
 
     public ModelManager() {
         namespaceManager = new NamespaceManager();
@@ -41,6 +52,28 @@ public class ModelManager {
         return this.modelInfoLoader;
     }
 
+    /*
+    Whether models built by this manager import their types on first reference rather than all at once (see
+    ModelImporter). This reduces the time and memory taken to load large models of which only a few types are used.
+    Does not affect models that have already been built. Lazily imported models refer to the manager that built them,
+    so they are never shared with other managers; a lazy manager uses a shared model only if one is already built.
+     */
+    public boolean isLazyTypeImport() {
+        return lazyTypeImport;
+    }
+
+    public void setLazyTypeImport(boolean lazyTypeImport) {
+        this.lazyTypeImport = lazyTypeImport;
+    }
+
+    /*
+    Instantiations of generic operators shared by the translations using this manager. A manager resolves each model to
+    a single version, so the types of the call signatures in the cache are those of the models of this manager.
+     */
+    public InstantiationCache getInstantiationCache() {
+        return instantiationCache;
+    }
+
     /*
     A "well-known" model name is one that is allowed to resolve without a namespace in a namespace-aware context
      */
@@ -61,33 +94,119 @@ public class ModelManager {
         }
     }
 
-    private Model buildModel(VersionedIdentifier identifier) {
-        Model model = null;
+    private static String getSharedModelKey(String system, String id, String version) {
+        return String.format("%s|%s|%s", system != null ? system : "", id, version != null ? version : "");
+    }
+
+    private static void checkModelIdentifier(VersionedIdentifier identifier) {
         if (identifier == null) {
             throw new IllegalArgumentException("Model identifier is required");
         }
         if (identifier.getId() == null || identifier.getId().equals("")) {
             throw new IllegalArgumentException("Model identifier Id is required");
         }
+    }
+
+    private Model buildModel(VersionedIdentifier identifier) {
+        checkModelIdentifier(identifier);
+        try {
+            return buildModel(identifier, modelInfoLoader.getModelInfo(identifier));
+        }
+        catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException(String.format("Could not load model information for model %s, version %s.",
+                    identifier.getId(), identifier.getVersion()));
+        }
+    }
+
+    private Model buildModel(VersionedIdentifier identifier, ModelInfo modelInfo) throws ClassNotFoundException {
         String modelPath = NamespaceManager.getPath(identifier.getSystem(), identifier.getId());
         pushLoading(modelPath);
         try {
-            ModelInfo modelInfo = modelInfoLoader.getModelInfo(identifier);
             if (identifier.getId().equals("System")) {
-                model = new SystemModel(modelInfo);
+                return new SystemModel(modelInfo);
+            }
+
+            return new Model(modelInfo, this, lazyTypeImport);
+        }
+        finally {
+            popLoading(modelPath);
+        }
+    }
+
+    /*
+    Returns the shared model for the given identifier, building and sharing it if no other manager has, or null if the
+    model info for the identifier is not provided by the well-known providers.
+     */
+    private Model resolveSharedModel(VersionedIdentifier identifier) {
+        checkModelIdentifier(identifier);
+        String key = getSharedModelKey(identifier.getSystem(), identifier.getId(), identifier.getVersion());
+        CompletableFuture<Model> sharedModel = sharedModels.get(key);
+        if (sharedModel == null) {
+            CompletableFuture<Model> building = new CompletableFuture<>();
+            sharedModel = sharedModels.putIfAbsent(key, building);
+            if (sharedModel == null) {
+                return buildSharedModel(identifier, key, building);
+            }
+        }
+
+        String modelPath = NamespaceManager.getPath(identifier.getSystem(), identifier.getId());
+        if (loadingModels.contains(modelPath)) {
+            // The model is being built by this manager, waiting would never complete
+            throw new IllegalArgumentException(String.format("Circular model reference %s", modelPath));
+        }
+
+        try {
+            return sharedModel.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalArgumentException(String.format("Interrupted while waiting for model %s, version %s.",
+                    identifier.getId(), identifier.getVersion()), e);
+        }
+        catch (ExecutionException e) {
+            // The model could not be built by the other manager, build it here so that the failure is reported as it
+            // would be without sharing
+            return null;
+        }
+    }
+
+    /*
+    Returns the shared model for the given identifier if it has been built, or null otherwise
+     */
+    private static Model findBuiltSharedModel(VersionedIdentifier identifier) {
+        checkModelIdentifier(identifier);
+        CompletableFuture<Model> sharedModel = sharedModels.get(getSharedModelKey(identifier.getSystem(), identifier.getId(), identifier.getVersion()));
+        if (sharedModel == null || !sharedModel.isDone() || sharedModel.isCompletedExceptionally()) {
+            return null;
+        }
+
+        return sharedModel.join();
+    }
+
+    private Model buildSharedModel(VersionedIdentifier identifier, String key, CompletableFuture<Model> building) {
+        Model model = null;
+        try {
+            ModelInfo modelInfo = modelInfoLoader.getWellKnownModelInfo(identifier);
+            if (modelInfo != null) {
+                model = buildModel(identifier, modelInfo);
+                sharedModels.putIfAbsent(getSharedModelKey(identifier.getSystem(), identifier.getId(), modelInfo.getVersion()), building);
             }
             else {
-                model = new Model(modelInfo, this);
+                sharedModels.remove(key, building);
             }
         }
-        catch (ClassNotFoundException e) {
+        catch (ClassNotFoundException | RuntimeException e) {
+            // Later requests attempt to build the model again
+            sharedModels.remove(key, building);
+            building.completeExceptionally(e);
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException)e;
+            }
             throw new IllegalArgumentException(String.format("Could not load model information for model %s, version %s.",
                     identifier.getId(), identifier.getVersion()));
         }
-        finally {
-            popLoading(modelPath);
-        }
 
+        building.complete(model);
         return model;
     }
 
@@ -110,9 +229,18 @@ public class ModelManager {
         return resolveModel(new VersionedIdentifier().withId(modelName).withVersion(version));
     }
 
-    public Model resolveModel(VersionedIdentifier modelIdentifier) {
+    // Synchronized so that a model manager can be shared by translations running on different threads
+    public synchronized Model resolveModel(VersionedIdentifier modelIdentifier) {
         String modelPath = NamespaceManager.getPath(modelIdentifier.getSystem(), modelIdentifier.getId());
         Model model = models.get(modelPath);
+        if (model == null && modelInfoLoader.hasWellKnownProvidersFirst()) {
+            // Models built by a lazy manager are not shared, see isLazyTypeImport
+            model = lazyTypeImport ? findBuiltSharedModel(modelIdentifier) : resolveSharedModel(modelIdentifier);
+            if (model != null) {
+                models.put(modelPath, model);
+            }
+        }
+
         if (model == null) {
             model = buildModel(modelIdentifier);
             models.put(modelPath, model);
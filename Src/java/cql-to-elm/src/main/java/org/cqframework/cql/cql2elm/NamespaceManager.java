@@ -1,22 +1,22 @@
 package org.cqframework.cql.cql2elm;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class NamespaceManager {
     private final Map<String, String> namespaces;
     private final Map<String, String> reverseNamespaces;
 
     public NamespaceManager() {
-        namespaces = new HashMap<>();
-        reverseNamespaces = new HashMap<>();
+        namespaces = new ConcurrentHashMap<>();
+        reverseNamespaces = new ConcurrentHashMap<>();
     }
 
     public boolean hasNamespaces() {
         return namespaces.size() > 0;
     }
 
-    public void ensureNamespaceRegistered(NamespaceInfo namespaceInfo) {
+    public synchronized void ensureNamespaceRegistered(NamespaceInfo namespaceInfo) {
         if (namespaceInfo == null) {
             throw new IllegalArgumentException("namespaceInfo is required");
         }
@@ -34,7 +34,7 @@ public class NamespaceManager {
         addNamespace(namespaceInfo.getName(), namespaceInfo.getUri());
     }
 
-    public void addNamespace(String namespaceName, String namespaceUri) {
+    public synchronized void addNamespace(String namespaceName, String namespaceUri) {
         if (namespaceName == null || namespaceName.isEmpty()) {
             throw new IllegalArgumentException("namespaceName is required");
         }
@@ -56,16 +56,17 @@ public class NamespaceManager {
     }
 
     public String resolveNamespaceUri(String namespaceName) {
-        if (namespaces.containsKey(namespaceName)) {
-            return namespaces.get(namespaceName);
+        if (namespaceName == null) {
+            return null;
         }
 
-        return null;
+        return namespaces.get(namespaceName);
     }
 
     public NamespaceInfo getNamespaceInfoFromUri(String namespaceUri) {
-        if (reverseNamespaces.containsKey(namespaceUri)) {
-            return new NamespaceInfo(reverseNamespaces.get(namespaceUri), namespaceUri);
+        String namespaceName = namespaceUri != null ? reverseNamespaces.get(namespaceUri) : null;
+        if (namespaceName != null) {
+            return new NamespaceInfo(namespaceName, namespaceUri);
         }
 
         return null;
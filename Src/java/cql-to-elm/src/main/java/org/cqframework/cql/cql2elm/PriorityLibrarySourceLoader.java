@@ -1,5 +1,6 @@
 package org.cqframework.cql.cql2elm;
 
+import org.antlr.v4.runtime.CharStream;
 import org.hl7.elm.r1.VersionedIdentifier;
 
 import java.io.InputStream;
@@ -54,6 +55,55 @@ public class PriorityLibrarySourceLoader implements LibrarySourceLoader, Namespa
                 libraryIdentifier.getId(), libraryIdentifier.getVersion()));
     }
 
+    // Unlike getLibrarySource, returns false rather than throwing if no provider has the library
+    @Override
+    public boolean hasLibrarySource(VersionedIdentifier libraryIdentifier) {
+        if (libraryIdentifier == null) {
+            throw new IllegalArgumentException("libraryIdentifier is null.");
+        }
+
+        if (libraryIdentifier.getId() == null || libraryIdentifier.getId().equals("")) {
+            throw new IllegalArgumentException("libraryIdentifier Id is null.");
+        }
+
+        for (LibrarySourceProvider provider : PROVIDERS) {
+            if (provider.hasLibrarySource(libraryIdentifier)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public CharStream getLibraryCharStream(VersionedIdentifier libraryIdentifier) {
+        if (libraryIdentifier == null) {
+            throw new IllegalArgumentException("libraryIdentifier is null.");
+        }
+
+        if (libraryIdentifier.getId() == null || libraryIdentifier.getId().equals("")) {
+            throw new IllegalArgumentException("libraryIdentifier Id is null.");
+        }
+
+        for (LibrarySourceProvider provider : PROVIDERS) {
+            if (provider instanceof CharStreamLibrarySourceProvider) {
+                CharStream localSource = ((CharStreamLibrarySourceProvider)provider).getLibraryCharStream(libraryIdentifier);
+                if (localSource != null) {
+                    return localSource;
+                }
+            }
+            else {
+                InputStream localSource = provider.getLibrarySource(libraryIdentifier);
+                if (localSource != null) {
+                    return LibrarySourceContent.toCharStream(libraryIdentifier, localSource);
+                }
+            }
+        }
+
+        throw new IllegalArgumentException(String.format("Could not load source for library %s, version %s.",
+                libraryIdentifier.getId(), libraryIdentifier.getVersion()));
+    }
+
     private NamespaceManager namespaceManager;
 
     @Override
@@ -2,8 +2,7 @@ package org.cqframework.cql.cql2elm;
 
 import org.hl7.elm.r1.VersionedIdentifier;
 import org.hl7.elm_modelinfo.r1.ModelInfo;
-
-import javax.xml.bind.JAXB;
+import org.hl7.elm_modelinfo.r1.serializing.ModelInfoResources;
 
 public class QICoreModelInfoProvider implements ModelInfoProvider {
     private NamespaceManager namespaceManager;
@@ -27,8 +26,7 @@ public class QICoreModelInfoProvider implements ModelInfoProvider {
             switch (localVersion) {
                 case "4.0.0":
                 default:
-                    return JAXB.unmarshal(QICoreModelInfoProvider.class.getResourceAsStream("/org/hl7/fhir/qicore-modelinfo-4.0.0.xml"),
-                            ModelInfo.class);
+                    return ModelInfoResources.load(QICoreModelInfoProvider.class, "/org/hl7/fhir/qicore-modelinfo-4.0.0.xml");
             }
         }
 
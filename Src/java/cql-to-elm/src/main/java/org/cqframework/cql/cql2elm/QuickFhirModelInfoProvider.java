@@ -2,8 +2,7 @@ package org.cqframework.cql.cql2elm;
 
 import org.hl7.elm.r1.VersionedIdentifier;
 import org.hl7.elm_modelinfo.r1.ModelInfo;
-
-import javax.xml.bind.JAXB;
+import org.hl7.elm_modelinfo.r1.serializing.ModelInfoResources;
 
 /**
  * Created by Bryn on 4/15/2016.
@@ -30,8 +29,7 @@ public class QuickFhirModelInfoProvider implements ModelInfoProvider {
             switch (localVersion) {
                 case "3.0.1":
                 case "":
-                    return JAXB.unmarshal(QuickFhirModelInfoProvider.class.getResourceAsStream("/org/hl7/fhir/quickfhir-modelinfo-3.0.1.xml"),
-                            ModelInfo.class);
+                    return ModelInfoResources.load(QuickFhirModelInfoProvider.class, "/org/hl7/fhir/quickfhir-modelinfo-3.0.1.xml");
 
                 //default:
                 //    throw new IllegalArgumentException(String.format("Unknown version %s of the QUICKFHIR model.", localVersion));
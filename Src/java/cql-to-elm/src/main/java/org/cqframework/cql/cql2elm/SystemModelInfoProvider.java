@@ -2,8 +2,7 @@ package org.cqframework.cql.cql2elm;
 
 import org.hl7.elm.r1.VersionedIdentifier;
 import org.hl7.elm_modelinfo.r1.ModelInfo;
-
-import javax.xml.bind.JAXB;
+import org.hl7.elm_modelinfo.r1.serializing.ModelInfoResources;
 
 public class SystemModelInfoProvider implements ModelInfoProvider {
     private NamespaceManager namespaceManager;
@@ -23,8 +22,7 @@ public class SystemModelInfoProvider implements ModelInfoProvider {
 
     public ModelInfo load(VersionedIdentifier modelIdentifier) {
         if (isSystemModelIdentifier(modelIdentifier)) {
-            return JAXB.unmarshal(SystemModelInfoProvider.class.getResourceAsStream("/org/hl7/elm/r1/system-modelinfo.xml"),
-                    ModelInfo.class);
+            return ModelInfoResources.load(SystemModelInfoProvider.class, "/org/hl7/elm/r1/system-modelinfo.xml");
         }
 
         return null;
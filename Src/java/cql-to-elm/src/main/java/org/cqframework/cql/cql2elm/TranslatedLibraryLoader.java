@@ -0,0 +1,252 @@
+package org.cqframework.cql.cql2elm;
+
+import org.cqframework.cql.cql2elm.model.Model;
+import org.cqframework.cql.cql2elm.model.TranslatedLibrary;
+import org.hl7.cql.model.*;
+import org.hl7.elm.r1.*;
+
+import javax.xml.namespace.QName;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds a TranslatedLibrary from the ELM of a library, so that the library can be referenced by other libraries
+ * without translating its CQL source.
+ *
+ * The result types of expression definitions are resolved from their result type names or specifiers, so the ELM must
+ * have been produced with result types enabled (see CqlTranslator.Options.EnableResultTypes). Definitions that already
+ * have a result type keep it.
+ */
+public class TranslatedLibraryLoader {
+    private static final String SYSTEM_MODEL_NAME = "System";
+
+    private final ModelManager modelManager;
+
+    public TranslatedLibraryLoader(ModelManager modelManager) {
+        if (modelManager == null) {
+            throw new IllegalArgumentException("modelManager is null");
+        }
+
+        this.modelManager = modelManager;
+    }
+
+    /*
+    Returns the translated library for the given ELM, or throws IllegalArgumentException if the type of a definition
+    cannot be determined.
+     */
+    public TranslatedLibrary load(Library library) {
+        if (library == null) {
+            throw new IllegalArgumentException("library is null");
+        }
+
+        Map<String, Model> models = getModels(library);
+        TranslatedLibrary result = new TranslatedLibrary();
+        result.setIdentifier(library.getIdentifier());
+        result.setLibrary(library);
+
+        if (library.getUsings() != null) {
+            for (UsingDef usingDef : library.getUsings().getDef()) {
+                result.add(usingDef);
+            }
+        }
+
+        if (library.getIncludes() != null) {
+            for (IncludeDef includeDef : library.getIncludes().getDef()) {
+                result.add(includeDef);
+            }
+        }
+
+        if (library.getParameters() != null) {
+            for (ParameterDef parameterDef : library.getParameters().getDef()) {
+                if (parameterDef.getResultType() == null) {
+                    parameterDef.setResultType(resolveParameterType(models, parameterDef));
+                }
+                result.add(parameterDef);
+            }
+        }
+
+        if (library.getCodeSystems() != null) {
+            for (CodeSystemDef codeSystemDef : library.getCodeSystems().getDef()) {
+                if (codeSystemDef.getResultType() == null) {
+                    codeSystemDef.setResultType(resolveSystemType(models, "CodeSystem"));
+                }
+                result.add(codeSystemDef);
+            }
+        }
+
+        if (library.getValueSets() != null) {
+            for (ValueSetDef valueSetDef : library.getValueSets().getDef()) {
+                if (valueSetDef.getResultType() == null) {
+                    valueSetDef.setResultType(resolveSystemType(models, "ValueSet"));
+                }
+                result.add(valueSetDef);
+            }
+        }
+
+        if (library.getCodes() != null) {
+            for (CodeDef codeDef : library.getCodes().getDef()) {
+                if (codeDef.getResultType() == null) {
+                    codeDef.setResultType(resolveSystemType(models, "Code"));
+                }
+                result.add(codeDef);
+            }
+        }
+
+        if (library.getConcepts() != null) {
+            for (ConceptDef conceptDef : library.getConcepts().getDef()) {
+                if (conceptDef.getResultType() == null) {
+                    conceptDef.setResultType(resolveSystemType(models, "Concept"));
+                }
+                result.add(conceptDef);
+            }
+        }
+
+        if (library.getStatements() != null) {
+            for (ExpressionDef expressionDef : library.getStatements().getDef()) {
+                if (expressionDef instanceof FunctionDef) {
+                    for (OperandDef operandDef : ((FunctionDef)expressionDef).getOperand()) {
+                        if (operandDef.getResultType() == null) {
+                            operandDef.setResultType(resolveOperandType(models, operandDef));
+                        }
+                    }
+                }
+
+                if (expressionDef.getResultType() == null) {
+                    expressionDef.setResultType(resolveExpressionType(models, expressionDef));
+                }
+                result.add(expressionDef);
+            }
+        }
+
+        return result;
+    }
+
+    /*
+    Returns the models used by the library, by model name, and by model url and target url (type names in ELM are
+    qualified by the target url of their model if it has one)
+     */
+    private Map<String, Model> getModels(Library library) {
+        Map<String, Model> result = new HashMap<>();
+        if (library.getUsings() != null) {
+            for (UsingDef usingDef : library.getUsings().getDef()) {
+                Model model = modelManager.resolveModel(usingDef.getLocalIdentifier(), usingDef.getVersion());
+                addModel(result, model);
+            }
+        }
+
+        if (!result.containsKey(SYSTEM_MODEL_NAME)) {
+            addModel(result, modelManager.resolveModel(SYSTEM_MODEL_NAME));
+        }
+
+        return result;
+    }
+
+    private void addModel(Map<String, Model> models, Model model) {
+        models.put(model.getModelInfo().getName(), model);
+        models.put(model.getModelInfo().getUrl(), model);
+        if (model.getModelInfo().getTargetUrl() != null) {
+            models.put(model.getModelInfo().getTargetUrl(), model);
+        }
+    }
+
+    private DataType resolveSystemType(Map<String, Model> models, String typeName) {
+        return models.get(SYSTEM_MODEL_NAME).resolveTypeName(typeName);
+    }
+
+    private DataType resolveParameterType(Map<String, Model> models, ParameterDef parameterDef) {
+        DataType result = resolveTypeSpecifierOrName(models, parameterDef.getParameterTypeSpecifier(), parameterDef.getParameterType());
+        if (result == null) {
+            result = resolveTypeSpecifierOrName(models, parameterDef.getResultTypeSpecifier(), parameterDef.getResultTypeName());
+        }
+        if (result == null && parameterDef.getDefault() != null) {
+            result = resolveTypeSpecifierOrName(models, parameterDef.getDefault().getResultTypeSpecifier(), parameterDef.getDefault().getResultTypeName());
+        }
+        if (result == null) {
+            throw new IllegalArgumentException(String.format("Could not determine the type of parameter %s.", parameterDef.getName()));
+        }
+
+        return result;
+    }
+
+    private DataType resolveOperandType(Map<String, Model> models, OperandDef operandDef) {
+        DataType result = resolveTypeSpecifierOrName(models, operandDef.getOperandTypeSpecifier(), operandDef.getOperandType());
+        if (result == null) {
+            throw new IllegalArgumentException(String.format("Could not determine the type of operand %s.", operandDef.getName()));
+        }
+
+        return result;
+    }
+
+    private DataType resolveExpressionType(Map<String, Model> models, ExpressionDef expressionDef) {
+        DataType result = resolveTypeSpecifierOrName(models, expressionDef.getResultTypeSpecifier(), expressionDef.getResultTypeName());
+        if (result == null && expressionDef.getExpression() != null) {
+            result = resolveTypeSpecifierOrName(models, expressionDef.getExpression().getResultTypeSpecifier(),
+                    expressionDef.getExpression().getResultTypeName());
+        }
+        if (result == null) {
+            throw new IllegalArgumentException(String.format("Could not determine the result type of %s, the library must be translated with result types enabled.",
+                    expressionDef.getName()));
+        }
+
+        return result;
+    }
+
+    private DataType resolveTypeSpecifierOrName(Map<String, Model> models, TypeSpecifier typeSpecifier, QName typeName) {
+        if (typeSpecifier != null) {
+            return resolveTypeSpecifier(models, typeSpecifier);
+        }
+
+        if (typeName != null) {
+            return resolveTypeName(models, typeName);
+        }
+
+        return null;
+    }
+
+    private DataType resolveTypeName(Map<String, Model> models, QName typeName) {
+        Model model = models.get(typeName.getNamespaceURI());
+        if (model == null) {
+            throw new IllegalArgumentException(String.format("Could not resolve model for type %s.", typeName));
+        }
+
+        DataType result = model.resolveTypeName(typeName.getLocalPart());
+        if (result == null) {
+            throw new IllegalArgumentException(String.format("Could not resolve type %s.", typeName));
+        }
+
+        return result;
+    }
+
+    private DataType resolveTypeSpecifier(Map<String, Model> models, TypeSpecifier typeSpecifier) {
+        if (typeSpecifier instanceof NamedTypeSpecifier) {
+            return resolveTypeName(models, ((NamedTypeSpecifier)typeSpecifier).getName());
+        }
+        else if (typeSpecifier instanceof ListTypeSpecifier) {
+            return TypeInterner.listOf(resolveTypeSpecifier(models, ((ListTypeSpecifier)typeSpecifier).getElementType()));
+        }
+        else if (typeSpecifier instanceof IntervalTypeSpecifier) {
+            return TypeInterner.intervalOf(resolveTypeSpecifier(models, ((IntervalTypeSpecifier)typeSpecifier).getPointType()));
+        }
+        else if (typeSpecifier instanceof TupleTypeSpecifier) {
+            List<TupleTypeElement> elements = new ArrayList<>();
+            for (TupleElementDefinition element : ((TupleTypeSpecifier)typeSpecifier).getElement()) {
+                TypeSpecifier elementType = element.getElementType() != null ? element.getElementType() : element.getType();
+                elements.add(new TupleTypeElement(element.getName(), resolveTypeSpecifier(models, elementType)));
+            }
+            return new TupleType(elements);
+        }
+        else if (typeSpecifier instanceof ChoiceTypeSpecifier) {
+            ChoiceTypeSpecifier choiceTypeSpecifier = (ChoiceTypeSpecifier)typeSpecifier;
+            List<DataType> choices = new ArrayList<>();
+            for (TypeSpecifier choice : !choiceTypeSpecifier.getChoice().isEmpty() ? choiceTypeSpecifier.getChoice() : choiceTypeSpecifier.getType()) {
+                choices.add(resolveTypeSpecifier(models, choice));
+            }
+            return TypeInterner.choiceOf(choices);
+        }
+        else {
+            throw new IllegalArgumentException(String.format("Could not resolve type specifier %s.", typeSpecifier));
+        }
+    }
+}
@@ -2,8 +2,7 @@ package org.cqframework.cql.cql2elm;
 
 import org.hl7.elm.r1.VersionedIdentifier;
 import org.hl7.elm_modelinfo.r1.ModelInfo;
-
-import javax.xml.bind.JAXB;
+import org.hl7.elm_modelinfo.r1.serializing.ModelInfoResources;
 
 public class UsCoreModelInfoProvider implements ModelInfoProvider {
     private NamespaceManager namespaceManager;
@@ -27,8 +26,7 @@ public class UsCoreModelInfoProvider implements ModelInfoProvider {
             switch (localVersion) {
                 case "3.1.0":
                 default:
-                    return JAXB.unmarshal(QuickModelInfoProvider.class.getResourceAsStream("/org/hl7/fhir/uscore-modelinfo-3.1.0.xml"),
-                            ModelInfo.class);
+                    return ModelInfoResources.load(QuickModelInfoProvider.class, "/org/hl7/fhir/uscore-modelinfo-3.1.0.xml");
             }
         }
 
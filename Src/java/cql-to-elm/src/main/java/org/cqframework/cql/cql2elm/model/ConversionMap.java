@@ -3,9 +3,13 @@ package org.cqframework.cql.cql2elm.model;
 import org.hl7.cql.model.*;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ConversionMap {
     public enum ConversionScore {
@@ -53,13 +57,123 @@ public class ConversionMap {
     private boolean listPromotion = true;
     private boolean intervalDemotion = false;
     private boolean intervalPromotion = false;
+    private ConversionMap baseConversionMap;
+    // Versions are drawn from a sequence shared by all conversion maps, see getVersion
+    private static final AtomicLong versionSequence = new AtomicLong();
+    private long version;
+
+    /*
+    Conversions found through generic conversions and interval promotion depend on the operator map they were found
+    with (see computeConversion), so the key includes the identity and version of that map.
+     */
+    private static class ConversionKey {
+        private final DataType fromType;
+        private final DataType toType;
+        private final boolean isImplicit;
+        private final boolean allowPromotionAndDemotion;
+        private final OperatorMap operatorMap;
+        private final long operatorMapVersion;
+
+        ConversionKey(DataType fromType, DataType toType, boolean isImplicit, boolean allowPromotionAndDemotion, OperatorMap operatorMap) {
+            this.fromType = fromType;
+            this.toType = toType;
+            this.isImplicit = isImplicit;
+            this.allowPromotionAndDemotion = allowPromotionAndDemotion;
+            this.operatorMap = operatorMap;
+            this.operatorMapVersion = operatorMap != null ? operatorMap.getVersion() : 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(fromType, toType, isImplicit, allowPromotionAndDemotion, System.identityHashCode(operatorMap), operatorMapVersion);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o instanceof ConversionKey) {
+                ConversionKey that = (ConversionKey)o;
+                return this.fromType.equals(that.fromType)
+                        && this.toType.equals(that.toType)
+                        && this.isImplicit == that.isImplicit
+                        && this.allowPromotionAndDemotion == that.allowPromotionAndDemotion
+                        && this.operatorMap == that.operatorMap
+                        && this.operatorMapVersion == that.operatorMapVersion;
+            }
+
+            return false;
+        }
+    }
+
+    private boolean conversionCacheEnabled = false;
+    private long cachedVersion;
+    private final Map<ConversionKey, Optional<Conversion>> cachedConversions = new HashMap<>();
+    private final Map<DataType, List<Conversion>> cachedAllConversions = new HashMap<>();
+
+    private static long nextVersion() {
+        return versionSequence.incrementAndGet();
+    }
+
+    /*
+    Returns a number that changes whenever a conversion is added to this map (or its base map), its settings change or
+    it is layered over another map, so that results computed against the map can be cached (see
+    OperatorMap.resolveOperator). Each change to any map takes a version greater than any taken before it, so the
+    greatest version of this map and its base maps increases with every change to any of them, and never returns to a
+    previous value.
+     */
+    public long getVersion() {
+        return baseConversionMap != null ? Math.max(version, baseConversionMap.getVersion()) : version;
+    }
+
+    /*
+    When the conversion cache is enabled, findConversion results and the conversions inherited by each type are
+    remembered until a conversion is added or a setting changes. The cache is not synchronized, a map with the cache
+    enabled must only be used by one thread at a time (as the conversion map of a LibraryBuilder is).
+     */
+    public void enableConversionCache() {
+        conversionCacheEnabled = true;
+    }
+
+    public void disableConversionCache() {
+        conversionCacheEnabled = false;
+        cachedConversions.clear();
+        cachedAllConversions.clear();
+    }
+
+    public boolean isConversionCacheEnabled() {
+        return conversionCacheEnabled;
+    }
+
+    private void ensureCacheCurrent() {
+        long currentVersion = getVersion();
+        if (cachedVersion != currentVersion) {
+            cachedConversions.clear();
+            cachedAllConversions.clear();
+            cachedVersion = currentVersion;
+        }
+    }
+
+    public ConversionMap getBaseConversionMap() {
+        return baseConversionMap;
+    }
+
+    /*
+    Layers this map over the given base map. Lookups see the conversions of the base map first, followed by the
+    conversions added to this map. The base map is never modified through this map, so a single base map (such as the
+    conversions of the System library) can be shared by any number of conversion maps.
+     */
+    public void setBaseConversionMap(ConversionMap baseConversionMap) {
+        this.baseConversionMap = baseConversionMap;
+        version = nextVersion();
+    }
 
     public void enableListDemotion() {
         listDemotion = true;
+        version = nextVersion();
     }
 
     public void disableListDemotion() {
         listDemotion = false;
+        version = nextVersion();
     }
 
     public boolean isListDemotionEnabled() {
@@ -68,10 +182,12 @@ public class ConversionMap {
 
     public void enableListPromotion() {
         listPromotion = true;
+        version = nextVersion();
     }
 
     public void disableListPromotion() {
         listPromotion = false;
+        version = nextVersion();
     }
 
     public boolean isListPromotionEnabled() {
@@ -80,10 +196,12 @@ public class ConversionMap {
 
     public void enableIntervalDemotion() {
         intervalDemotion = true;
+        version = nextVersion();
     }
 
     public void disableIntervalDemotion() {
         intervalDemotion = false;
+        version = nextVersion();
     }
 
     public boolean isIntervalDemotionEnabled() {
@@ -92,10 +210,12 @@ public class ConversionMap {
 
     public void enableIntervalPromotion() {
         intervalPromotion = true;
+        version = nextVersion();
     }
 
     public void disableIntervalPromotion() {
         intervalPromotion = false;
+        version = nextVersion();
     }
 
     public boolean isIntervalPromotionEnabled() {
@@ -132,35 +252,62 @@ public class ConversionMap {
         // Generic conversions could still be potentially useful, so I left the code, but it's never used because the generic conversions
         // are not added in the SystemLibraryHelper.
         if (conversion.isGeneric()) {
-            List<Conversion> conversions = getGenericConversions();
-            if (hasConversion(conversion, conversions)) {
+            if (hasConversion(conversion, getGenericConversions())) {
                 throw new IllegalArgumentException(String.format("Conversion from %s to %s is already defined.",
                         conversion.getFromType().toString(), conversion.getToType().toString()));
             }
 
-            conversions.add(conversion);
+            genericConversions.add(conversion);
         }
         else {
-            List<Conversion> conversions = getConversions(conversion.getFromType());
-            if (hasConversion(conversion, conversions)) {
+            if (hasConversion(conversion, getConversions(conversion.getFromType()))) {
                 throw new IllegalArgumentException(String.format("Conversion from %s to %s is already defined.",
                         conversion.getFromType().toString(), conversion.getToType().toString()));
             }
 
+            List<Conversion> conversions = map.get(conversion.getFromType());
+            if (conversions == null) {
+                conversions = new ArrayList<Conversion>();
+                map.put(conversion.getFromType(), conversions);
+            }
+
             conversions.add(conversion);
         }
 
+        version = nextVersion();
+    }
+
+    private static List<Conversion> combine(List<Conversion> baseConversions, List<Conversion> conversions) {
+        if (baseConversions.isEmpty()) {
+            return conversions;
+        }
+
+        if (conversions.isEmpty()) {
+            return Collections.unmodifiableList(baseConversions);
+        }
+
+        List<Conversion> result = new ArrayList<Conversion>(baseConversions.size() + conversions.size());
+        result.addAll(baseConversions);
+        result.addAll(conversions);
+        return result;
     }
 
     public List<Conversion> getGenericConversions() {
+        if (baseConversionMap != null) {
+            return combine(baseConversionMap.getGenericConversions(), genericConversions);
+        }
+
         return genericConversions;
     }
 
     public List<Conversion> getConversions(DataType fromType) {
         List<Conversion> conversions = map.get(fromType);
         if (conversions == null) {
-            conversions = new ArrayList<Conversion>();
-            map.put(fromType, conversions);
+            conversions = Collections.emptyList();
+        }
+
+        if (baseConversionMap != null) {
+            return combine(baseConversionMap.getConversions(fromType), conversions);
         }
 
         return conversions;
@@ -170,6 +317,20 @@ public class ConversionMap {
     Returns conversions for the given type, or any supertype, recursively
      */
     public List<Conversion> getAllConversions(DataType fromType) {
+        if (conversionCacheEnabled) {
+            ensureCacheCurrent();
+            List<Conversion> result = cachedAllConversions.get(fromType);
+            if (result == null) {
+                result = Collections.unmodifiableList(computeAllConversions(fromType));
+                cachedAllConversions.put(fromType, result);
+            }
+            return result;
+        }
+
+        return computeAllConversions(fromType);
+    }
+
+    private List<Conversion> computeAllConversions(DataType fromType) {
         List<Conversion> conversions = new ArrayList<Conversion>();
         DataType currentType = fromType;
         while (currentType != null) {
@@ -342,6 +503,26 @@ public class ConversionMap {
     }
 
     public Conversion findConversion(DataType fromType, DataType toType, boolean isImplicit, boolean allowPromotionAndDemotion, OperatorMap operatorMap) {
+        if (!conversionCacheEnabled) {
+            return computeConversion(fromType, toType, isImplicit, allowPromotionAndDemotion, operatorMap);
+        }
+
+        ensureCacheCurrent();
+        ConversionKey key = new ConversionKey(fromType, toType, isImplicit, allowPromotionAndDemotion, operatorMap);
+        Optional<Conversion> cachedConversion = cachedConversions.get(key);
+        if (cachedConversion != null) {
+            return cachedConversion.orElse(null);
+        }
+
+        Conversion result = computeConversion(fromType, toType, isImplicit, allowPromotionAndDemotion, operatorMap);
+        // Instantiating a generic conversion adds it to this map and the operator map, in which case the cache has been
+        // discarded, and the result is cached for the new version of the operator map
+        ensureCacheCurrent();
+        cachedConversions.put(new ConversionKey(fromType, toType, isImplicit, allowPromotionAndDemotion, operatorMap), Optional.ofNullable(result));
+        return result;
+    }
+
+    private Conversion computeConversion(DataType fromType, DataType toType, boolean isImplicit, boolean allowPromotionAndDemotion, OperatorMap operatorMap) {
         Conversion result = findCompatibleConversion(fromType, toType);
         if (result == null) {
             result = internalFindConversion(fromType, toType, isImplicit);
@@ -25,11 +25,30 @@ public class GenericOperator extends Operator {
         return this.typeParameters;
     }
 
+    /*
+    Instantiations that did not use any conversions depend only on this operator and the call signature, so they are
+    reused through the instantiation cache of the operator map, if it has one. The cache is not kept by the operator
+    itself: the operators of the System library are shared by all translations, whatever models they use.
+     */
     public InstantiationResult instantiate(Signature callSignature, OperatorMap operatorMap, ConversionMap conversionMap, boolean allowPromotionAndDemotion) {
-        return instantiate(callSignature, null, operatorMap, conversionMap, allowPromotionAndDemotion);
+        InstantiationCache cache = operatorMap.getInstantiationCache();
+        InstantiationResult result = cache != null ? cache.get(this, callSignature) : null;
+        if (result == null) {
+            InstantiationContextImpl context = createInstantiationContext(null, operatorMap, conversionMap, allowPromotionAndDemotion);
+            result = instantiate(callSignature, context);
+            if (cache != null && !context.getUsedConversions()) {
+                cache.put(this, callSignature, result);
+            }
+        }
+
+        return result;
     }
 
     public InstantiationResult instantiate(Signature callSignature, Map<TypeParameter, DataType> parameters, OperatorMap operatorMap, ConversionMap conversionMap, boolean allowPromotionAndDemotion) {
+        return instantiate(callSignature, createInstantiationContext(parameters, operatorMap, conversionMap, allowPromotionAndDemotion));
+    }
+
+    private InstantiationContextImpl createInstantiationContext(Map<TypeParameter, DataType> parameters, OperatorMap operatorMap, ConversionMap conversionMap, boolean allowPromotionAndDemotion) {
         Map<TypeParameter, DataType> typeMap = new HashMap<>();
 
         for (TypeParameter p : typeParameters) {
@@ -42,11 +61,16 @@ public class GenericOperator extends Operator {
             }
         }
 
-        InstantiationContextImpl context = new InstantiationContextImpl(typeMap, operatorMap, conversionMap, allowPromotionAndDemotion);
+        return new InstantiationContextImpl(typeMap, operatorMap, conversionMap, allowPromotionAndDemotion);
+    }
 
+    private InstantiationResult instantiate(Signature callSignature, InstantiationContextImpl context) {
         Boolean instantiable = getSignature().isInstantiable(callSignature, context);
         if (instantiable) {
             Operator result = new Operator(getName(), getSignature().instantiate(context), getResultType().instantiate(context));
+            if (context.getFailure() != null) {
+                return new InstantiationResult(this, null, context.getConversionScore(), context.getFailure());
+            }
             result.setAccessLevel(getAccessLevel());
             result.setLibraryName(getLibraryName());
             return new InstantiationResult(this, result, context.getConversionScore());
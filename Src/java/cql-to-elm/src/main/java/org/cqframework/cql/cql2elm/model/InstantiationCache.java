@@ -0,0 +1,55 @@
+package org.cqframework.cql.cql2elm.model;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Instantiations of generic operators, by generic operator and call signature, that are reused by the translations
+ * resolving against operator maps that use the cache (see OperatorMap.setInstantiationCache).
+ *
+ * Call signatures compare class types by name, so a signature of a type from one version of a model is equal to the
+ * signature of the same type from another version. A cache must therefore only be used by translations that resolve
+ * each model to the same version, as the translations using a single ModelManager do. The cache may be used by
+ * concurrent translations.
+ */
+public class InstantiationCache {
+    private static final int MAX_INSTANTIATIONS = 4096;
+
+    private static class InstantiationKey {
+        private final GenericOperator genericOperator;
+        private final Signature callSignature;
+
+        InstantiationKey(GenericOperator genericOperator, Signature callSignature) {
+            this.genericOperator = genericOperator;
+            this.callSignature = callSignature;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(genericOperator) + callSignature.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o instanceof InstantiationKey) {
+                InstantiationKey that = (InstantiationKey)o;
+                return this.genericOperator == that.genericOperator && this.callSignature.equals(that.callSignature);
+            }
+
+            return false;
+        }
+    }
+
+    private final Map<InstantiationKey, InstantiationResult> instantiations = new ConcurrentHashMap<>();
+
+    InstantiationResult get(GenericOperator genericOperator, Signature callSignature) {
+        return instantiations.get(new InstantiationKey(genericOperator, callSignature));
+    }
+
+    void put(GenericOperator genericOperator, Signature callSignature, InstantiationResult instantiation) {
+        // Bounds the memory used by a long-lived cache
+        if (instantiations.size() < MAX_INSTANTIATIONS) {
+            instantiations.putIfAbsent(new InstantiationKey(genericOperator, callSignature), instantiation);
+        }
+    }
+}
@@ -34,6 +34,24 @@ public class InstantiationContextImpl implements InstantiationContext {
         return conversionScore;
     }
 
+    /*
+    Whether the instantiation consulted the conversion map (or the operator map). If not, the instantiation depends only
+    on the generic operator and the call signature, and can be reused by other translations (see InstantiationCache)
+     */
+    private boolean usedConversions;
+    public boolean getUsedConversions() {
+        return usedConversions;
+    }
+
+    /*
+    Why the signature could not be instantiated, or null if it was. Failures are recorded rather than thrown so that
+    resolving a call never raises an exception for a call that does not resolve (see OperatorMap.tryResolveOperator)
+     */
+    private ResolutionFailure failure;
+    public ResolutionFailure getFailure() {
+        return failure;
+    }
+
     @Override
     public boolean isInstantiable(TypeParameter parameter, DataType callType) {
         // If the type is not yet bound, bind it to the call type.
@@ -63,6 +81,7 @@ public class InstantiationContextImpl implements InstantiationContext {
                 }
             }
             else {
+                usedConversions = true;
                 // If there is an implicit conversion path from the call type to the bound type, return true
                 Conversion conversion = conversionMap.findConversion(callType, boundType, true, allowPromotionAndDemotion, operatorMap);
                 if (conversion != null) {
@@ -135,7 +154,11 @@ public class InstantiationContextImpl implements InstantiationContext {
     public DataType instantiate(TypeParameter parameter) {
         DataType result = typeMap.get(parameter);
         if (result == null) {
-            throw new IllegalArgumentException(String.format("Could not resolve type parameter %s.", parameter.getIdentifier()));
+            if (failure == null) {
+                failure = new ResolutionFailure(String.format("Could not resolve type parameter %s.", parameter.getIdentifier()));
+            }
+            // The instantiation is discarded (see GenericOperator.instantiate), Any only stands in for the parameter
+            return DataType.ANY;
         }
 
         return result;
@@ -143,6 +166,7 @@ public class InstantiationContextImpl implements InstantiationContext {
 
     @Override
     public Iterable<IntervalType> getIntervalConversionTargets(DataType callType) {
+        usedConversions = true;
         ArrayList<IntervalType> results = new ArrayList<IntervalType>();
         for (Conversion c : conversionMap.getConversions(callType)) {
             if (c.getToType() instanceof IntervalType) {
@@ -173,7 +197,7 @@ public class InstantiationContextImpl implements InstantiationContext {
         // Add interval promotion if no other conversion is found
         if (results.isEmpty()) {
             if (!(callType instanceof IntervalType) && operatorMap.isPointType(callType) && (allowPromotionAndDemotion || conversionMap.isIntervalPromotionEnabled())) {
-                results.add(new IntervalType(callType));
+                results.add(TypeInterner.intervalOf(callType));
                 conversionScore += ConversionMap.ConversionScore.IntervalPromotion.score();
             }
         }
@@ -183,6 +207,7 @@ public class InstantiationContextImpl implements InstantiationContext {
 
     @Override
     public Iterable<ListType> getListConversionTargets(DataType callType) {
+        usedConversions = true;
         ArrayList<ListType> results = new ArrayList<ListType>();
         for (Conversion c : conversionMap.getConversions(callType)) {
             if (c.getToType() instanceof ListType) {
@@ -214,7 +239,7 @@ public class InstantiationContextImpl implements InstantiationContext {
         // Add list promotion if no other conversion is found
         if (results.isEmpty()) {
             if (!(callType instanceof ListType) && (allowPromotionAndDemotion || conversionMap.isListPromotionEnabled())) {
-                results.add(new ListType(callType));
+                results.add(TypeInterner.listOf(callType));
                 conversionScore += ConversionMap.ConversionScore.ListPromotion.score();
             }
         }
@@ -224,6 +249,7 @@ public class InstantiationContextImpl implements InstantiationContext {
 
     @Override
     public Iterable<SimpleType> getSimpleConversionTargets(DataType callType) {
+        usedConversions = true;
         ArrayList<SimpleType> results = new ArrayList<SimpleType>();
         for (Conversion c : conversionMap.getConversions(callType)) {
             if (c.getToType() instanceof SimpleType) {
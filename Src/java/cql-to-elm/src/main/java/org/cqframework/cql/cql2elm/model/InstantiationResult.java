@@ -8,6 +8,10 @@ import java.util.List;
  */
 public class InstantiationResult {
     public InstantiationResult(GenericOperator genericOperator, Operator operator, int conversionScore) {
+        this(genericOperator, operator, conversionScore, null);
+    }
+
+    public InstantiationResult(GenericOperator genericOperator, Operator operator, int conversionScore, ResolutionFailure failure) {
         if (genericOperator == null) {
             throw new IllegalArgumentException("genericOperator is required");
         }
@@ -15,6 +19,7 @@ public class InstantiationResult {
         this.genericOperator = genericOperator;
         this.operator = operator;
         this.conversionScore = conversionScore;
+        this.failure = failure;
     }
 
     private GenericOperator genericOperator;
@@ -31,4 +36,13 @@ public class InstantiationResult {
     public int getConversionScore() {
         return conversionScore;
     }
+
+    /*
+    Why the generic operator could not be instantiated for a signature it matches, or null if it was instantiated (or
+    does not match the signature). The operator is null if there is a failure.
+     */
+    private ResolutionFailure failure;
+    public ResolutionFailure getFailure() {
+        return failure;
+    }
 }
@@ -5,9 +5,18 @@ import org.hl7.cql.model.*;
 import org.hl7.elm_modelinfo.r1.ModelInfo;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Model {
     public Model(ModelInfo modelInfo, ModelManager modelManager) throws ClassNotFoundException {
+        this(modelInfo, modelManager, false);
+    }
+
+    /*
+    If lazyTypeImport is true, types are imported from the model info on first reference (see ModelImporter), and the
+    indexes of the model cache the types resolved so far.
+     */
+    public Model(ModelInfo modelInfo, ModelManager modelManager, boolean lazyTypeImport) throws ClassNotFoundException {
         info = modelInfo;
         index = new HashMap<>();
         nameIndex = new HashMap<>();
@@ -15,8 +24,7 @@ public class Model {
         conversions = new ArrayList<>();
         contexts = new ArrayList<>();
 
-        ModelImporter importer = new ModelImporter(info, modelManager);
-        index = importer.getTypes();
+        ModelImporter importer = new ModelImporter(info, modelManager, lazyTypeImport);
         for (Conversion c : importer.getConversions()) {
             conversions.add(c);
         }
@@ -27,6 +35,14 @@ public class Model {
 
         defaultContext = importer.getDefaultContextName();
 
+        if (importer.isLazyTypeImport()) {
+            this.importer = importer;
+            index = new ConcurrentHashMap<>();
+            classIndex = new ConcurrentHashMap<>();
+            return;
+        }
+
+        index = importer.getTypes();
         for (DataType t : index.values()) {
             if (t instanceof ClassType && ((ClassType)t).getLabel() != null) {
                 classIndex.put(casify(((ClassType)t).getLabel()), (ClassType)t);
@@ -41,6 +57,9 @@ public class Model {
     private ModelInfo info;
     public ModelInfo getModelInfo() { return info; }
 
+    // The importer of a model that imports types on first reference, null if all types were imported up front
+    private ModelImporter importer;
+
     private Map<String, DataType> index;
     private Map<String, ClassType> classIndex;
     private Map<String, DataType> nameIndex;
@@ -65,6 +84,13 @@ public class Model {
             result = nameIndex.get(typeName);
         }
 
+        if (result == null && importer != null) {
+            result = importer.importType(typeName);
+            if (result != null) {
+                index.put(typeName, result);
+            }
+        }
+
         return result;
     }
 
@@ -103,7 +129,16 @@ public class Model {
     }
 
     public ClassType resolveLabel(String label) {
-        return classIndex.get(casify(label));
+        label = casify(label);
+        ClassType result = classIndex.get(label);
+        if (result == null && importer != null) {
+            result = importer.importLabel(label);
+            if (result != null) {
+                classIndex.put(label, result);
+            }
+        }
+
+        return result;
     }
 
     private String casify(String typeName) {
@@ -20,7 +20,25 @@ public class ModelImporter {
     private List<ModelContext> contexts;
     private ModelContext defaultContext;
 
+    // Indexes of the type infos by qualified name, unqualified name and label, used to import types on first reference
+    private boolean lazyTypeImport;
+    private Map<String, TypeInfo> qualifiedTypeInfoIndex;
+    private Map<String, TypeInfo> unqualifiedTypeInfoIndex;
+    private Map<String, ClassInfo> labelTypeInfoIndex;
+    private List<ClassInfo> pendingRelationshipInfos;
+    private List<ClassType> pendingRelationshipTypes;
+
     public ModelImporter(ModelInfo modelInfo, ModelManager modelManager) {
+        this(modelInfo, modelManager, false);
+    }
+
+    /*
+    Creates an importer for the given model info. If lazyTypeImport is true, only the types required by the model's
+    conversions and contexts are imported by the constructor, other types are imported on first reference through
+    importType and importLabel. Models that use generic class notation are always imported in full, since generic
+    types are resolved against the types imported before them.
+     */
+    public ModelImporter(ModelInfo modelInfo, ModelManager modelManager, boolean lazyTypeImport) {
         if (modelInfo == null) {
             throw new IllegalArgumentException("modelInfo is null");
         }
@@ -68,6 +86,11 @@ public class ModelImporter {
             }
         }
 
+        this.lazyTypeImport = lazyTypeImport && !hasGenericTypes();
+        if (this.lazyTypeImport) {
+            indexTypeInfos();
+        }
+
         // Import model conversions
         for (ConversionInfo c : this.modelInfo.getConversionInfo()) {
             DataType fromType = resolveTypeNameOrSpecifier(c.getFromType(), c.getFromTypeSpecifier());
@@ -107,6 +130,11 @@ public class ModelImporter {
             }
         }
 
+        if (this.lazyTypeImport) {
+            importPendingRelationships();
+            return;
+        }
+
         for (TypeInfo t: this.modelInfo.getTypeInfo()) {
             DataType type = resolveTypeInfo(t);
             dataTypes.add(type);
@@ -117,6 +145,101 @@ public class ModelImporter {
         }
     }
 
+    public boolean isLazyTypeImport() {
+        return lazyTypeImport;
+    }
+
+    /*
+    Imports the type with the given name, qualified or unqualified, if it has not been imported already, and returns
+    it. Names are expected in the case used by the model's type index (see casify). Returns null if the model does not
+    define a type with the given name.
+
+    Types are imported under the importer's lock, together with their base types, element types and relationships, so
+    a type returned by this method is complete and each type is only ever created once.
+     */
+    public DataType importType(String typeName) {
+        TypeInfo typeInfo = qualifiedTypeInfoIndex.get(typeName);
+        if (typeInfo == null) {
+            typeInfo = unqualifiedTypeInfoIndex.get(typeName);
+            if (typeInfo == null) {
+                return null;
+            }
+        }
+
+        synchronized (this) {
+            DataType result = resolveTypeInfo(typeInfo);
+            importPendingRelationships();
+            return result;
+        }
+    }
+
+    /*
+    Imports the class type with the given label if it has not been imported already, and returns it. Returns null if
+    the model does not define a class with the given label.
+     */
+    public ClassType importLabel(String label) {
+        ClassInfo classInfo = labelTypeInfoIndex.get(label);
+        if (classInfo == null) {
+            return null;
+        }
+
+        synchronized (this) {
+            ClassType result = resolveClassType(classInfo);
+            importPendingRelationships();
+            return result;
+        }
+    }
+
+    private boolean hasGenericTypes() {
+        for (TypeInfo t : this.modelInfo.getTypeInfo()) {
+            if (t instanceof ClassInfo) {
+                ClassInfo classInfo = (ClassInfo)t;
+                if ((classInfo.getName() != null && classInfo.getName().contains("<"))
+                        || (classInfo.getBaseType() != null && classInfo.getBaseType().contains("<"))) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private void indexTypeInfos() {
+        qualifiedTypeInfoIndex = new HashMap<>();
+        unqualifiedTypeInfoIndex = new HashMap<>();
+        labelTypeInfoIndex = new HashMap<>();
+        pendingRelationshipInfos = new ArrayList<>();
+        pendingRelationshipTypes = new ArrayList<>();
+        for (TypeInfo t : this.modelInfo.getTypeInfo()) {
+            String name = null;
+            if (t instanceof SimpleTypeInfo) {
+                name = ((SimpleTypeInfo)t).getName();
+            }
+            else if (t instanceof ClassInfo) {
+                ClassInfo classInfo = (ClassInfo)t;
+                name = classInfo.getName();
+                if (classInfo.getLabel() != null) {
+                    labelTypeInfoIndex.put(casify(classInfo.getLabel()), classInfo);
+                }
+            }
+
+            if (name != null) {
+                qualifiedTypeInfoIndex.put(casify(ensureQualified(name)), t);
+                unqualifiedTypeInfoIndex.put(casify(ensureUnqualified(name)), t);
+            }
+        }
+    }
+
+    // Relationships refer to the model contexts, so they are imported once the contexts are known
+    private void importPendingRelationships() {
+        while (pendingRelationshipInfos.size() > 0) {
+            int last = pendingRelationshipInfos.size() - 1;
+            ClassInfo classInfo = pendingRelationshipInfos.remove(last);
+            ClassType classType = pendingRelationshipTypes.remove(last);
+            importRelationships(classInfo, classType);
+        }
+    }
+
     public Map<String, DataType> getTypes() { return resolvedTypes; }
     public Iterable<Conversion> getConversions() { return conversions; }
     public Iterable<ModelContext> getContexts() { return contexts; }
@@ -186,14 +309,14 @@ public class ModelImporter {
         if (typeSpecifier instanceof IntervalTypeSpecifier) {
             IntervalTypeSpecifier intervalTypeSpecifier = (IntervalTypeSpecifier)typeSpecifier;
             DataType pointType = resolveTypeNameOrSpecifier(intervalTypeSpecifier.getPointType(), intervalTypeSpecifier.getPointTypeSpecifier());
-            return new IntervalType(pointType);
+            return TypeInterner.intervalOf(pointType);
         }
 
         if (typeSpecifier instanceof ListTypeSpecifier) {
             ListTypeSpecifier listTypeSpecifier = (ListTypeSpecifier)typeSpecifier;
             DataType elementType = resolveTypeNameOrSpecifier(listTypeSpecifier.getElementType(), listTypeSpecifier.getElementTypeSpecifier());
             if (elementType != null) {
-                return new ListType(elementType);
+                return TypeInterner.listOf(elementType);
             }
         }
 
@@ -213,7 +336,7 @@ public class ModelImporter {
                 DataType choiceType = resolveTypeSpecifier(choice);
                 choices.add(choiceType);
             }
-            return new ChoiceType(choices);
+            return TypeInterner.choiceOf(choices);
         }
 
         return null;
@@ -231,11 +354,11 @@ public class ModelImporter {
         // listTypeSpecifier: 'list' '<' typeSpecifier '>'
         if (typeName.toLowerCase().startsWith("interval<")) {
             DataType pointType = resolveTypeName(typeName.substring(typeName.indexOf('<') + 1, typeName.lastIndexOf('>')));
-            return new IntervalType(pointType);
+            return TypeInterner.intervalOf(pointType);
         }
         else if (typeName.toLowerCase().startsWith("list<")) {
             DataType elementType = resolveTypeName(typeName.substring(typeName.indexOf('<') + 1, typeName.lastIndexOf('>')));
-            return new ListType(elementType);
+            return TypeInterner.listOf(elementType);
         }
 
         DataType result = lookupType(typeName);
@@ -543,6 +666,10 @@ public class ModelImporter {
             }
 
             resolvedTypes.put(casify(result.getName()), result);
+            if (lazyTypeImport) {
+                pendingRelationshipInfos.add(t);
+                pendingRelationshipTypes.add(result);
+            }
 
             if(t.getParameter() != null) {
                 result.addGenericParameter(resolveGenericParameterDeclarations(t.getParameter()));
@@ -602,12 +729,12 @@ public class ModelImporter {
     }
 
     private IntervalType resolveIntervalType(IntervalTypeInfo t) {
-        IntervalType result = new IntervalType(resolveTypeNameOrSpecifier(t.getPointType(), t.getPointTypeSpecifier()));
+        IntervalType result = TypeInterner.intervalOf(resolveTypeNameOrSpecifier(t.getPointType(), t.getPointTypeSpecifier()));
         return result;
     }
 
     private ListType resolveListType(ListTypeInfo t) {
-        ListType result = new ListType(resolveTypeNameOrSpecifier(t.getElementType(), t.getElementTypeSpecifier()));
+        ListType result = TypeInterner.listOf(resolveTypeNameOrSpecifier(t.getElementType(), t.getElementTypeSpecifier()));
         return result;
     }
 
@@ -623,7 +750,7 @@ public class ModelImporter {
                 types.add(resolveTypeSpecifier(typeSpecifier));
             }
         }
-        return new ChoiceType(types);
+        return TypeInterner.choiceOf(types);
     }
 
     /**
@@ -19,7 +19,14 @@ public class OperatorEntry {
         return this.name;
     }
 
-    private SignatureNodes signatures = new SignatureNodes();
+    /*
+    Operators added with addOperator modify the signature tree in place, which is only done while the entry is being
+    built. Instantiations registered during resolution replace the tree with a modified copy instead (see
+    addInstantiation), so that resolutions running concurrently always see a complete tree.
+     */
+    private volatile SignatureNodes signatures = new SignatureNodes();
+    // Every non-generic operator in the signature tree, by signature, so that exact matches are found without walking the tree
+    private volatile Map<Signature, Operator> operators = new HashMap<>();
     private Map<Signature, GenericOperator> genericOperators = new HashMap<>();
 
     private static class SignatureNode {
@@ -71,6 +78,12 @@ public class OperatorEntry {
 
         private SignatureNodes subSignatures = new SignatureNodes();
 
+        public SignatureNode copy() {
+            SignatureNode result = new SignatureNode(operator);
+            result.subSignatures = subSignatures.copy();
+            return result;
+        }
+
         @Override
         public int hashCode() {
             return operator.getSignature().hashCode();
@@ -94,19 +107,69 @@ public class OperatorEntry {
 
     private static class SignatureNodes {
         private Map<Signature, SignatureNode> signatures = new HashMap<>();
+        // The same nodes, by number of operands, a call can only resolve to a signature with the same number of operands
+        private Map<Integer, List<SignatureNode>> signaturesBySize = new HashMap<>();
+
+        public SignatureNodes copy() {
+            SignatureNodes result = new SignatureNodes();
+            for (SignatureNode n : signatures.values()) {
+                result.put(n.copy());
+            }
+            return result;
+        }
+
+        private void put(SignatureNode node) {
+            signatures.put(node.getSignature(), node);
+            signaturesBySize.computeIfAbsent(node.getSignature().getSize(), k -> new ArrayList<>()).add(node);
+        }
+
+        private void remove(SignatureNode node) {
+            signatures.remove(node.getSignature());
+            signaturesBySize.get(node.getSignature().getSize()).remove(node);
+        }
+
+        private List<SignatureNode> getSignatures(int size) {
+            List<SignatureNode> result = signaturesBySize.get(size);
+            return result != null ? result : Collections.emptyList();
+        }
 
         public boolean contains(Operator operator) {
-            boolean result = signatures.containsKey(operator.getSignature());
-            if (!result) {
-                for (SignatureNode n : signatures.values()) {
-                    result = n.subSignatures.contains(operator);
-                    if (result) {
-                        break;
+            return contains(operator.getSignature());
+        }
+
+        public boolean contains(Signature signature) {
+            if (signatures.containsKey(signature)) {
+                return true;
+            }
+
+            for (SignatureNode n : getSignatures(signature.getSize())) {
+                if (n.subSignatures.contains(signature)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        /*
+        Returns whether resolving a call to the given signature, which must be in the tree, marks the result as having
+        overloads. This is the case if any level on the path to the signature has more than one signature of that size.
+         */
+        public boolean isOverloaded(Signature signature) {
+            List<SignatureNode> nodes = getSignatures(signature.getSize());
+            if (nodes.size() > 1) {
+                return true;
+            }
+
+            if (!signatures.containsKey(signature)) {
+                for (SignatureNode n : nodes) {
+                    if (n.subSignatures.contains(signature)) {
+                        return n.subSignatures.isOverloaded(signature);
                     }
                 }
             }
 
-            return result;
+            return false;
         }
 
         public void add(SignatureNode node) {
@@ -119,7 +182,7 @@ public class OperatorEntry {
             }
 
             boolean added = false;
-            for (SignatureNode n : signatures.values()) {
+            for (SignatureNode n : getSignatures(node.getSignature().getSize())) {
                 if (n.getSignature().isSuperTypeOf(node.getSignature())) {
                     n.subSignatures.add(node);
                     added = true;
@@ -128,27 +191,24 @@ public class OperatorEntry {
             }
 
             if (!added) {
-                for (SignatureNode n : signatures.values().toArray(new SignatureNode[signatures.size()])) {
+                List<SignatureNode> nodes = getSignatures(node.getSignature().getSize());
+                for (SignatureNode n : nodes.toArray(new SignatureNode[nodes.size()])) {
                     if (node.getSignature().isSuperTypeOf(n.getSignature())) {
-                        signatures.remove(n.getSignature());
+                        remove(n);
                         node.subSignatures.add(n);
                     }
                 }
 
-                signatures.put(node.getSignature(), node);
+                put(node);
             }
         }
 
         public List<OperatorResolution> resolve(CallContext callContext, ConversionMap conversionMap, OperatorMap operatorMap) {
             ArrayList<OperatorResolution> results = null;
 
-            int signatureCount = 0;
-            for (SignatureNode n : signatures.values()) {
-
-                if (n.getSignature().getSize() == callContext.getSignature().getSize()) {
-                    signatureCount++;
-                }
-
+            List<SignatureNode> nodes = getSignatures(callContext.getSignature().getSize());
+            int signatureCount = nodes.size();
+            for (SignatureNode n : nodes) {
                 List<OperatorResolution> nodeResults = n.resolve(callContext, conversionMap, operatorMap);
                 if (nodeResults != null) {
                     if (results == null) {
@@ -168,6 +228,22 @@ public class OperatorEntry {
         }
     }
 
+    /*
+    Returns a copy of this entry that shares the registered operators, but not the signature tree, so that
+    operators added to (or instantiated in) the copy are not visible in this entry
+     */
+    public synchronized OperatorEntry copy() {
+        OperatorEntry result = new OperatorEntry(name);
+        result.signatures = signatures.copy();
+        result.operators.putAll(operators);
+        result.genericOperators.putAll(genericOperators);
+        return result;
+    }
+
+    public boolean hasGenericOperators() {
+        return !genericOperators.isEmpty();
+    }
+
     public boolean containsOperator(Operator operator) {
         if (operator instanceof GenericOperator) {
             return containsGenericOperator((GenericOperator)operator);
@@ -183,6 +259,7 @@ public class OperatorEntry {
         }
         else {
             signatures.add(new SignatureNode(operator));
+            operators.put(operator.getSignature(), operator);
         }
     }
 
@@ -247,11 +324,28 @@ public class OperatorEntry {
         }
     }
 
-    public List<OperatorResolution> resolve(CallContext callContext, OperatorMap operatorMap, ConversionMap conversionMap) {
+    /*
+    Returns the resolutions of the given call, or null if the call does not resolve. If the call cannot be resolved
+    (e.g. the instantiation of the generic operators is ambiguous), the failure is added to the given failures and null
+    is returned.
+     */
+    public List<OperatorResolution> resolve(CallContext callContext, OperatorMap operatorMap, ConversionMap conversionMap, List<ResolutionFailure> failures) {
         if (callContext == null) {
             throw new IllegalArgumentException("callContext is null");
         }
 
+        // An exact match always scores lowest, so the other signatures need not be considered
+        Operator exactMatch = operators.get(callContext.getSignature());
+        if (exactMatch != null) {
+            OperatorResolution resolution = new OperatorResolution(exactMatch);
+            if (signatures.isOverloaded(exactMatch.getSignature())) {
+                resolution.setOperatorHasOverloads();
+            }
+            List<OperatorResolution> results = new ArrayList<>();
+            results.add(resolution);
+            return results;
+        }
+
         List<OperatorResolution> results = signatures.resolve(callContext, conversionMap, operatorMap);
 
         // If there is no resolution, or all resolutions require conversion, attempt to instantiate a generic signature
@@ -260,10 +354,12 @@ public class OperatorEntry {
             boolean signaturesInstantiated = false;
             List<Signature> callSignatures = expandChoices(callContext.getSignature());
             for (Signature callSignature : callSignatures) {
-                Operator result = instantiate(callSignature, operatorMap, conversionMap, callContext.getAllowPromotionAndDemotion());
-                if (result != null && !signatures.contains(result)) {
-                    // If the generic signature was instantiated, store it as an actual signature.
-                    signatures.add(new SignatureNode(result));
+                Operator result = instantiate(callSignature, operatorMap, conversionMap, callContext.getAllowPromotionAndDemotion(), failures);
+                if (!failures.isEmpty()) {
+                    return null;
+                }
+                // If the generic signature was instantiated, store it as an actual signature.
+                if (result != null && addInstantiation(result)) {
                     signaturesInstantiated = true;
                 }
             }
@@ -277,12 +373,38 @@ public class OperatorEntry {
         return results;
     }
 
-    private Operator instantiate(Signature signature, OperatorMap operatorMap, ConversionMap conversionMap, boolean allowPromotionAndDemotion) {
+    /*
+    Registers an instantiation of a generic operator, returning false if it is already registered
+     */
+    private synchronized boolean addInstantiation(Operator operator) {
+        if (signatures.contains(operator)) {
+            return false;
+        }
+
+        SignatureNodes newSignatures = signatures.copy();
+        newSignatures.add(new SignatureNode(operator));
+        Map<Signature, Operator> newOperators = new HashMap<>(operators);
+        newOperators.put(operator.getSignature(), operator);
+        signatures = newSignatures;
+        operators = newOperators;
+        return true;
+    }
+
+    private Operator instantiate(Signature signature, OperatorMap operatorMap, ConversionMap conversionMap, boolean allowPromotionAndDemotion, List<ResolutionFailure> failures) {
+        if (conversionMap == null && !genericOperators.isEmpty()) {
+            failures.add(new ResolutionFailure(String.format("Generic operator %s cannot be instantiated without a conversion map.", this.name)));
+            return null;
+        }
+
         List<Operator> instantiations = new ArrayList<Operator>();
         int lowestConversionScore = Integer.MAX_VALUE;
         Operator instantiation = null;
         for (GenericOperator genericOperator : genericOperators.values()) {
             InstantiationResult instantiationResult = genericOperator.instantiate(signature, operatorMap, conversionMap, allowPromotionAndDemotion);
+            if (instantiationResult.getFailure() != null) {
+                failures.add(instantiationResult.getFailure());
+                return null;
+            }
             if (instantiationResult.getOperator() != null) {
                 if (instantiationResult.getConversionScore() <= lowestConversionScore) {
                     if (instantiation == null || instantiationResult.getConversionScore() < lowestConversionScore) {
@@ -290,8 +412,9 @@ public class OperatorEntry {
                         lowestConversionScore = instantiationResult.getConversionScore();
                     }
                     else {
-                        throw new IllegalArgumentException(String.format("Ambiguous generic instantiation of operator %s between signature %s and %s.",
-                                this.name, instantiation.getSignature().toString(), instantiationResult.getOperator().getSignature().toString()));
+                        failures.add(new ResolutionFailure(String.format("Ambiguous generic instantiation of operator %s between signature %s and %s.",
+                                this.name, instantiation.getSignature().toString(), instantiationResult.getOperator().getSignature().toString())));
+                        return null;
                     }
                 }
             }
@@ -3,58 +3,298 @@ package org.cqframework.cql.cql2elm.model;
 import org.hl7.cql.model.*;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class OperatorMap {
     private Map<String, OperatorEntry> operators = new HashMap<>();
+    private OperatorMap baseOperators;
+    private volatile boolean frozen;
+    // Versions are drawn from a sequence shared by all operator maps, see getVersion
+    private static final AtomicLong versionSequence = new AtomicLong();
+    private volatile long version;
+
+    /*
+    Resolutions computed against a particular version of a conversion map and of this map. When either map changes, a
+    new cache is started, so cached resolutions never outlive the conversions and operators they were computed from.
+    The cache does not refer to the conversion map, so that it does not keep the conversion map (and the types of the
+    translation it belongs to) alive.
+     */
+    private static class ResolutionCache {
+        private final long conversionMapVersion;
+        private final long operatorMapVersion;
+        private final Map<ResolutionKey, CachedResolution> resolutions = new ConcurrentHashMap<>();
+
+        ResolutionCache(long conversionMapVersion, long operatorMapVersion) {
+            this.conversionMapVersion = conversionMapVersion;
+            this.operatorMapVersion = operatorMapVersion;
+        }
+
+        boolean isFor(long conversionMapVersion, long operatorMapVersion) {
+            return this.conversionMapVersion == conversionMapVersion && this.operatorMapVersion == operatorMapVersion;
+        }
+    }
+
+    /*
+    The outcome of a resolution: the resolution (null if the call does not resolve), or why the call could not be
+    resolved. Failures are cached as values, the exception reporting one is created by resolveOperator when it is thrown.
+     */
+    private static class CachedResolution {
+        private final OperatorResolution resolution;
+        private final ResolutionFailure failure;
+
+        CachedResolution(OperatorResolution resolution, ResolutionFailure failure) {
+            this.resolution = resolution;
+            this.failure = failure;
+        }
+    }
+
+    private static class ResolutionKey {
+        private final String operatorName;
+        private final Signature signature;
+        private final boolean allowPromotionAndDemotion;
+        private final boolean allowFluent;
+        private final boolean mustResolve;
+
+        ResolutionKey(CallContext callContext) {
+            this.operatorName = callContext.getOperatorName();
+            this.signature = callContext.getSignature();
+            this.allowPromotionAndDemotion = callContext.getAllowPromotionAndDemotion();
+            this.allowFluent = callContext.getAllowFluent();
+            this.mustResolve = callContext.getMustResolve();
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(operatorName, signature, allowPromotionAndDemotion, allowFluent, mustResolve);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o instanceof ResolutionKey) {
+                ResolutionKey that = (ResolutionKey)o;
+                return this.operatorName.equals(that.operatorName)
+                        && this.signature.equals(that.signature)
+                        && this.allowPromotionAndDemotion == that.allowPromotionAndDemotion
+                        && this.allowFluent == that.allowFluent
+                        && this.mustResolve == that.mustResolve;
+            }
+
+            return false;
+        }
+    }
+
+    // A cache for each conversion map this map is used with. A frozen map (e.g. an included library shared between
+    // translations) is used with the conversion map of each translation, so caches are kept for all of them at once.
+    // Conversion maps are held weakly, the caches of a translation are discarded once its conversion map is no longer used
+    private final Map<ConversionMap, ResolutionCache> resolutionCaches = Collections.synchronizedMap(new WeakHashMap<>());
+    // Resolutions without a conversion map (see supportsOperator)
+    private volatile ResolutionCache conversionlessResolutionCache = new ResolutionCache(0, 0);
+    private volatile Map<DataType, Boolean> pointTypes = new ConcurrentHashMap<>();
+
+    public OperatorMap() {
+    }
+
+    /*
+    Creates an operator map layered over the given base map. The base map is never modified through this map:
+    operators added here, including generic instantiations made while resolving, are registered in a local copy of
+    the affected entry. This allows a single base map to be shared by any number of layered maps.
+     */
+    public OperatorMap(OperatorMap baseOperators) {
+        if (baseOperators == null) {
+            throw new IllegalArgumentException("baseOperators is null.");
+        }
+
+        this.baseOperators = baseOperators;
+    }
+
+    /*
+    Prevents any further operators from being added to this map. Resolution against a frozen map never modifies the map
+    itself (instantiations of generic operators are registered by the entry, see OperatorEntry.addInstantiation), so a
+    frozen map can be read by any number of concurrent translations without locking.
+     */
+    public void freeze() {
+        frozen = true;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    private InstantiationCache instantiationCache;
+    /*
+    The cache through which instantiations of generic operators are reused by other translations, or null if
+    instantiations are not reused (see InstantiationCache). Instantiations are always registered in this map's entries,
+    so they are computed once per map in any case. The cache of a base map is not used.
+     */
+    public InstantiationCache getInstantiationCache() {
+        return instantiationCache;
+    }
+
+    public void setInstantiationCache(InstantiationCache instantiationCache) {
+        this.instantiationCache = instantiationCache;
+    }
+
+    /*
+    Returns a number that changes whenever an operator is added to this map or its base map, so that results computed
+    against the map can be cached (see ConversionMap.findConversion). Instantiations of generic operators registered
+    while resolving do not change the version, they do not change the outcome of any resolution.
+     */
+    public long getVersion() {
+        return baseOperators != null ? Math.max(version, baseOperators.getVersion()) : version;
+    }
 
     public boolean containsOperator(Operator operator) {
-        OperatorEntry entry = getEntry(operator.getName());
-        return entry.containsOperator(operator);
+        checkOperatorName(operator.getName());
+        OperatorEntry entry = findEntry(operator.getName());
+        return entry != null && entry.containsOperator(operator);
     }
 
     public void addOperator(Operator operator) {
+        if (frozen) {
+            throw new IllegalArgumentException(String.format("Operator %s cannot be added, the operator map is frozen.", operator.getName()));
+        }
+
         OperatorEntry entry = getEntry(operator.getName());
         entry.addOperator(operator);
+        version = versionSequence.incrementAndGet();
+        resolutionCaches.clear();
+        conversionlessResolutionCache = new ResolutionCache(0, 0);
+        pointTypes = new ConcurrentHashMap<>();
     }
 
-    private OperatorEntry getEntry(String operatorName) {
+    private void checkOperatorName(String operatorName) {
         if (operatorName == null || operatorName.equals("")) {
             throw new IllegalArgumentException("operatorName is null or empty.");
         }
+    }
+
+    private OperatorEntry findEntry(String operatorName) {
+        OperatorEntry entry = operators.get(operatorName);
+        if (entry == null && baseOperators != null) {
+            entry = baseOperators.findEntry(operatorName);
+        }
+
+        return entry;
+    }
+
+    private OperatorEntry getEntry(String operatorName) {
+        checkOperatorName(operatorName);
 
         OperatorEntry entry = operators.get(operatorName);
         if (entry == null) {
-            entry = new OperatorEntry(operatorName);
+            OperatorEntry baseEntry = baseOperators != null ? baseOperators.findEntry(operatorName) : null;
+            entry = baseEntry != null ? baseEntry.copy() : new OperatorEntry(operatorName);
             operators.put(operatorName, entry);
         }
 
         return entry;
     }
 
+    private OperatorEntry getResolutionEntry(String operatorName) {
+        checkOperatorName(operatorName);
+
+        OperatorEntry entry = operators.get(operatorName);
+        if (entry == null) {
+            // Entries without generic operators are never modified by resolution, so they can be read directly from the
+            // base. A frozen map reads generic entries from the base too, their instantiations are registered in the base entry
+            OperatorEntry baseEntry = baseOperators != null ? baseOperators.findEntry(operatorName) : null;
+            if (frozen || baseEntry == null || !baseEntry.hasGenericOperators()) {
+                // No entry is created for unknown operators, resolution against a library shared between threads must not modify it
+                return baseEntry;
+            }
+
+            entry = getEntry(operatorName);
+        }
+
+        return entry;
+    }
+
     public boolean supportsOperator(String libraryName, String operatorName, DataType... signature) {
         CallContext call = new CallContext(libraryName, operatorName, false, false, false, signature);
         try {
-            OperatorResolution resolution = resolveOperator(call, null);
-            if (resolution == null) {
-                return false;
-            }
+            return tryResolveOperator(call, null) != null;
         }
         catch (Exception e) {
+            // Any failure to resolve the call means the operator is not supported
             return false;
         }
-
-        return true;
     }
 
     // Returns true if the given type supports the operations necessary to be the point type of an interval
     // (i.e. comparison, successor, and predecessor)
     public boolean isPointType(DataType type) {
-        return supportsOperator("System", "LessOrEqual", type, type) && supportsOperator("System", "Successor", type);
+        Map<DataType, Boolean> pointTypes = this.pointTypes;
+        Boolean result = pointTypes.get(type);
+        if (result == null) {
+            result = supportsOperator("System", "LessOrEqual", type, type) && supportsOperator("System", "Successor", type);
+            pointTypes.put(type, result);
+        }
+
+        return result;
     }
 
+    /*
+    Resolutions are cached by operator name, call signature and call options, and a cache hit returns a copy of the
+    cached resolution, since callers modify the resolution they are given. Calls that fail to resolve (e.g. ambiguous
+    calls that must resolve) are cached as well, and throw a new exception for the cached failure each time.
+     */
     public OperatorResolution resolveOperator(CallContext callContext, ConversionMap conversionMap) {
-        OperatorEntry entry = getEntry(callContext.getOperatorName());
-        List<OperatorResolution> results = entry.resolve(callContext, this, conversionMap);
+        CachedResolution cachedResolution = resolveCachedOperator(callContext, conversionMap);
+        if (cachedResolution.failure != null) {
+            throw cachedResolution.failure.toException();
+        }
+
+        return cachedResolution.resolution != null ? cachedResolution.resolution.copy() : null;
+    }
+
+    /*
+    Resolves the given call without reporting failures as exceptions. Returns null if the call does not resolve, is
+    ambiguous, or could not be resolved for any other reason reported by resolveOperator. Use this rather than catching
+    the exceptions thrown by resolveOperator when only the outcome of the resolution is needed.
+     */
+    public OperatorResolution tryResolveOperator(CallContext callContext, ConversionMap conversionMap) {
+        CachedResolution cachedResolution = resolveCachedOperator(callContext, conversionMap);
+        return cachedResolution.resolution != null ? cachedResolution.resolution.copy() : null;
+    }
+
+    private CachedResolution resolveCachedOperator(CallContext callContext, ConversionMap conversionMap) {
+        long operatorMapVersion = getVersion();
+        long conversionMapVersion = conversionMap != null ? conversionMap.getVersion() : 0;
+        ResolutionCache cache = conversionMap != null ? resolutionCaches.get(conversionMap) : conversionlessResolutionCache;
+        if (cache == null || !cache.isFor(conversionMapVersion, operatorMapVersion)) {
+            cache = new ResolutionCache(conversionMapVersion, operatorMapVersion);
+            if (conversionMap != null) {
+                resolutionCaches.put(conversionMap, cache);
+            }
+            else {
+                conversionlessResolutionCache = cache;
+            }
+        }
+
+        ResolutionKey key = new ResolutionKey(callContext);
+        CachedResolution result = cache.resolutions.get(key);
+        if (result == null) {
+            List<ResolutionFailure> failures = new ArrayList<>();
+            OperatorResolution resolution = resolveUncachedOperator(callContext, conversionMap, failures);
+            result = new CachedResolution(resolution, failures.isEmpty() ? null : failures.get(0));
+            cache.resolutions.put(key, result);
+        }
+
+        return result;
+    }
+
+    /*
+    Returns the resolution of the given call, or null if the call does not resolve. If the call cannot be resolved, the
+    failure is added to the given failures and null is returned.
+     */
+    private OperatorResolution resolveUncachedOperator(CallContext callContext, ConversionMap conversionMap, List<ResolutionFailure> failures) {
+        OperatorEntry entry = getResolutionEntry(callContext.getOperatorName());
+        if (entry == null) {
+            return null;
+        }
+
+        List<OperatorResolution> results = entry.resolve(callContext, this, conversionMap, failures);
 
         // Score each resolution and return the lowest score
         // Duplicate scores indicate ambiguous match
@@ -94,11 +334,9 @@ public class OperatorMap {
                     for (OperatorResolution resolution : lowestScoringResults) {
                         message.append("\n  - ").append(resolution.getOperator().getName()).append(resolution.getOperator().getSignature());
                     }
-                    throw new IllegalArgumentException(message.toString());
-                }
-                else {
-                    return null;
+                    failures.add(new ResolutionFailure(message.toString()));
                 }
+                return null;
             }
             else {
                 result = lowestScoringResults.get(0);
@@ -14,6 +14,22 @@ public class OperatorResolution {
         this.operator = operator;
     }
 
+    /*
+    Returns a copy of this resolution that can be modified (e.g. by setting the library name) without affecting this one
+     */
+    public OperatorResolution copy() {
+        OperatorResolution result = new OperatorResolution(operator);
+        result.allowFluent = allowFluent;
+        result.libraryIdentifier = libraryIdentifier;
+        result.libraryName = libraryName;
+        if (conversions != null) {
+            result.conversions = new ArrayList<>(conversions);
+        }
+        result.operatorHasOverloads = operatorHasOverloads;
+        result.score = score;
+        return result;
+    }
+
     private Operator operator;
     public Operator getOperator() {
         return operator;
@@ -6,11 +6,16 @@ import org.hl7.elm.r1.AliasedQuerySource;
 import org.hl7.elm.r1.LetClause;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Map;
 
 public class QueryContext {
     private final HashMap<String, AliasedQuerySource> sources = new HashMap<>();
     private final HashMap<String, LetClause> lets = new HashMap<>();
+    // Sources and lets of the enclosing query contexts, innermost binding first, see enterScope
+    private Map<String, AliasedQuerySource> enclosingSources = Collections.emptyMap();
+    private Map<String, LetClause> enclosingLets = Collections.emptyMap();
 
     private void internalAddQuerySource(AliasedQuerySource source) {
         sources.put(source.getAlias(), source);
@@ -73,6 +78,39 @@ public class QueryContext {
         return lets.get(identifier);
     }
 
+    /*
+    Makes the sources and lets of the given enclosing query context (and of its own enclosing contexts) visible in
+    this context. Query contexts are only modified while they are the innermost context, so the bindings of the
+    enclosing context can be captured when this context is entered. The captured maps are shared between nested
+    contexts whenever the enclosing context adds no bindings of its own.
+     */
+    public void enterScope(QueryContext enclosingContext) {
+        enclosingSources = bind(enclosingContext.enclosingSources, enclosingContext.sources);
+        enclosingLets = bind(enclosingContext.enclosingLets, enclosingContext.lets);
+    }
+
+    private static <T> Map<String, T> bind(Map<String, T> enclosing, Map<String, T> local) {
+        if (local.isEmpty()) {
+            return enclosing;
+        }
+
+        Map<String, T> result = new HashMap<>(enclosing);
+        result.putAll(local);
+        return Collections.unmodifiableMap(result);
+    }
+
+    // Resolves the alias in this context or in the nearest enclosing context that defines it
+    public AliasedQuerySource resolveVisibleAlias(String identifier) {
+        AliasedQuerySource result = sources.get(identifier);
+        return result != null ? result : enclosingSources.get(identifier);
+    }
+
+    // Resolves the let in this context or in the nearest enclosing context that defines it
+    public LetClause resolveVisibleLet(String identifier) {
+        LetClause result = lets.get(identifier);
+        return result != null ? result : enclosingLets.get(identifier);
+    }
+
     private boolean isSingularValue = true;
     public boolean isSingular() {
         return isSingularValue;
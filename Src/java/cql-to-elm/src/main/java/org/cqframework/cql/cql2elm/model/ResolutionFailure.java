@@ -0,0 +1,31 @@
+package org.cqframework.cql.cql2elm.model;
+
+/*
+Why an operator call could not be resolved (e.g. the call is ambiguous). Resolution reports failures as values, so
+that they can be cached and tested cheaply, and an exception is only created where the failure is thrown (see
+OperatorMap.resolveOperator).
+ */
+public class ResolutionFailure {
+    public ResolutionFailure(String message) {
+        if (message == null || message.equals("")) {
+            throw new IllegalArgumentException("message is null or empty");
+        }
+
+        this.message = message;
+    }
+
+    private final String message;
+    public String getMessage() {
+        return message;
+    }
+
+    // Returns a new exception for the failure each time, exceptions are not shared between the callers reporting it
+    public IllegalArgumentException toException() {
+        return new IllegalArgumentException(message);
+    }
+
+    @Override
+    public String toString() {
+        return message;
+    }
+}
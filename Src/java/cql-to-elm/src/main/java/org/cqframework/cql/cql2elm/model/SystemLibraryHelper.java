@@ -2,8 +2,53 @@ package org.cqframework.cql.cql2elm.model;
 
 import org.hl7.cql.model.*;
 import org.hl7.elm.r1.VersionedIdentifier;
+import org.hl7.elm_modelinfo.r1.ModelInfo;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class SystemLibraryHelper {
+    private static final Map<String, SharedSystemLibrary> sharedLibraries = new ConcurrentHashMap<>();
+
+    /*
+    The System library, and the conversion map built from its conversions, are built once per system model version
+    and never modified afterwards, so they can be safely read by any number of concurrent translations.
+     */
+    private static class SharedSystemLibrary {
+        private final TranslatedLibrary library;
+        private final ConversionMap conversionMap = new ConversionMap();
+
+        SharedSystemLibrary(SystemModel systemModel) {
+            library = load(systemModel);
+            library.getOperatorMap().freeze();
+            for (Conversion conversion : library.getConversions()) {
+                conversionMap.add(conversion);
+            }
+        }
+    }
+
+    private static SharedSystemLibrary getSharedLibrary(SystemModel systemModel) {
+        ModelInfo modelInfo = systemModel.getModelInfo();
+        String key = String.format("%s|%s", modelInfo.getUrl(), modelInfo.getVersion());
+        return sharedLibraries.computeIfAbsent(key, k -> new SharedSystemLibrary(systemModel));
+    }
+
+    /**
+     * Returns a System library for use by a single translation. The library is layered over a shared System library,
+     * so that operators instantiated during the translation are local to the returned library.
+     */
+    public static TranslatedLibrary getSystemLibrary(SystemModel systemModel) {
+        return new TranslatedLibrary(getSharedLibrary(systemModel).library);
+    }
+
+    /**
+     * Returns the shared conversion map containing the conversions of the System library. The returned map must not be
+     * modified, it is intended to be used as the base of a per-translation conversion map.
+     */
+    public static ConversionMap getSystemConversionMap(SystemModel systemModel) {
+        return getSharedLibrary(systemModel).conversionMap;
+    }
+
     public static TranslatedLibrary load(SystemModel systemModel) {
         TranslatedLibrary system = new TranslatedLibrary();
         system.setIdentifier(new VersionedIdentifier().withId("System").withVersion("1.0"));
@@ -12,9 +12,30 @@ public class TranslatedLibrary {
     private VersionedIdentifier identifier;
     private Library library;
     private final HashMap<String, Element> namespace = new HashMap<>();
-    private final OperatorMap operators = new OperatorMap();
+    private final OperatorMap operators;
     private final java.util.List<Conversion> conversions = new ArrayList<>();
 
+    public TranslatedLibrary() {
+        operators = new OperatorMap();
+    }
+
+    /*
+    Creates a library layered over the given base library. The identifier, library, namespace and conversions of the
+    base library are carried over, and its operators are visible through this library, but operators added or
+    instantiated in this library are not registered in the base library.
+     */
+    public TranslatedLibrary(TranslatedLibrary baseLibrary) {
+        if (baseLibrary == null) {
+            throw new IllegalArgumentException("baseLibrary is null.");
+        }
+
+        identifier = baseLibrary.identifier;
+        library = baseLibrary.library;
+        namespace.putAll(baseLibrary.namespace);
+        operators = new OperatorMap(baseLibrary.operators);
+        conversions.addAll(baseLibrary.conversions);
+    }
+
     public VersionedIdentifier getIdentifier() {
         return identifier;
     }
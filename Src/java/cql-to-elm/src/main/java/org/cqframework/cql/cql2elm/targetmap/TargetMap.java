@@ -0,0 +1,231 @@
+package org.cqframework.cql.cql2elm.targetmap;
+
+import org.cqframework.cql.cql2elm.StringEscapeUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A compiled model target map. Target maps are compiled once and cached by their text, applying a compiled target map
+ * to a source expression (see LibraryBuilder.applyTargetMap) only needs to build the resulting expression tree.
+ *
+ * Supported target mapping syntax:
+ *   null
+ *     Resolves as the source itself
+ *   %value.&lt;property name&gt;
+ *     Resolves as a property accessor with the given source and &lt;property name&gt; as the path
+ *   &lt;qualified function name&gt;(%value)
+ *     Resolves as a function ref with the given function name and the source as an operand
+ *   &lt;type name&gt;:&lt;map&gt;;&lt;type name&gt;:&lt;map&gt;...
+ *     Semi-colon delimited list of type names and associated maps
+ *     Resolves as a case with whens for each type, with target mapping applied per the target map for that type
+ *   %parent.&lt;qualified path&gt;[&lt;key path&gt;=&lt;key value&gt;,&lt;key path&gt;=&lt;key value&gt;,...].&lt;qualified path&gt;
+ *     Resolves as a replacement of the property on which it appears
+ *     Replaces the path of the property on which it appears with the given qualified path, which then becomes the
+ *     source of a query with a where clause with criteria built for each comparison in the indexer
+ *     If there is a trailing qualified path, the query is wrapped in a singletonFrom and a property access
+ * Any other target map results in an exception
+ */
+public class TargetMap {
+    public enum Kind {
+        NULL,
+        CHOICE,
+        FUNCTION,
+        INDEXER,
+        PROPERTY
+    }
+
+    public static class ChoiceItem {
+        private final String typeName;
+        private final TargetMap map;
+
+        private ChoiceItem(String typeName, TargetMap map) {
+            this.typeName = typeName;
+            this.map = map;
+        }
+
+        public String getTypeName() {
+            return typeName;
+        }
+
+        public TargetMap getMap() {
+            return map;
+        }
+    }
+
+    public static class IndexerItem {
+        private final String path;
+        private final List<String> pathParts;
+        private final String value;
+
+        private IndexerItem(String path, String value) {
+            this.path = path;
+            this.pathParts = Collections.unmodifiableList(Arrays.asList(path.split("\\.")));
+            this.value = value;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public List<String> getPathParts() {
+            return pathParts;
+        }
+
+        public String getValue() {
+            return value;
+        }
+    }
+
+    private static final TargetMap NULL_MAP = new TargetMap(null, Kind.NULL);
+    private static final Map<String, TargetMap> targetMaps = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the compiled form of the given target map. Throws an IllegalArgumentException if the target map is
+     * malformed or uses an unsupported mapping.
+     */
+    public static TargetMap compile(String targetMap) {
+        if (targetMap == null || targetMap.equals("null")) {
+            return NULL_MAP;
+        }
+
+        TargetMap result = targetMaps.get(targetMap);
+        if (result == null) {
+            result = parse(targetMap);
+            targetMaps.put(targetMap, result);
+        }
+
+        return result;
+    }
+
+    private final String text;
+    private final Kind kind;
+    private List<ChoiceItem> choiceItems;
+    private String libraryName;
+    private String functionName;
+    private TargetMap argument;
+    private List<String> indexerPath;
+    private List<IndexerItem> indexerItems;
+    private List<String> targetPath;
+    private String propertyName;
+
+    private TargetMap(String text, Kind kind) {
+        this.text = text;
+        this.kind = kind;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public List<ChoiceItem> getChoiceItems() {
+        return choiceItems;
+    }
+
+    public String getLibraryName() {
+        return libraryName;
+    }
+
+    public String getFunctionName() {
+        return functionName;
+    }
+
+    // The target map of the function argument, null if the argument is the source (%value)
+    public TargetMap getArgument() {
+        return argument;
+    }
+
+    public List<String> getIndexerPath() {
+        return indexerPath;
+    }
+
+    public List<IndexerItem> getIndexerItems() {
+        return indexerItems;
+    }
+
+    // The path following the indexer, null if there is none
+    public List<String> getTargetPath() {
+        return targetPath;
+    }
+
+    public String getPropertyName() {
+        return propertyName;
+    }
+
+    private static TargetMap parse(String targetMap) {
+        TargetMap result;
+        if (targetMap.contains(";")) {
+            result = new TargetMap(targetMap, Kind.CHOICE);
+            List<ChoiceItem> choiceItems = new ArrayList<>();
+            for (String typeCase : targetMap.split(";")) {
+                if (!typeCase.isEmpty()) {
+                    String[] caseElements = typeCase.split(":");
+                    if (caseElements.length != 2) {
+                        throw new IllegalArgumentException(String.format("Malformed type case in targetMap %s", targetMap));
+                    }
+                    choiceItems.add(new ChoiceItem(caseElements[0], compile(caseElements[1])));
+                }
+            }
+            result.choiceItems = Collections.unmodifiableList(choiceItems);
+        }
+        else if (targetMap.contains("(")) {
+            result = new TargetMap(targetMap, Kind.FUNCTION);
+            int invocationStart = targetMap.indexOf("(");
+            String qualifiedFunctionName = targetMap.substring(0, invocationStart);
+            String[] nameParts = qualifiedFunctionName.split("\\.");
+            result.functionName = qualifiedFunctionName;
+            if (nameParts.length == 2) {
+                result.libraryName = nameParts[0];
+                result.functionName = nameParts[1];
+            }
+
+            String functionArgument = targetMap.substring(invocationStart + 1, targetMap.lastIndexOf(')'));
+            result.argument = functionArgument.equals("%value") ? null : compile(functionArgument);
+        }
+        else if (targetMap.contains("[")) {
+            result = new TargetMap(targetMap, Kind.INDEXER);
+            int indexerStart = targetMap.indexOf("[");
+            int indexerEnd = targetMap.indexOf("]");
+            String indexer = targetMap.substring(indexerStart + 1, indexerEnd);
+            String indexerPath = targetMap.substring(0, indexerStart);
+            result.indexerPath = Collections.unmodifiableList(Arrays.asList(indexerPath.split("\\.")));
+
+            List<IndexerItem> indexerItems = new ArrayList<>();
+            for (String indexerItem : indexer.split(",")) {
+                String[] indexerItemParts = indexerItem.split("=");
+                if (indexerItemParts.length != 2) {
+                    throw new IllegalArgumentException(String.format("Invalid indexer item %s in targetMap %s", indexerItem, targetMap));
+                }
+
+                String rightValue = indexerItemParts[1].substring(1, indexerItemParts[1].length() - 1);
+                indexerItems.add(new IndexerItem(indexerItemParts[0], StringEscapeUtils.unescapeCql(rightValue)));
+            }
+            result.indexerItems = Collections.unmodifiableList(indexerItems);
+
+            if (indexerEnd < targetMap.length()) {
+                String targetPath = targetMap.substring(indexerEnd + 1);
+                if (targetPath.startsWith(".")) {
+                    targetPath = targetPath.substring(1);
+                }
+                result.targetPath = Collections.unmodifiableList(Arrays.asList(targetPath.split("\\.")));
+            }
+        }
+        else if (targetMap.contains("%value.")) {
+            result = new TargetMap(targetMap, Kind.PROPERTY);
+            result.propertyName = targetMap.substring(7);
+        }
+        else {
+            throw new IllegalArgumentException(String.format("TargetMapping not implemented: %s", targetMap));
+        }
+
+        return result;
+    }
+}
@@ -1283,5 +1283,6 @@ public class Cql2ElmVisitorTest {
         assertThat(t.getTrackbacks(), not(empty()));
         assertThat(t.getTrackbacks().get(0), notNullValue());
         assertThat(t.getTrackerId(), notNullValue());
+        assertThat(t.getTrackerId(), sameInstance(t.getTrackerId()));
     }
 }
@@ -0,0 +1,149 @@
+package org.cqframework.cql.cql2elm;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.misc.Interval;
+import org.hl7.elm.r1.VersionedIdentifier;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class LibrarySourceProviderTests {
+
+    private static void writeLibrary(Path directory, String fileName) throws IOException {
+        Files.write(directory.resolve(fileName), fileName.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String getSource(LibrarySourceProvider provider, String id, String version) throws IOException {
+        try (InputStream source = provider.getLibrarySource(new VersionedIdentifier().withId(id).withVersion(version))) {
+            if (source == null) {
+                return null;
+            }
+
+            StringBuilder result = new StringBuilder();
+            int c;
+            while ((c = source.read()) != -1) {
+                result.append((char)c);
+            }
+            return result.toString();
+        }
+    }
+
+    @Test
+    public void testIndexedLibrarySourceProvider() throws IOException {
+        Path directory = Files.createTempDirectory("indexed-library-source-provider");
+        writeLibrary(directory, "Common.cql");
+        writeLibrary(directory, "Common-1.0.0.cql");
+        writeLibrary(directory, "Common-1.2.0.cql");
+        writeLibrary(directory, "Common-2.0.0.cql");
+        writeLibrary(directory, "CommonExtensions-4.0.0.cql");
+        writeLibrary(directory, "Other.cql");
+        writeLibrary(directory, "Util-1.0.0.cql");
+        writeLibrary(directory, "Util-1.3.0.cql");
+
+        try (IndexedLibrarySourceProvider provider = new IndexedLibrarySourceProvider(directory)) {
+            DefaultLibrarySourceProvider defaultProvider = new DefaultLibrarySourceProvider(directory);
+            String[][] lookups = {
+                    { "Common", "1.0.0" }, { "Common", "1.1.0" }, { "Common", "1.2" }, { "Common", "2.0.0" },
+                    { "Common", "3.0.0" }, { "Common", null }, { "Other", null }, { "Other", "1.0.0" }, { "Util", null },
+                    { "Missing", null }
+            };
+            for (String[] lookup : lookups) {
+                assertThat(getSource(provider, lookup[0], lookup[1]), is(getSource(defaultProvider, lookup[0], lookup[1])));
+            }
+
+            assertThat(getSource(provider, "Common", "1.1.0"), is("Common-1.2.0.cql"));
+            assertThat(getSource(provider, "Common", "3.0.0"), is("Common.cql"));
+            assertThat(getSource(provider, "Util", null), is("Util-1.3.0.cql"));
+            // Only files named for the library are considered
+            assertThat(getSource(provider, "Common", "4.0.0"), is("Common.cql"));
+            assertThat(getSource(provider, "Missing", null), nullValue());
+        }
+    }
+
+    @Test
+    public void testIndexedLibrarySourceProviderUpdates() throws IOException {
+        Path directory = Files.createTempDirectory("indexed-library-source-provider");
+        writeLibrary(directory, "Common-1.0.0.cql");
+
+        try (IndexedLibrarySourceProvider provider = new IndexedLibrarySourceProvider(directory)) {
+            assertThat(getSource(provider, "Common", "1.0"), is("Common-1.0.0.cql"));
+
+            // The file system reports changes asynchronously (on some platforms only every few seconds), so they are
+            // applied as the watch service would report them. Changes reported again by the watch service are ignored.
+            writeLibrary(directory, "Common-1.1.0.cql");
+            provider.applyChange(StandardWatchEventKinds.ENTRY_CREATE, Paths.get("Common-1.1.0.cql"));
+            assertThat(getSource(provider, "Common", "1.0.0"), is("Common-1.0.0.cql"));
+            assertThat(getSource(provider, "Common", "1.1"), is("Common-1.1.0.cql"));
+
+            Files.delete(directory.resolve("Common-1.0.0.cql"));
+            provider.applyChange(StandardWatchEventKinds.ENTRY_DELETE, Paths.get("Common-1.0.0.cql"));
+            assertThat(getSource(provider, "Common", "1.0"), is("Common-1.1.0.cql"));
+            assertThat(getSource(provider, "Common", "1.0.0"), is("Common-1.1.0.cql"));
+
+            Files.delete(directory.resolve("Common-1.1.0.cql"));
+            provider.applyChange(StandardWatchEventKinds.ENTRY_DELETE, Paths.get("Common-1.1.0.cql"));
+            assertThat(getSource(provider, "Common", "1.0"), nullValue());
+        }
+    }
+
+    private static String getText(CharStream charStream) {
+        return charStream.getText(Interval.of(0, charStream.size() - 1));
+    }
+
+    @Test
+    public void testCachingLibrarySourceProvider() throws IOException {
+        AtomicInteger baseLibraryLoads = new AtomicInteger();
+        CachingLibrarySourceProvider provider = new CachingLibrarySourceProvider(libraryIdentifier -> {
+            if (libraryIdentifier.getId().equals("BaseLibrary")) {
+                baseLibraryLoads.incrementAndGet();
+            }
+            return new TestLibrarySourceProvider().getLibrarySource(libraryIdentifier);
+        });
+
+        VersionedIdentifier baseLibrary = new VersionedIdentifier().withId("BaseLibrary");
+        String source = getText(CharStreams.fromStream(new TestLibrarySourceProvider().getLibrarySource(baseLibrary)));
+        CharStream first = provider.getLibraryCharStream(baseLibrary);
+        first.consume();
+        CharStream second = provider.getLibraryCharStream(baseLibrary);
+        assertThat(second, not(sameInstance(first)));
+        assertThat(second.index(), is(0));
+        assertThat(getText(first), is(source));
+        assertThat(getText(second), is(source));
+        assertThat(getSource(provider, "BaseLibrary", null), is(getSource(new TestLibrarySourceProvider(), "BaseLibrary", null)));
+        assertThat(provider.getLibraryCharStream(new VersionedIdentifier().withId("Missing")), nullValue());
+        assertThat(baseLibraryLoads.get(), is(1));
+
+        provider.clear();
+        provider.getLibraryCharStream(baseLibrary);
+        assertThat(baseLibraryLoads.get(), is(2));
+
+        LibraryManager libraryManager = new LibraryManager(new ModelManager());
+        libraryManager.getLibrarySourceLoader().registerProvider(provider);
+        CqlTranslator translator = CqlTranslator.fromStream(LibraryTests.class.getResourceAsStream("LibraryTests/ReferencingLibrary.cql"),
+                libraryManager.getModelManager(), libraryManager);
+        assertThat(translator.getErrors().size(), is(0));
+        assertThat(baseLibraryLoads.get(), is(2));
+    }
+
+    @Test
+    public void testFhirLibrarySourceProviderCharStream() throws IOException {
+        FhirLibrarySourceProvider provider = new FhirLibrarySourceProvider();
+        VersionedIdentifier fhirHelpers = new VersionedIdentifier().withId("FHIRHelpers").withVersion("4.0.1");
+        String source = getText(CharStreams.fromStream(FhirLibrarySourceProvider.class.getResourceAsStream("/org/hl7/fhir/FHIRHelpers-4.0.1.cql")));
+        assertThat(getText(provider.getLibraryCharStream(fhirHelpers)), is(source));
+        assertThat(getText(new FhirLibrarySourceProvider().getLibraryCharStream(fhirHelpers)), is(source));
+        assertThat(getText(CharStreams.fromStream(provider.getLibrarySource(fhirHelpers))), is(source));
+        assertThat(provider.getLibraryCharStream(new VersionedIdentifier().withId("FHIRHelpers").withVersion("0.0.0")), nullValue());
+    }
+}
@@ -4,12 +4,30 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.testng.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import javax.xml.bind.JAXB;
 import org.cqframework.cql.cql2elm.LibraryBuilder.SignatureLevel;
+import org.cqframework.cql.cql2elm.model.TranslatedLibrary;
 import org.hl7.cql_annotations.r1.CqlToElmError;
 import org.hl7.elm.r1.*;
+import org.hl7.elm_modelinfo.r1.ModelInfo;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
@@ -74,6 +92,283 @@ public class LibraryTests {
         }
     }
 
+    @Test
+    public void testLibrarySourceLoadedOnce() throws IOException {
+        AtomicInteger baseLibraryLoads = new AtomicInteger();
+        LibraryManager countingLibraryManager = new LibraryManager(modelManager);
+        countingLibraryManager.getLibrarySourceLoader().registerProvider(new TestLibrarySourceProvider() {
+            @Override
+            public InputStream getLibrarySource(VersionedIdentifier libraryIdentifier) {
+                if (libraryIdentifier.getId().equals("BaseLibrary")) {
+                    baseLibraryLoads.incrementAndGet();
+                }
+                return super.getLibrarySource(libraryIdentifier);
+            }
+        });
+
+        CqlTranslator translator = CqlTranslator.fromStream(LibraryTests.class.getResourceAsStream("LibraryTests/ReferencingLibrary.cql"),
+                modelManager, countingLibraryManager);
+        assertThat(translator.getErrors().size(), is(0));
+        assertThat(baseLibraryLoads.get(), is(1));
+        assertThat(translator.getTranslatedLibrary().getLibrary().getIncludes().getDef().get(0).getPath(), is("BaseLibrary"));
+
+        // Checking whether a library can be resolved does not read its source
+        VersionedIdentifier baseLibrary = new VersionedIdentifier().withId("BaseLibrary");
+        VersionedIdentifier missingLibrary = new VersionedIdentifier().withId("MissingLibrary");
+        LibraryManager checkingLibraryManager = new LibraryManager(modelManager);
+        checkingLibraryManager.getLibrarySourceLoader().registerProvider(new TestLibrarySourceProvider() {
+            @Override
+            public InputStream getLibrarySource(VersionedIdentifier libraryIdentifier) {
+                baseLibraryLoads.incrementAndGet();
+                return super.getLibrarySource(libraryIdentifier);
+            }
+        });
+        assertThat(checkingLibraryManager.canResolveLibrary(baseLibrary), is(true));
+        assertThat(checkingLibraryManager.canResolveLibrary(missingLibrary), is(false));
+        assertThat(baseLibraryLoads.get(), is(1));
+    }
+
+    @Test
+    public void testElmLibraryCheckedOutsideTranslation() throws IOException {
+        CqlTranslator base = CqlTranslator.fromStream(LibraryTests.class.getResourceAsStream("LibraryTests/BaseLibrary.cql"),
+                modelManager, libraryManager, CqlTranslator.Options.EnableResultTypes);
+        assertThat(base.getErrors().size(), is(0));
+        Path directory = Files.createTempDirectory("elm-library-provider");
+        Files.write(directory.resolve("BaseLibrary.xml"), base.toXml().getBytes(StandardCharsets.UTF_8));
+
+        AtomicInteger baseLibraryLoads = new AtomicInteger();
+        LibraryManager elmLibraryManager = new LibraryManager(modelManager);
+        elmLibraryManager.getLibrarySourceLoader().registerProvider(new TestLibrarySourceProvider());
+        elmLibraryManager.setElmLibraryProvider(libraryIdentifier -> {
+            if (libraryIdentifier.getId().equals("BaseLibrary")) {
+                baseLibraryLoads.incrementAndGet();
+            }
+            return new DefaultElmLibraryProvider(directory).getLibrary(libraryIdentifier);
+        });
+
+        // The ELM read to check the library is not kept, the ELM is read again when the library is resolved, so
+        // changes made in between are not missed
+        VersionedIdentifier baseLibrary = new VersionedIdentifier().withId("BaseLibrary");
+        assertThat(elmLibraryManager.canResolveLibrary(baseLibrary), is(true));
+        assertThat(baseLibraryLoads.get(), is(1));
+        Files.delete(directory.resolve("BaseLibrary.xml"));
+        List<CqlTranslatorException> errors = new ArrayList<>();
+        TranslatedLibrary library = elmLibraryManager.resolveLibrary(baseLibrary, new CqlTranslatorOptions(), errors);
+        assertThat(errors.size(), is(0));
+        assertThat(library, notNullValue());
+        assertThat(baseLibraryLoads.get(), is(2));
+        assertThat(elmLibraryManager.getTranslatedLibraries().get("BaseLibrary"), sameInstance(library));
+    }
+
+    @Test
+    public void testConcurrentLibraryReferences() throws Exception {
+        AtomicInteger baseLibraryTranslations = new AtomicInteger();
+        Queue<TranslatedLibrary> baseLibraries = new ConcurrentLinkedQueue<>();
+        LibraryManager sharedLibraryManager = new LibraryManager(modelManager) {
+            @Override
+            public void beginTranslation(String libraryName) {
+                if (libraryName.equals("BaseLibrary")) {
+                    baseLibraryTranslations.incrementAndGet();
+                }
+                super.beginTranslation(libraryName);
+            }
+
+            @Override
+            public TranslatedLibrary resolveLibrary(VersionedIdentifier libraryIdentifier, CqlTranslatorOptions options, List<CqlTranslatorException> errors) {
+                TranslatedLibrary result = super.resolveLibrary(libraryIdentifier, options, errors);
+                if (libraryIdentifier.getId().equals("BaseLibrary")) {
+                    baseLibraries.add(result);
+                }
+                return result;
+            }
+        };
+        sharedLibraryManager.getLibrarySourceLoader().registerProvider(new TestLibrarySourceProvider());
+
+        int threadCount = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<CqlTranslator>> results = new ArrayList<>();
+            for (int i = 0; i < threadCount; i++) {
+                results.add(executor.submit(() -> CqlTranslator.fromStream(
+                        LibraryTests.class.getResourceAsStream("LibraryTests/ReferencingLibrary.cql"), modelManager, sharedLibraryManager)));
+            }
+
+            for (Future<CqlTranslator> result : results) {
+                assertThat(result.get().getErrors().size(), is(0));
+            }
+
+            // The included library is translated only once, and shared by every translation
+            TranslatedLibrary baseLibrary = sharedLibraryManager.getTranslatedLibraries().get("BaseLibrary");
+            assertThat(baseLibrary, notNullValue());
+            assertThat(baseLibraryTranslations.get(), is(1));
+            assertThat(baseLibraries.size(), is(threadCount));
+            for (TranslatedLibrary library : baseLibraries) {
+                assertThat(library, sameInstance(baseLibrary));
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCompiledLibraryCache() throws IOException {
+        Map<String, byte[]> entries = new ConcurrentHashMap<>();
+        AtomicInteger hits = new AtomicInteger();
+        CompiledLibraryCache cache = new CompiledLibraryCache() {
+            @Override
+            public byte[] get(String key) {
+                byte[] content = entries.get(key);
+                if (content != null) {
+                    hits.incrementAndGet();
+                }
+                return content;
+            }
+
+            @Override
+            public void put(String key, byte[] content) {
+                entries.put(key, content);
+            }
+        };
+
+        LibraryManager coldLibraryManager = new LibraryManager(modelManager);
+        coldLibraryManager.getLibrarySourceLoader().registerProvider(new TestLibrarySourceProvider());
+        coldLibraryManager.setCompiledLibraryCache(cache);
+        CqlTranslator cold = CqlTranslator.fromStream(LibraryTests.class.getResourceAsStream("LibraryTests/ReferencingLibrary.cql"),
+                modelManager, coldLibraryManager);
+        assertThat(cold.getErrors().size(), is(0));
+        assertThat(entries.size(), is(1));
+        assertThat(hits.get(), is(0));
+
+        LibraryManager warmLibraryManager = new LibraryManager(new ModelManager());
+        warmLibraryManager.getLibrarySourceLoader().registerProvider(new TestLibrarySourceProvider());
+        warmLibraryManager.setCompiledLibraryCache(cache);
+        CqlTranslator warm = CqlTranslator.fromStream(LibraryTests.class.getResourceAsStream("LibraryTests/ReferencingLibrary.cql"),
+                warmLibraryManager.getModelManager(), warmLibraryManager);
+        assertThat(warm.getErrors().size(), is(0));
+        assertThat(hits.get(), is(1));
+        assertThat(warm.toXml(), is(cold.toXml()));
+    }
+
+    @Test
+    public void testCompiledLibraryCacheModels() throws IOException {
+        Map<String, byte[]> entries = new ConcurrentHashMap<>();
+        AtomicInteger puts = new AtomicInteger();
+        CompiledLibraryCache cache = new CompiledLibraryCache() {
+            @Override
+            public byte[] get(String key) {
+                return entries.get(key);
+            }
+
+            @Override
+            public void put(String key, byte[] content) {
+                puts.incrementAndGet();
+                entries.put(key, content);
+            }
+        };
+        String cql = "library TopLibrary\ninclude ModelLibrary called M\ndefine Value: M.Value\n";
+        LibrarySourceProvider sourceProvider = libraryIdentifier -> libraryIdentifier.getId().equals("ModelLibrary")
+                ? new ByteArrayInputStream("library ModelLibrary\nusing Test\ndefine Value: 1\n".getBytes(StandardCharsets.UTF_8))
+                : null;
+
+        ModelInfo changedModelInfo = JAXB.unmarshal(TestModelInfoProvider.class.getResourceAsStream("ModelTests/test-modelinfo.xml"),
+                ModelInfo.class);
+        changedModelInfo.setPatientClassIdentifier("changed-patient");
+        ModelInfoProvider changedModelInfoProvider = modelIdentifier ->
+                modelIdentifier.getId().equals("Test") ? changedModelInfo : null;
+
+        // The entry is used with model info of the same content, even if it is provided again, but not with model info of
+        // the same name and version and a different content
+        int[] expectedPuts = { 1, 1, 2 };
+        ModelInfoProvider[] modelInfoProviders = { new TestModelInfoProvider(), new TestModelInfoProvider(), changedModelInfoProvider };
+        for (int i = 0; i < modelInfoProviders.length; i++) {
+            ModelManager cacheModelManager = new ModelManager();
+            cacheModelManager.getModelInfoLoader().registerModelInfoProvider(modelInfoProviders[i]);
+            LibraryManager cacheLibraryManager = new LibraryManager(cacheModelManager);
+            cacheLibraryManager.getLibrarySourceLoader().registerProvider(sourceProvider);
+            cacheLibraryManager.setCompiledLibraryCache(cache);
+            CqlTranslator translator = CqlTranslator.fromText(cql, cacheModelManager, cacheLibraryManager);
+            assertThat(translator.getErrors().size(), is(0));
+            assertThat(puts.get(), is(expectedPuts[i]));
+        }
+    }
+
+
+        Path directory = Files.createTempDirectory("compiled-library-cache");
+        FileCompiledLibraryCache cache = new FileCompiledLibraryCache(directory);
+        assertThat(cache.get("key"), nullValue());
+
+        cache.put("key", new byte[] { 1, 2, 3 });
+        cache.put("key", new byte[] { 4, 5 });
+        assertThat(cache.get("key"), is(new byte[] { 4, 5 }));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files.count(), is(1L));
+        }
+    }
+
+    @Test
+    public void testElmLibraryProvider() throws IOException {
+        CqlTranslator base = CqlTranslator.fromStream(LibraryTests.class.getResourceAsStream("LibraryTests/BaseLibrary.cql"),
+                modelManager, libraryManager, CqlTranslator.Options.EnableResultTypes);
+        assertThat(base.getErrors().size(), is(0));
+        Path directory = Files.createTempDirectory("elm-library-provider");
+        Files.write(directory.resolve("BaseLibrary.xml"), base.toXml().getBytes(StandardCharsets.UTF_8));
+
+        AtomicInteger baseLibraryLoads = new AtomicInteger();
+        LibraryManager elmLibraryManager = new LibraryManager(modelManager);
+        elmLibraryManager.getLibrarySourceLoader().registerProvider(libraryIdentifier -> {
+            if (libraryIdentifier.getId().equals("BaseLibrary")) {
+                baseLibraryLoads.incrementAndGet();
+            }
+            return new TestLibrarySourceProvider().getLibrarySource(libraryIdentifier);
+        });
+        elmLibraryManager.setElmLibraryProvider(new DefaultElmLibraryProvider(directory));
+
+        CqlTranslator translator = CqlTranslator.fromStream(LibraryTests.class.getResourceAsStream("LibraryTests/ReferencingLibrary.cql"),
+                modelManager, elmLibraryManager);
+        assertThat(translator.getErrors().size(), is(0));
+        assertThat(baseLibraryLoads.get(), is(0));
+        assertThat(translator.toXml(), is(CqlTranslator.fromStream(LibraryTests.class.getResourceAsStream("LibraryTests/ReferencingLibrary.cql"),
+                modelManager, libraryManager).toXml()));
+    }
+
+    @Test
+    public void testElmLibraryIncludes() throws IOException {
+        CqlTranslator referencing = CqlTranslator.fromStream(LibraryTests.class.getResourceAsStream("LibraryTests/ReferencingLibrary.cql"),
+                modelManager, libraryManager, CqlTranslator.Options.EnableResultTypes);
+        assertThat(referencing.getErrors().size(), is(0));
+        Path directory = Files.createTempDirectory("elm-library-provider");
+        Files.write(directory.resolve("ReferencingLibrary.xml"), referencing.toXml().getBytes(StandardCharsets.UTF_8));
+
+        AtomicInteger referencingLibraryLoads = new AtomicInteger();
+        ElmLibraryProvider elmLibraryProvider = libraryIdentifier -> {
+            if (libraryIdentifier.getId().equals("ReferencingLibrary")) {
+                referencingLibraryLoads.incrementAndGet();
+            }
+            return new DefaultElmLibraryProvider(directory).getLibrary(libraryIdentifier);
+        };
+        String cql = "library TopLibrary\ninclude ReferencingLibrary called Referencing\ndefine Value: 1\n";
+
+        // The ELM is read once, and the libraries it includes are resolved
+        LibraryManager elmLibraryManager = new LibraryManager(modelManager);
+        elmLibraryManager.getLibrarySourceLoader().registerProvider(new TestLibrarySourceProvider());
+        elmLibraryManager.setElmLibraryProvider(elmLibraryProvider);
+        CqlTranslator translator = CqlTranslator.fromText(cql, modelManager, elmLibraryManager);
+        assertThat(translator.getErrors().size(), is(0));
+        assertThat(referencingLibraryLoads.get(), is(1));
+        assertThat(elmLibraryManager.getTranslatedLibraries().get("BaseLibrary"), notNullValue());
+
+        // A library included by the ELM that cannot be resolved is reported
+        LibraryManager missingLibraryManager = new LibraryManager(modelManager);
+        missingLibraryManager.getLibrarySourceLoader().registerProvider(libraryIdentifier ->
+                libraryIdentifier.getId().equals("BaseLibrary") ? null : new TestLibrarySourceProvider().getLibrarySource(libraryIdentifier));
+        missingLibraryManager.setElmLibraryProvider(elmLibraryProvider);
+        translator = CqlTranslator.fromText(cql, modelManager, missingLibraryManager);
+        assertThat(translator.getErrors().size(), greaterThan(0));
+        assertThat(translator.getErrors().get(0).getMessage(), containsString("BaseLibrary"));
+        assertThat(missingLibraryManager.getTranslatedLibraries().get("ReferencingLibrary"), nullValue());
+    }
+
     @Test
     public void testInvalidLibraryReferences() {
         CqlTranslator translator = null;
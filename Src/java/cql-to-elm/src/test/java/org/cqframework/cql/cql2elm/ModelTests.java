@@ -1,15 +1,26 @@
 package org.cqframework.cql.cql2elm;
 
+import org.cqframework.cql.cql2elm.fhir.v18.PathTests;
+import org.cqframework.cql.cql2elm.model.Model;
+import org.hl7.cql.model.ClassType;
+import org.hl7.cql.model.DataType;
 import org.hl7.elm.r1.Library;
 import org.hl7.elm.r1.VersionedIdentifier;
+import org.hl7.elm_modelinfo.r1.ModelInfo;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.hamcrest.MatcherAssert.assertThat;
-import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.*;
 
 public class ModelTests {
     private ModelManager modelManager;
@@ -38,4 +49,91 @@ public class ModelTests {
             e.printStackTrace();
         }
     }
+
+    @Test
+    public void testWellKnownModelsAreShared() {
+        Model first = new ModelManager().resolveModel("FHIR", "4.0.1");
+        Model second = new ModelManager().resolveModel("FHIR", "4.0.1");
+        assertThat(first, sameInstance(second));
+        assertThat(new ModelManager().resolveModel("FHIR", "1.8"), not(sameInstance(first)));
+    }
+
+    @Test
+    public void testConcurrentlyResolvedModelsAreShared() throws Exception {
+        int threadCount = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Model>> results = new ArrayList<>();
+            for (int i = 0; i < threadCount; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return new ModelManager().resolveModel("QDM", "5.0.1");
+                }));
+            }
+            start.countDown();
+
+            // Every manager gets the model built by the first of them
+            Model model = results.get(0).get();
+            for (Future<Model> result : results) {
+                assertThat(result.get(), sameInstance(model));
+            }
+            assertThat(new ModelManager().resolveModel("QDM", "5.0.1"), sameInstance(model));
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testModelsAreNotSharedWithPriorityProviders() {
+        Model shared = new ModelManager().resolveModel("FHIR", "1.8");
+
+        ModelManager overridingModelManager = new ModelManager();
+        overridingModelManager.getModelInfoLoader().registerModelInfoProvider(new TestFhirModelInfoProvider(PathTests.class), true);
+        Model overridden = overridingModelManager.resolveModel("FHIR", "1.8");
+        assertThat(overridden, not(sameInstance(shared)));
+        assertThat(new ModelManager().resolveModel("FHIR", "1.8"), sameInstance(shared));
+    }
+
+    @Test
+    public void testLazilyImportedModelsAreNotShared() {
+        // Qualified with the FHIR namespace so that no other test shares this model
+        VersionedIdentifier identifier = new VersionedIdentifier().withSystem("http://hl7.org/fhir").withId("FHIR").withVersion("1.6");
+        ModelManager lazyManager = new ModelManager();
+        lazyManager.setLazyTypeImport(true);
+        Model lazy = lazyManager.resolveModel(identifier);
+
+        ModelManager otherLazyManager = new ModelManager();
+        otherLazyManager.setLazyTypeImport(true);
+        assertThat(otherLazyManager.resolveModel(identifier), not(sameInstance(lazy)));
+
+        Model eager = new ModelManager().resolveModel(identifier);
+        assertThat(eager, not(sameInstance(lazy)));
+        assertThat(new ModelManager().resolveModel(identifier), sameInstance(eager));
+
+        // Once built, the shared model is used by lazy managers too
+        ModelManager laterLazyManager = new ModelManager();
+        laterLazyManager.setLazyTypeImport(true);
+        assertThat(laterLazyManager.resolveModel(identifier), sameInstance(eager));
+    }
+
+    @Test
+    public void testLazyTypeImport() throws ClassNotFoundException {
+        ModelManager modelManager = new ModelManager();
+        ModelInfo modelInfo = modelManager.getModelInfoLoader().getModelInfo(new VersionedIdentifier().withId("FHIR").withVersion("4.0.1"));
+        Model eager = new Model(modelInfo, modelManager);
+        Model lazy = new Model(modelInfo, modelManager, true);
+
+        DataType patient = lazy.resolveTypeName("FHIR.Patient");
+        assertThat(patient, instanceOf(ClassType.class));
+        assertThat(lazy.resolveTypeName("Patient"), sameInstance(patient));
+        assertThat(lazy.resolveContextName("Patient").getType(), sameInstance(patient));
+        assertThat(((ClassType)patient).getElements().size(), is(((ClassType)eager.resolveTypeName("FHIR.Patient")).getElements().size()));
+        assertThat(patient.getBaseType(), sameInstance(lazy.resolveTypeName("FHIR.DomainResource")));
+
+        DataType observation = lazy.resolveTypeName("Observation");
+        assertThat(observation, instanceOf(ClassType.class));
+        assertThat(lazy.resolveTypeName("FHIR.NotAType"), nullValue());
+    }
 }
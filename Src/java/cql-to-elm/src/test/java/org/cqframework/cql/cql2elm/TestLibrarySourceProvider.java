@@ -5,10 +5,18 @@ import org.hl7.elm.r1.VersionedIdentifier;
 import java.io.InputStream;
 
 public class TestLibrarySourceProvider implements LibrarySourceProvider {
+    private static String getLibraryFileName(VersionedIdentifier libraryIdentifier) {
+        return String.format("LibraryTests/%s%s.cql",
+                libraryIdentifier.getId(), libraryIdentifier.getVersion() != null ? ("-" + libraryIdentifier.getVersion()) : "");
+    }
+
     @Override
     public InputStream getLibrarySource(VersionedIdentifier libraryIdentifier) {
-        String libraryFileName = String.format("LibraryTests/%s%s.cql",
-                libraryIdentifier.getId(), libraryIdentifier.getVersion() != null ? ("-" + libraryIdentifier.getVersion()) : "");
-        return TestLibrarySourceProvider.class.getResourceAsStream(libraryFileName);
+        return TestLibrarySourceProvider.class.getResourceAsStream(getLibraryFileName(libraryIdentifier));
+    }
+
+    @Override
+    public boolean hasLibrarySource(VersionedIdentifier libraryIdentifier) {
+        return TestLibrarySourceProvider.class.getResource(getLibraryFileName(libraryIdentifier)) != null;
     }
 }
@@ -1,5 +1,7 @@
 package org.cqframework.cql.cql2elm;
 
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
 import org.cqframework.cql.elm.tracking.TrackBack;
 import org.hl7.cql_annotations.r1.CqlToElmInfo;
 import org.hl7.elm.r1.*;
@@ -8,6 +10,10 @@ import org.testng.annotations.Test;
 import javax.xml.bind.JAXBException;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
 import java.util.List;
 import java.util.Scanner;
 
@@ -125,4 +131,91 @@ public class TranslationTests {
         As as = (As)operand;
         assertThat(as.getAsTypeSpecifier(), is(instanceOf(ChoiceTypeSpecifier.class)));
     }
+
+    private CqlTranslator translate(String cqlText, boolean twoStageParsing) {
+        ModelManager modelManager = new ModelManager();
+        return CqlTranslator.fromText(null, cqlText, modelManager, new LibraryManager(modelManager), null,
+                CqlTranslatorOptions.defaultOptions().withTwoStageParsing(twoStageParsing));
+    }
+
+    @Test
+    public void testTwoStageParsing() throws IOException {
+        File cqlFile = new File(TranslationTests.class.getResource("CMS146v2_Test_CQM.cql").getFile());
+        String cqlText = new Scanner(cqlFile, "UTF-8").useDelimiter("\\Z").next();
+        CqlTranslator twoStage = translate(cqlText, true);
+        CqlTranslator fullContext = translate(cqlText, false);
+        assertEquals(0, twoStage.getErrors().size());
+        assertThat(twoStage.toXml(), is(fullContext.toXml()));
+
+        // Syntax errors are reported by the LL parse, exactly as without the SLL stage
+        String invalidText = "library Invalid\n\ndefine Sum: 1 +\n\ndefine Product: 2 * 3";
+        CqlTranslator invalidTwoStage = translate(invalidText, true);
+        CqlTranslator invalidFullContext = translate(invalidText, false);
+        assertThat(invalidTwoStage.getErrors().size(), greaterThan(0));
+        assertEquals(invalidFullContext.getErrors().size(), invalidTwoStage.getErrors().size());
+        for (int i = 0; i < invalidTwoStage.getErrors().size(); i++) {
+            assertEquals(invalidFullContext.getErrors().get(i).getMessage(), invalidTwoStage.getErrors().get(i).getMessage());
+        }
+    }
+
+    @Test
+    public void testParserCache() throws IOException {
+        File cqlFile = new File(TranslationTests.class.getResource("CMS146v2_Test_CQM.cql").getFile());
+        String cqlText = new Scanner(cqlFile, "UTF-8").useDelimiter("\\Z").next();
+        String expectedXml = translate(cqlText, true).toXml();
+        try {
+            CqlParserCache.clear();
+            assertEquals(0, CqlParserCache.getStateCount());
+            CqlParserCache.warm(Collections.singletonList(cqlText));
+            int warmStateCount = CqlParserCache.getStateCount();
+            assertThat(warmStateCount, greaterThan(0));
+
+            // Once the bound is exceeded, the caches are cleared before the next parse
+            CqlParserCache.setMaxStates(1);
+            CqlParserCache.createParser(new CommonTokenStream(CqlParserCache.createLexer(CharStreams.fromString(""))));
+            assertEquals(0, CqlParserCache.getStateCount());
+            assertThat(translate(cqlText, true).toXml(), is(expectedXml));
+        }
+        finally {
+            CqlParserCache.setMaxStates(0);
+        }
+    }
+
+    @Test
+    public void testConversionCache() throws IOException {
+        File cqlFile = new File(TranslationTests.class.getResource("OperatorTests/ImplicitConversions.cql").getFile());
+        String cqlText = new Scanner(cqlFile, "UTF-8").useDelimiter("\\Z").next();
+        ModelManager modelManager = new ModelManager();
+        CqlTranslator cached = CqlTranslator.fromText(null, cqlText, modelManager, new LibraryManager(modelManager), null,
+                CqlTranslatorOptions.defaultOptions().withCacheConversions(true));
+        assertEquals(0, cached.getErrors().size());
+        assertThat(cached.toXml(), is(translate(cqlText, true).toXml()));
+    }
+
+    private static void writeLibrary(Path directory, String fileName, String cql) throws IOException {
+        Files.write(directory.resolve(fileName), cql.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testTranslateDirectoryWithDifferentVersions() throws IOException, InterruptedException {
+        Path input = Files.createTempDirectory("translate-directory-input");
+        Path output = Files.createTempDirectory("translate-directory-output");
+        writeLibrary(input, "Common-1.0.0.cql", "library Common version '1.0.0'\ndefine Value: 1\n");
+        writeLibrary(input, "Common-2.0.0.cql", "library Common version '2.0.0'\ndefine Value: 2\n");
+        writeLibrary(input, "Fhir3.cql", "library Fhir3 version '1.0.0'\nusing FHIR version '3.0.0'\n"
+                + "include Common version '1.0.0'\ncontext Patient\ndefine Value: Common.Value\n");
+        writeLibrary(input, "Fhir4.cql", "library Fhir4 version '1.0.0'\nusing FHIR version '4.0.1'\n"
+                + "include Common version '2.0.0'\ncontext Patient\ndefine Value: Common.Value\n");
+
+        for (String threads : new String[] { "1", "4" }) {
+            CqlTranslator.main(new String[] { "--input", input.toString(), "--output", output.toString(), "--threads", threads });
+
+            // Files in the same directory may use different versions of a model and of an included library
+            for (String library : new String[] { "Common-1.0.0", "Common-2.0.0", "Fhir3", "Fhir4" }) {
+                Path elm = output.resolve(library + ".xml");
+                assertTrue(library, Files.exists(elm));
+                Files.delete(elm);
+            }
+        }
+    }
 }
@@ -0,0 +1,72 @@
+package org.cqframework.cql.cql2elm.benchmark;
+
+import org.cqframework.cql.elm.tracking.Trackable;
+import org.testng.SkipException;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Helpers shared by the translator benchmarks. Benchmarks are TestNG tests in the "benchmark" group, they are
+ * excluded from the regular test run and are run with the benchmark task (gradle :cql-to-elm:benchmark).
+ */
+public class BenchmarkUtils {
+    public static final String BENCHMARK_GROUP = "benchmark";
+
+    private static com.sun.management.ThreadMXBean getThreadMXBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)
+                || !((com.sun.management.ThreadMXBean)bean).isThreadAllocatedMemorySupported()) {
+            throw new SkipException("Thread allocation counters are not supported by this JVM");
+        }
+
+        com.sun.management.ThreadMXBean result = (com.sun.management.ThreadMXBean)bean;
+        result.setThreadAllocatedMemoryEnabled(true);
+        return result;
+    }
+
+    /**
+     * Returns the number of bytes allocated so far by the current thread.
+     */
+    public static long getAllocatedBytes() {
+        return getThreadMXBean().getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Counts the Trackable nodes (ELM elements) reachable from the given root.
+     */
+    public static int countNodes(Object root) {
+        Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        countNodes(root, visited);
+        return visited.size();
+    }
+
+    private static void countNodes(Object node, Set<Object> visited) {
+        if (node instanceof Iterable) {
+            for (Object o : (Iterable<?>)node) {
+                countNodes(o, visited);
+            }
+        }
+        else if (node instanceof Trackable && visited.add(node)) {
+            for (Class<?> c = node.getClass(); c != null && c != Trackable.class; c = c.getSuperclass()) {
+                for (Field f : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(f.getModifiers()) || f.getType().isPrimitive()) {
+                        continue;
+                    }
+
+                    f.setAccessible(true);
+                    try {
+                        countNodes(f.get(node), visited);
+                    }
+                    catch (IllegalAccessException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }
+        }
+    }
+}
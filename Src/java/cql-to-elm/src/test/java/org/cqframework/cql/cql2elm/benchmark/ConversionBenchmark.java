@@ -0,0 +1,82 @@
+package org.cqframework.cql.cql2elm.benchmark;
+
+import org.cqframework.cql.cql2elm.ModelManager;
+import org.cqframework.cql.cql2elm.model.*;
+import org.hl7.cql.model.DataType;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Reports the time to resolve arithmetic and comparison operators on FHIR types, which requires implicit conversions
+ * to System types, with and without the conversion cache.
+ */
+public class ConversionBenchmark {
+    private static final String[] OPERATORS = { "Add", "Subtract", "Multiply", "Equal", "Equivalent", "Less", "GreaterOrEqual" };
+    private static final String[] TYPES = { "integer", "decimal", "Quantity", "date", "dateTime", "string" };
+    private static final int ITERATIONS = 1_000;
+
+    private final ModelManager modelManager = new ModelManager();
+    private final SystemModel systemModel = (SystemModel)modelManager.resolveModel("System");
+    private final Model fhirModel = modelManager.resolveModel("FHIR", "4.0.1");
+    private final TranslatedLibrary systemLibrary = SystemLibraryHelper.getSystemLibrary(systemModel);
+
+    private ConversionMap createConversionMap(boolean cacheConversions) {
+        ConversionMap result = new ConversionMap();
+        result.setBaseConversionMap(SystemLibraryHelper.getSystemConversionMap(systemModel));
+        for (Conversion conversion : fhirModel.getConversions()) {
+            result.add(conversion);
+        }
+        if (cacheConversions) {
+            result.enableConversionCache();
+        }
+        return result;
+    }
+
+    private int resolve(ConversionMap conversionMap, List<CallContext> calls) {
+        int result = 0;
+        // Operator resolutions are cached by the operator map, use a new one so that each call resolves conversions
+        OperatorMap operatorMap = new OperatorMap(systemLibrary.getOperatorMap());
+        for (CallContext call : calls) {
+            if (operatorMap.resolveOperator(call, conversionMap) != null) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    private long time(boolean cacheConversions, List<CallContext> calls) {
+        ConversionMap conversionMap = createConversionMap(cacheConversions);
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            resolve(conversionMap, calls);
+        }
+        return (System.nanoTime() - start) / ITERATIONS;
+    }
+
+    @Test(groups = BenchmarkUtils.BENCHMARK_GROUP)
+    public void operatorResolution() {
+        List<CallContext> calls = new ArrayList<>();
+        for (String operator : OPERATORS) {
+            for (String type : TYPES) {
+                DataType fhirType = fhirModel.resolveTypeName(type);
+                calls.add(new CallContext("System", operator, false, false, false, fhirType, fhirType));
+            }
+        }
+
+        // Warm up
+        int resolved = resolve(createConversionMap(false), calls);
+        assertThat(resolve(createConversionMap(true), calls), is(resolved));
+        time(false, calls);
+        time(true, calls);
+
+        long uncached = time(false, calls);
+        long cached = time(true, calls);
+        System.out.println(String.format("Resolving %d operator calls on FHIR types (%d resolved): %d us uncached, %d us with the conversion cache",
+                calls.size(), resolved, uncached / 1_000, cached / 1_000));
+    }
+}
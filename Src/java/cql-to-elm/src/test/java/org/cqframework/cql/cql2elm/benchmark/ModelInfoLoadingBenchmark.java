@@ -0,0 +1,86 @@
+package org.cqframework.cql.cql2elm.benchmark;
+
+import org.cqframework.cql.cql2elm.FhirModelInfoProvider;
+import org.cqframework.cql.cql2elm.ModelManager;
+import org.hl7.elm_modelinfo.r1.ModelInfo;
+import org.hl7.elm_modelinfo.r1.serializing.BinaryModelInfoReader;
+import org.hl7.elm_modelinfo.r1.serializing.ModelInfoResources;
+import org.testng.annotations.Test;
+
+import javax.xml.bind.JAXB;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Reports the time to load the FHIR 4.0.1 model info, from XML and from its precompiled binary form, and the time to
+ * the first resolveModel("FHIR", "4.0.1") in a new JVM.
+ */
+public class ModelInfoLoadingBenchmark {
+    private static final String RESOURCE_NAME = "/org/hl7/fhir/fhir-modelinfo-4.0.1.xml";
+    private static final int ITERATIONS = 10;
+
+    private static ModelInfo loadXml() throws IOException {
+        try (InputStream is = FhirModelInfoProvider.class.getResourceAsStream(RESOURCE_NAME)) {
+            return JAXB.unmarshal(is, ModelInfo.class);
+        }
+    }
+
+    private static ModelInfo loadBinary() throws IOException {
+        try (InputStream is = FhirModelInfoProvider.class.getResourceAsStream(ModelInfoResources.getBinaryResourceName(RESOURCE_NAME))) {
+            assertThat("The binary model info is built by the compileModelInfo task", is, notNullValue());
+            return BinaryModelInfoReader.read(is);
+        }
+    }
+
+    @Test(groups = BenchmarkUtils.BENCHMARK_GROUP)
+    public void modelInfoLoading() throws IOException {
+        // Warm up
+        ModelInfo xml = loadXml();
+        ModelInfo binary = loadBinary();
+        assertThat(binary, equalTo(xml));
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            loadXml();
+        }
+        long xmlElapsed = (System.nanoTime() - start) / ITERATIONS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            loadBinary();
+        }
+        long binaryElapsed = (System.nanoTime() - start) / ITERATIONS;
+
+        System.out.println(String.format("FHIR 4.0.1 model info: XML %d ms, binary %d ms",
+                xmlElapsed / 1_000_000, binaryElapsed / 1_000_000));
+    }
+
+    @Test(groups = BenchmarkUtils.BENCHMARK_GROUP)
+    public void firstResolveModel() throws IOException, InterruptedException {
+        // Startup cost is only observable in a JVM that has not loaded the model yet
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), ModelInfoLoadingBenchmark.class.getName())
+                .redirectErrorStream(true)
+                .start();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                System.out.println(line);
+            }
+        }
+
+        assertThat(process.waitFor(), is(0));
+    }
+
+    public static void main(String[] args) {
+        long start = System.nanoTime();
+        new ModelManager().resolveModel("FHIR", "4.0.1");
+        System.out.println(String.format("Time to first resolveModel(\"FHIR\", \"4.0.1\"): %d ms", (System.nanoTime() - start) / 1_000_000));
+    }
+}
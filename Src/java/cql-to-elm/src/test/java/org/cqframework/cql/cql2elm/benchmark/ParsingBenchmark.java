@@ -0,0 +1,119 @@
+package org.cqframework.cql.cql2elm.benchmark;
+
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.cqframework.cql.gen.cqlLexer;
+import org.cqframework.cql.gen.cqlParser;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Reports the time to parse the Examples and test resource libraries with full LL prediction, and with SLL prediction
+ * falling back to LL on failure (as CqlTranslator does unless two stage parsing is disabled).
+ */
+public class ParsingBenchmark {
+    private static final String[] CORPUS = {
+            "../../../Examples",
+            "src/test/resources"
+    };
+    private static final int ITERATIONS = 5;
+
+    private static List<String> loadCorpus() throws IOException {
+        List<String> result = new ArrayList<>();
+        for (String directory : CORPUS) {
+            Path path = Paths.get(directory);
+            if (!Files.isDirectory(path)) {
+                continue;
+            }
+
+            try (Stream<Path> files = Files.walk(path)) {
+                for (Path file : files.filter(f -> f.toString().endsWith(".cql")).collect(Collectors.toList())) {
+                    result.add(new String(Files.readAllBytes(file), "UTF-8"));
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private static cqlParser createParser(String cqlText) {
+        cqlLexer lexer = new cqlLexer(CharStreams.fromString(cqlText));
+        lexer.removeErrorListeners();
+        cqlParser parser = new cqlParser(new CommonTokenStream(lexer));
+        parser.removeErrorListeners();
+        return parser;
+    }
+
+    private static void parseLL(String cqlText) {
+        createParser(cqlText).library();
+    }
+
+    /*
+    Returns true if the SLL stage was enough
+     */
+    private static boolean parseTwoStage(String cqlText) {
+        cqlParser parser = createParser(cqlText);
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        parser.setErrorHandler(new BailErrorStrategy());
+        try {
+            parser.library();
+            return true;
+        }
+        catch (ParseCancellationException e) {
+            parser.reset();
+            parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+            parser.setErrorHandler(new DefaultErrorStrategy());
+            parser.library();
+            return false;
+        }
+    }
+
+    @Test(groups = BenchmarkUtils.BENCHMARK_GROUP)
+    public void parsing() throws IOException {
+        List<String> corpus = loadCorpus();
+        assertThat(corpus, not(empty()));
+
+        // Warm up
+        int sllParses = 0;
+        for (String cqlText : corpus) {
+            parseLL(cqlText);
+            if (parseTwoStage(cqlText)) {
+                sllParses++;
+            }
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (String cqlText : corpus) {
+                parseLL(cqlText);
+            }
+        }
+        long llElapsed = (System.nanoTime() - start) / ITERATIONS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (String cqlText : corpus) {
+                parseTwoStage(cqlText);
+            }
+        }
+        long twoStageElapsed = (System.nanoTime() - start) / ITERATIONS;
+
+        System.out.println(String.format("Parsing %d libraries (%d parsed with SLL only): LL %d ms, two stage %d ms",
+                corpus.size(), sllParses, llElapsed / 1_000_000, twoStageElapsed / 1_000_000));
+    }
+}
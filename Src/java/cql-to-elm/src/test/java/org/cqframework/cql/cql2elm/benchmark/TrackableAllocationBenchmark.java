@@ -0,0 +1,82 @@
+package org.cqframework.cql.cql2elm.benchmark;
+
+import org.cqframework.cql.cql2elm.CqlTranslator;
+import org.cqframework.cql.cql2elm.LibraryManager;
+import org.cqframework.cql.cql2elm.ModelManager;
+import org.hl7.elm.r1.Library;
+import org.hl7.elm.r1.ObjectFactory;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Reports the bytes allocated per ELM node, both for bare node construction and for a full translation.
+ */
+public class TrackableAllocationBenchmark {
+    private static final int NODE_COUNT = 1_000_000;
+
+    private static final String[] LIBRARIES = {
+            "/org/cqframework/cql/cql2elm/CMS146v2_Test_CQM.cql",
+            "/org/cqframework/cql/cql2elm/OperatorTests/ArithmeticOperators.cql",
+            "/org/cqframework/cql/cql2elm/OperatorTests/CqlListOperators.cql",
+            "/org/cqframework/cql/cql2elm/OperatorTests/CqlIntervalOperators.cql",
+            "/org/cqframework/cql/cql2elm/OperatorTests/DateTimeOperators.cql",
+            "/org/cqframework/cql/cql2elm/OperatorTests/Query.cql"
+    };
+
+    private static final ObjectFactory of = new ObjectFactory();
+
+    @Test(groups = BenchmarkUtils.BENCHMARK_GROUP)
+    public void nodeConstruction() {
+        // Warm up
+        Object[] nodes = new Object[NODE_COUNT];
+        for (int i = 0; i < NODE_COUNT; i++) {
+            nodes[i] = of.createLiteral();
+        }
+
+        long start = BenchmarkUtils.getAllocatedBytes();
+        long startTime = System.nanoTime();
+        for (int i = 0; i < NODE_COUNT; i++) {
+            nodes[i] = of.createLiteral();
+        }
+        long elapsed = System.nanoTime() - startTime;
+        long allocated = BenchmarkUtils.getAllocatedBytes() - start;
+
+        System.out.println(String.format("Node construction: %d bytes/node, %d ns/node",
+                allocated / NODE_COUNT, elapsed / NODE_COUNT));
+        assertThat(nodes[NODE_COUNT - 1], notNullValue());
+    }
+
+    private Library translate(String fileName) throws IOException {
+        ModelManager modelManager = new ModelManager();
+        LibraryManager libraryManager = new LibraryManager(modelManager);
+        try (InputStream is = TrackableAllocationBenchmark.class.getResourceAsStream(fileName)) {
+            CqlTranslator translator = CqlTranslator.fromStream(is, modelManager, libraryManager);
+            return translator.toELM();
+        }
+    }
+
+    @Test(groups = BenchmarkUtils.BENCHMARK_GROUP)
+    public void translation() throws IOException {
+        // Warm up
+        for (String fileName : LIBRARIES) {
+            translate(fileName);
+        }
+
+        long allocated = 0;
+        long nodes = 0;
+        for (String fileName : LIBRARIES) {
+            long start = BenchmarkUtils.getAllocatedBytes();
+            Library library = translate(fileName);
+            allocated += BenchmarkUtils.getAllocatedBytes() - start;
+            nodes += BenchmarkUtils.countNodes(library);
+        }
+
+        System.out.println(String.format("Translation: %d nodes, %d bytes/node", nodes, allocated / nodes));
+        assertThat(nodes, greaterThan(0L));
+    }
+}
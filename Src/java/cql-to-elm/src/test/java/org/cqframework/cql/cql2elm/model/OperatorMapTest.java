@@ -0,0 +1,265 @@
+package org.cqframework.cql.cql2elm.model;
+
+import org.cqframework.cql.cql2elm.ModelManager;
+import org.hl7.cql.model.DataType;
+import org.hl7.cql.model.ListType;
+import org.hl7.cql.model.TypeParameter;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.testng.Assert.fail;
+
+public class OperatorMapTest {
+
+    private SystemModel getSystemModel() {
+        return (SystemModel)new ModelManager().resolveModel("System");
+    }
+
+    @Test
+    public void testCachedResolutionIsCopied() {
+        SystemModel systemModel = getSystemModel();
+        ConversionMap conversionMap = new ConversionMap();
+        conversionMap.setBaseConversionMap(SystemLibraryHelper.getSystemConversionMap(systemModel));
+        TranslatedLibrary library = SystemLibraryHelper.getSystemLibrary(systemModel);
+
+        CallContext call = new CallContext("System", "Add", false, false, true, systemModel.getInteger(), systemModel.getDecimal());
+        OperatorResolution first = library.getOperatorMap().resolveOperator(call, conversionMap);
+        first.setLibraryName("First");
+        OperatorResolution second = library.getOperatorMap().resolveOperator(call, conversionMap);
+
+        assertThat(second, not(sameInstance(first)));
+        assertThat(second.getOperator(), sameInstance(first.getOperator()));
+        assertThat(second.getLibraryName(), nullValue());
+        assertThat(second.hasConversions(), is(true));
+        assertThat(second.getConversions(), not(sameInstance(first.getConversions())));
+        assertThat(second.getScore(), is(first.getScore()));
+    }
+
+    @Test
+    public void testAddOperatorInvalidatesCache() {
+        SystemModel systemModel = getSystemModel();
+        OperatorMap operatorMap = new OperatorMap();
+        operatorMap.addOperator(new Operator("TestOperator", new Signature(systemModel.getString()), systemModel.getString()));
+
+        ConversionMap conversionMap = new ConversionMap();
+        CallContext call = new CallContext(null, "TestOperator", false, false, false, systemModel.getInteger());
+        assertThat(operatorMap.resolveOperator(call, conversionMap), nullValue());
+
+        operatorMap.addOperator(new Operator("TestOperator", new Signature(systemModel.getInteger()), systemModel.getString()));
+        assertThat(operatorMap.resolveOperator(call, conversionMap), notNullValue());
+    }
+
+    @Test
+    public void testConversionMapChangeInvalidatesCache() {
+        SystemModel systemModel = getSystemModel();
+        OperatorMap operatorMap = new OperatorMap();
+        operatorMap.addOperator(new Operator("TestOperator", new Signature(systemModel.getCode()), systemModel.getString()));
+
+        ConversionMap conversionMap = new ConversionMap();
+        CallContext call = new CallContext(null, "TestOperator", false, false, false, systemModel.getString());
+        assertThat(operatorMap.resolveOperator(call, conversionMap), nullValue());
+
+        Operator stringToCode = new Operator("ToTestCode", new Signature(systemModel.getString()), systemModel.getCode());
+        conversionMap.add(new Conversion(stringToCode, true));
+        OperatorResolution resolution = operatorMap.resolveOperator(call, conversionMap);
+        assertThat(resolution, notNullValue());
+        assertThat(resolution.hasConversions(), is(true));
+    }
+
+    @Test
+    public void testBaseConversionMapChangeInvalidatesCache() {
+        SystemModel systemModel = getSystemModel();
+        OperatorMap operatorMap = new OperatorMap();
+        operatorMap.addOperator(new Operator("TestOperator", new Signature(systemModel.getCode()), systemModel.getString()));
+
+        ConversionMap withConversion = new ConversionMap();
+        withConversion.add(new Conversion(new Operator("ToTestCode", new Signature(systemModel.getString()), systemModel.getCode()), true));
+        ConversionMap withoutConversion = new ConversionMap();
+
+        ConversionMap conversionMap = new ConversionMap();
+        conversionMap.enableConversionCache();
+        CallContext call = new CallContext(null, "TestOperator", false, false, false, systemModel.getString());
+        conversionMap.setBaseConversionMap(withConversion);
+        assertThat(operatorMap.resolveOperator(call, conversionMap), notNullValue());
+        assertThat(conversionMap.findConversion(systemModel.getString(), systemModel.getCode(), true, false, operatorMap), notNullValue());
+
+        // Layering the map over another base map, or changing the base map, must not reuse results of the previous state
+        long version = conversionMap.getVersion();
+        conversionMap.setBaseConversionMap(withoutConversion);
+        assertThat(conversionMap.getVersion(), not(version));
+        assertThat(operatorMap.resolveOperator(call, conversionMap), nullValue());
+        assertThat(conversionMap.findConversion(systemModel.getString(), systemModel.getCode(), true, false, operatorMap), nullValue());
+
+        version = conversionMap.getVersion();
+        withoutConversion.add(new Conversion(new Operator("ToTestCode", new Signature(systemModel.getString()), systemModel.getCode()), true));
+        assertThat(conversionMap.getVersion(), not(version));
+        assertThat(operatorMap.resolveOperator(call, conversionMap), notNullValue());
+        assertThat(conversionMap.findConversion(systemModel.getString(), systemModel.getCode(), true, false, operatorMap), notNullValue());
+    }
+
+    @Test
+    public void testFrozenMapWithSeveralConversionMaps() {
+        SystemModel systemModel = getSystemModel();
+        OperatorMap operatorMap = new OperatorMap();
+        operatorMap.addOperator(new Operator("TestOperator", new Signature(systemModel.getCode()), systemModel.getString()));
+        operatorMap.freeze();
+
+        // As when an included library is shared by translations, each with its own conversion map
+        ConversionMap withConversion = new ConversionMap();
+        withConversion.add(new Conversion(new Operator("ToTestCode", new Signature(systemModel.getString()), systemModel.getCode()), true));
+        ConversionMap withoutConversion = new ConversionMap();
+        CallContext call = new CallContext(null, "TestOperator", false, false, false, systemModel.getString());
+        for (int i = 0; i < 2; i++) {
+            assertThat(operatorMap.resolveOperator(call, withConversion), notNullValue());
+            assertThat(operatorMap.resolveOperator(call, withoutConversion), nullValue());
+        }
+
+        withoutConversion.add(new Conversion(new Operator("ToTestCode", new Signature(systemModel.getString()), systemModel.getCode()), true));
+        assertThat(operatorMap.resolveOperator(call, withoutConversion), notNullValue());
+        assertThat(operatorMap.resolveOperator(call, withConversion), notNullValue());
+    }
+
+    @Test
+    public void testVersionChangesWithOperators() {
+        SystemModel systemModel = getSystemModel();
+        OperatorMap baseOperatorMap = new OperatorMap();
+        OperatorMap operatorMap = new OperatorMap(baseOperatorMap);
+
+        long version = operatorMap.getVersion();
+        operatorMap.addOperator(new Operator("TestOperator", new Signature(systemModel.getString()), systemModel.getString()));
+        assertThat(operatorMap.getVersion(), not(version));
+
+        // Operators added to the base map change the version of the maps layered over it
+        version = operatorMap.getVersion();
+        baseOperatorMap.addOperator(new Operator("OtherOperator", new Signature(systemModel.getString()), systemModel.getString()));
+        assertThat(operatorMap.getVersion(), not(version));
+
+        // Resolution does not change the version
+        version = operatorMap.getVersion();
+        operatorMap.resolveOperator(new CallContext(null, "TestOperator", false, false, false, systemModel.getString()), new ConversionMap());
+        assertThat(operatorMap.getVersion(), is(version));
+    }
+
+    @Test
+    public void testExactMatchOverloads() {
+        SystemModel systemModel = getSystemModel();
+        OperatorMap operatorMap = new OperatorMap();
+        operatorMap.addOperator(new Operator("TestOperator", new Signature(systemModel.getAny()), systemModel.getString()));
+        operatorMap.addOperator(new Operator("TestOperator", new Signature(systemModel.getString()), systemModel.getString()));
+        operatorMap.addOperator(new Operator("TestOperator", new Signature(systemModel.getString(), systemModel.getString()), systemModel.getString()));
+
+        // Signatures with a different number of operands, or above the match in the signature tree, are not overloads
+        CallContext call = new CallContext(null, "TestOperator", false, false, false, systemModel.getString());
+        OperatorResolution resolution = operatorMap.resolveOperator(call, new ConversionMap());
+        assertThat(resolution.getOperator().getSignature(), is(new Signature(systemModel.getString())));
+        assertThat(resolution.getOperatorHasOverloads(), is(false));
+
+        operatorMap.addOperator(new Operator("TestOperator", new Signature(systemModel.getInteger()), systemModel.getString()));
+        resolution = operatorMap.resolveOperator(call, new ConversionMap());
+        assertThat(resolution.getOperator().getSignature(), is(new Signature(systemModel.getString())));
+        assertThat(resolution.getOperatorHasOverloads(), is(true));
+    }
+
+    @Test
+    public void testTryResolveAmbiguousOperator() {
+        SystemModel systemModel = getSystemModel();
+        OperatorMap operatorMap = new OperatorMap();
+        operatorMap.addOperator(new Operator("TestOperator", new Signature(systemModel.getInteger(), systemModel.getAny()), systemModel.getString()));
+        operatorMap.addOperator(new Operator("TestOperator", new Signature(systemModel.getAny(), systemModel.getInteger()), systemModel.getString()));
+
+        CallContext call = new CallContext(null, "TestOperator", false, false, true, systemModel.getInteger(), systemModel.getInteger());
+        ConversionMap conversionMap = new ConversionMap();
+        assertThat(operatorMap.tryResolveOperator(call, conversionMap), nullValue());
+        assertThat(operatorMap.supportsOperator(null, "TestOperator", systemModel.getInteger(), systemModel.getInteger()), is(false));
+        // The failure is cached, but each call that reports it gets its own exception
+        IllegalArgumentException previous = null;
+        for (int i = 0; i < 2; i++) {
+            try {
+                operatorMap.resolveOperator(call, conversionMap);
+                fail("Expected an ambiguous call error");
+            }
+            catch (IllegalArgumentException e) {
+                assertThat(e.getMessage(), containsString("is ambiguous"));
+                assertThat(e, not(sameInstance(previous)));
+                if (previous != null) {
+                    assertThat(e.getMessage(), is(previous.getMessage()));
+                }
+                previous = e;
+            }
+        }
+    }
+
+    @Test
+    public void testUnresolvedTypeParameterIsAFailure() {
+        SystemModel systemModel = getSystemModel();
+        OperatorMap operatorMap = new OperatorMap();
+        // U does not occur in the signature, so it is never bound by a call
+        operatorMap.addOperator(new GenericOperator("TestOperator", new Signature(new TypeParameter("T")),
+                new TypeParameter("U"), new TypeParameter("T"), new TypeParameter("U")));
+
+        CallContext call = new CallContext(null, "TestOperator", false, false, true, systemModel.getString());
+        assertThat(operatorMap.tryResolveOperator(call, new ConversionMap()), nullValue());
+        assertThat(operatorMap.supportsOperator(null, "TestOperator", systemModel.getString()), is(false));
+        try {
+            operatorMap.resolveOperator(call, new ConversionMap());
+            fail("Expected an unresolved type parameter error");
+        }
+        catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), containsString("Could not resolve type parameter U"));
+        }
+    }
+
+    @Test
+    public void testIsPointType() {
+        SystemModel systemModel = getSystemModel();
+        OperatorMap operatorMap = SystemLibraryHelper.getSystemLibrary(systemModel).getOperatorMap();
+        assertThat(operatorMap.isPointType(systemModel.getInteger()), is(true));
+        assertThat(operatorMap.isPointType(systemModel.getInteger()), is(true));
+        assertThat(operatorMap.isPointType(systemModel.getDateTime()), is(true));
+        assertThat(operatorMap.isPointType(systemModel.getString()), is(false));
+        assertThat(operatorMap.isPointType(systemModel.getString()), is(false));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testFrozenMapRejectsOperators() {
+        SystemModel systemModel = getSystemModel();
+        OperatorMap operatorMap = new OperatorMap();
+        operatorMap.freeze();
+        operatorMap.addOperator(new Operator("TestOperator", new Signature(systemModel.getString()), systemModel.getString()));
+    }
+
+    @Test
+    public void testConcurrentResolutionOnFrozenMap() throws Exception {
+        SystemModel systemModel = getSystemModel();
+        OperatorMap operatorMap = new OperatorMap();
+        operatorMap.addOperator(new GenericOperator("TestOperator", new Signature(new ListType(new TypeParameter("T"))),
+                new TypeParameter("T"), new TypeParameter("T")));
+        operatorMap.freeze();
+
+        DataType[] types = { systemModel.getString(), systemModel.getInteger(), systemModel.getDecimal(), systemModel.getBoolean(),
+                systemModel.getDate(), systemModel.getDateTime(), systemModel.getTime(), systemModel.getQuantity() };
+        ExecutorService executor = Executors.newFixedThreadPool(types.length);
+        try {
+            List<Future<OperatorResolution>> results = new ArrayList<>();
+            for (int i = 0; i < types.length * 4; i++) {
+                DataType type = types[i % types.length];
+                results.add(executor.submit(() -> operatorMap.resolveOperator(
+                        new CallContext(null, "TestOperator", false, false, true, new ListType(type)), new ConversionMap())));
+            }
+
+            for (int i = 0; i < results.size(); i++) {
+                assertThat(results.get(i).get().getOperator().getResultType(), is(types[i % types.length]));
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package org.cqframework.cql.cql2elm.model;
+
+import org.hl7.elm.r1.AliasedQuerySource;
+import org.hl7.elm.r1.LetClause;
+import org.hl7.elm.r1.ObjectFactory;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class QueryContextTest {
+    private final ObjectFactory of = new ObjectFactory();
+
+    @Test
+    public void testEnclosingBindings() {
+        AliasedQuerySource outerX = of.createAliasedQuerySource().withAlias("X");
+        AliasedQuerySource outerY = of.createAliasedQuerySource().withAlias("Y");
+        LetClause outerLet = of.createLetClause().withIdentifier("L");
+
+        QueryContext outer = new QueryContext();
+        outer.addPrimaryQuerySources(Arrays.asList(outerX, outerY));
+        outer.addLetClause(outerLet);
+
+        QueryContext middle = new QueryContext();
+        middle.enterScope(outer);
+        QueryContext inner = new QueryContext();
+        inner.enterScope(middle);
+
+        // Bindings are visible through contexts that define none of their own
+        assertThat(inner.resolveVisibleAlias("X"), sameInstance(outerX));
+        assertThat(inner.resolveVisibleLet("L"), sameInstance(outerLet));
+        assertThat(inner.resolveAlias("X"), nullValue());
+
+        // Inner bindings shadow enclosing bindings, and removing them exposes the enclosing binding again
+        AliasedQuerySource innerX = of.createAliasedQuerySource().withAlias("X");
+        inner.addRelatedQuerySource(innerX);
+        assertThat(inner.resolveVisibleAlias("X"), sameInstance(innerX));
+        assertThat(inner.resolveVisibleAlias("Y"), sameInstance(outerY));
+        inner.removeQuerySources(Collections.singletonList(innerX));
+        assertThat(inner.resolveVisibleAlias("X"), sameInstance(outerX));
+
+        assertThat(inner.resolveVisibleAlias("Z"), nullValue());
+        assertThat(outer.resolveVisibleLet("M"), nullValue());
+    }
+}
@@ -0,0 +1,101 @@
+package org.cqframework.cql.cql2elm.model;
+
+import org.cqframework.cql.cql2elm.ModelManager;
+import org.hl7.cql.model.DataType;
+import org.hl7.cql.model.ListType;
+import org.testng.annotations.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class SystemLibraryHelperTest {
+
+    private SystemModel getSystemModel() {
+        return (SystemModel)new ModelManager().resolveModel("System");
+    }
+
+    @Test
+    public void testSystemConversionMapIsShared() {
+        ConversionMap first = SystemLibraryHelper.getSystemConversionMap(getSystemModel());
+        ConversionMap second = SystemLibraryHelper.getSystemConversionMap(getSystemModel());
+        assertThat(first, sameInstance(second));
+    }
+
+    @Test
+    public void testInstantiationsAreLocalToTranslation() {
+        SystemModel systemModel = getSystemModel();
+        ConversionMap conversionMap = new ConversionMap();
+        conversionMap.setBaseConversionMap(SystemLibraryHelper.getSystemConversionMap(systemModel));
+
+        TranslatedLibrary first = SystemLibraryHelper.getSystemLibrary(systemModel);
+        TranslatedLibrary second = SystemLibraryHelper.getSystemLibrary(systemModel);
+        assertThat(first, not(sameInstance(second)));
+
+        DataType integerList = new ListType(systemModel.getInteger());
+        OperatorResolution resolution = first.resolveCall(new CallContext("System", "Coalesce", false, false, true, integerList), conversionMap);
+        assertThat(resolution, notNullValue());
+        assertThat(resolution.getOperator().getResultType(), is(systemModel.getInteger()));
+
+        Operator instantiated = new Operator("Coalesce", new Signature(integerList), systemModel.getInteger());
+        assertThat(first.contains(instantiated), is(true));
+        assertThat(second.contains(instantiated), is(false));
+    }
+
+    private OperatorResolution resolveCoalesce(SystemModel systemModel, InstantiationCache instantiationCache, DataType elementType) {
+        ConversionMap conversionMap = new ConversionMap();
+        conversionMap.setBaseConversionMap(SystemLibraryHelper.getSystemConversionMap(systemModel));
+        TranslatedLibrary library = SystemLibraryHelper.getSystemLibrary(systemModel);
+        library.getOperatorMap().setInstantiationCache(instantiationCache);
+        OperatorResolution resolution = library.resolveCall(new CallContext("System", "Coalesce", false, false, true, new ListType(elementType)), conversionMap);
+        assertThat(resolution, notNullValue());
+        return resolution;
+    }
+
+    @Test
+    public void testInstantiationsAreReusedThroughInstantiationCache() {
+        SystemModel systemModel = getSystemModel();
+        InstantiationCache instantiationCache = new InstantiationCache();
+        OperatorResolution first = resolveCoalesce(systemModel, instantiationCache, systemModel.getString());
+        assertThat(resolveCoalesce(systemModel, instantiationCache, systemModel.getString()).getOperator(), sameInstance(first.getOperator()));
+
+        // Without a shared cache, each translation instantiates the operator itself
+        assertThat(resolveCoalesce(systemModel, new InstantiationCache(), systemModel.getString()).getOperator(), not(sameInstance(first.getOperator())));
+        assertThat(resolveCoalesce(systemModel, null, systemModel.getString()).getOperator(), not(sameInstance(first.getOperator())));
+    }
+
+    @Test
+    public void testInstantiationsAreNotSharedBetweenModelVersions() {
+        SystemModel systemModel = getSystemModel();
+        ModelManager stu3ModelManager = new ModelManager();
+        ModelManager r4ModelManager = new ModelManager();
+        DataType stu3Observation = stu3ModelManager.resolveModel("FHIR", "3.0.0").resolveTypeName("FHIR.Observation");
+        DataType r4Observation = r4ModelManager.resolveModel("FHIR", "4.0.1").resolveTypeName("FHIR.Observation");
+        // Class types are equal by name, so the call signatures of the two versions are equal
+        assertThat(stu3Observation, is(r4Observation));
+        assertThat(stu3Observation, not(sameInstance(r4Observation)));
+
+        OperatorResolution stu3 = resolveCoalesce(systemModel, stu3ModelManager.getInstantiationCache(), stu3Observation);
+        OperatorResolution r4 = resolveCoalesce(systemModel, r4ModelManager.getInstantiationCache(), r4Observation);
+        assertThat(stu3.getOperator().getResultType(), sameInstance(stu3Observation));
+        assertThat(r4.getOperator().getResultType(), sameInstance(r4Observation));
+        assertThat(((ListType)r4.getOperator().getSignature().getOperandTypes().iterator().next()).getElementType(), sameInstance(r4Observation));
+
+        // Translations using the same model manager share instantiations
+        assertThat(resolveCoalesce(systemModel, stu3ModelManager.getInstantiationCache(), stu3Observation).getOperator(), sameInstance(stu3.getOperator()));
+    }
+
+    @Test
+    public void testConversionsAddedToLayeredMapAreLocal() {
+        SystemModel systemModel = getSystemModel();
+        ConversionMap base = SystemLibraryHelper.getSystemConversionMap(systemModel);
+        int baseCount = base.getConversions(systemModel.getString()).size();
+
+        ConversionMap conversionMap = new ConversionMap();
+        conversionMap.setBaseConversionMap(base);
+        Operator stringToCode = new Operator("ToTestCode", new Signature(systemModel.getString()), systemModel.getCode());
+        conversionMap.add(new Conversion(stringToCode, false));
+
+        assertThat(conversionMap.getConversions(systemModel.getString()).size(), is(baseCount + 1));
+        assertThat(base.getConversions(systemModel.getString()).size(), is(baseCount));
+    }
+}
@@ -0,0 +1,50 @@
+package org.cqframework.cql.cql2elm.targetmap;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class TargetMapTest {
+
+    @Test
+    public void testCompiledMapsAreShared() {
+        String text = "FHIRHelpers.ToString(%value)";
+        TargetMap targetMap = TargetMap.compile(text);
+        assertThat(TargetMap.compile(new String(text)), sameInstance(targetMap));
+        assertThat(targetMap.getKind(), is(TargetMap.Kind.FUNCTION));
+        assertThat(targetMap.getLibraryName(), is("FHIRHelpers"));
+        assertThat(targetMap.getFunctionName(), is("ToString"));
+        assertThat(targetMap.getArgument(), nullValue());
+
+        assertThat(TargetMap.compile(null).getKind(), is(TargetMap.Kind.NULL));
+        assertThat(TargetMap.compile("null").getKind(), is(TargetMap.Kind.NULL));
+    }
+
+    @Test
+    public void testChoiceMap() {
+        TargetMap targetMap = TargetMap.compile("FHIR.dateTime:FHIRHelpers.ToDateTime(%value);FHIR.Period:FHIRHelpers.ToInterval(%value)");
+        assertThat(targetMap.getKind(), is(TargetMap.Kind.CHOICE));
+        assertThat(targetMap.getChoiceItems().size(), is(2));
+        assertThat(targetMap.getChoiceItems().get(1).getTypeName(), is("FHIR.Period"));
+        assertThat(targetMap.getChoiceItems().get(1).getMap().getFunctionName(), is("ToInterval"));
+    }
+
+    @Test
+    public void testIndexerMap() {
+        TargetMap targetMap = TargetMap.compile("%parent.extension[url='http://hl7.org/fhir/StructureDefinition/patient-birthTime'].value");
+        assertThat(targetMap.getKind(), is(TargetMap.Kind.INDEXER));
+        assertThat(targetMap.getIndexerPath(), is(Arrays.asList("%parent", "extension")));
+        assertThat(targetMap.getIndexerItems().size(), is(1));
+        assertThat(targetMap.getIndexerItems().get(0).getPath(), is("url"));
+        assertThat(targetMap.getIndexerItems().get(0).getValue(), is("http://hl7.org/fhir/StructureDefinition/patient-birthTime"));
+        assertThat(targetMap.getTargetPath(), is(Arrays.asList("value")));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnsupportedMap() {
+        TargetMap.compile("%value");
+    }
+}
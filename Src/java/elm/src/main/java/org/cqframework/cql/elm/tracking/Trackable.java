@@ -9,31 +9,90 @@ import javax.xml.bind.annotation.XmlTransient;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 @JsonTypeInfo(use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.PROPERTY, property = "type")
 public class Trackable {
-    private final UUID trackerId;
-    private final List<TrackBack> trackbacks;
+    // Tracker ids are formed from a per-process random prefix and a sequence number, rather than UUID.randomUUID(),
+    // which requires a SecureRandom for every node. Most nodes never have their id read, so the id is assigned on
+    // first use, from a block of sequence numbers reserved by the reading thread so that threads translating in
+    // parallel do not contend on the shared sequence. The id is published with a compare-and-set, so every thread
+    // that reads the id of a node sees the same id, including when translated ELM is shared between threads
+    private static final long TRACKER_ID_PREFIX = ThreadLocalRandom.current().nextLong();
+    private static final int TRACKER_ID_BLOCK_SIZE = 1024;
+    private static final AtomicLong trackerIdBlocks = new AtomicLong();
+    private static final ThreadLocal<long[]> trackerIdBlock = ThreadLocal.withInitial(() -> new long[2]);
+    private static final AtomicReferenceFieldUpdater<Trackable, UUID> trackerIdUpdater =
+            AtomicReferenceFieldUpdater.newUpdater(Trackable.class, UUID.class, "trackerId");
+
+    // Returns the next sequence number of the current thread's block, reserving a new block when it is used up
+    private static long nextTrackerIdSequenceNumber() {
+        // The next sequence number of the block, and the end of the block
+        long[] block = trackerIdBlock.get();
+        if (block[0] == block[1]) {
+            block[0] = trackerIdBlocks.getAndIncrement() * TRACKER_ID_BLOCK_SIZE + 1;
+            block[1] = block[0] + TRACKER_ID_BLOCK_SIZE;
+        }
+
+        return block[0]++;
+    }
+
+    private volatile UUID trackerId;
+    private List<TrackBack> trackbacks;
 
     private DataType resultType;
 
     public Trackable() {
-        this.trackerId = UUID.randomUUID();
-        this.trackbacks = new ArrayList<>();
     }
 
     @XmlTransient
     @JsonIgnore
     public UUID getTrackerId() {
-        return trackerId;
+        UUID result = trackerId;
+        if (result == null) {
+            result = new UUID(TRACKER_ID_PREFIX, nextTrackerIdSequenceNumber());
+            if (!trackerIdUpdater.compareAndSet(this, null, result)) {
+                // Another thread assigned the id first
+                result = trackerId;
+            }
+        }
+
+        return result;
     }
 
     @XmlTransient
     @JsonIgnore
     public List<TrackBack> getTrackbacks() {
+        if (trackbacks == null) {
+            trackbacks = new ArrayList<>(1);
+        }
+
         return trackbacks;
     }
 
+    /**
+     * Returns true if any trackbacks have been recorded for this element. Unlike getTrackbacks(), this does not
+     * allocate the trackback list.
+     */
+    public boolean hasTrackbacks() {
+        return trackbacks != null && !trackbacks.isEmpty();
+    }
+
+    /**
+     * Returns the first trackback recorded for this element, or null if no trackbacks have been recorded.
+     */
+    @XmlTransient
+    @JsonIgnore
+    public TrackBack getFirstTrackback() {
+        return hasTrackbacks() ? trackbacks.get(0) : null;
+    }
+
+    public void addTrackback(TrackBack trackback) {
+        getTrackbacks().add(trackback);
+    }
+
     @XmlTransient
     @JsonIgnore
     public DataType getResultType() {
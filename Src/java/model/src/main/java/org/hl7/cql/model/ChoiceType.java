@@ -33,11 +33,17 @@ public class ChoiceType extends DataType {
         }
     }
 
+    // The choices are fixed on construction, so the hash code is computed once, on first use
+    private volatile int hashCode = 0;
     @Override
     public int hashCode() {
-        int result = 13;
-        for (int i = 0; i < types.size(); i++) {
-            result += (37 * types.get(i).hashCode());
+        int result = hashCode;
+        if (result == 0) {
+            result = 13;
+            for (int i = 0; i < types.size(); i++) {
+                result += (37 * types.get(i).hashCode());
+            }
+            hashCode = result;
         }
 
         return result;
@@ -45,10 +51,14 @@ public class ChoiceType extends DataType {
 
     @Override
     public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+
         if (o instanceof ChoiceType) {
             ChoiceType that = (ChoiceType)o;
 
-            if (this.types.size() == that.types.size()) {
+            if (this.types.size() == that.types.size() && this.hashCode() == that.hashCode()) {
                 List<DataType> theseTypes = this.types;
                 List<DataType> thoseTypes = that.types;
                 for (int i = 0; i < theseTypes.size(); i++) {
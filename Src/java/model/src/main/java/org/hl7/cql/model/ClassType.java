@@ -124,6 +124,7 @@ public class ClassType extends DataType implements NamedType {
 
     public void addSearch(SearchType search) {
         searches.add(search);
+        searchIndex = null;
     }
 
     public SearchType findSearch(String searchPath) {
@@ -226,22 +227,30 @@ public class ClassType extends DataType implements NamedType {
     }
 
     private List<ClassTypeElement> elements = new ArrayList<ClassTypeElement>();
-    private List<ClassTypeElement> sortedElements = null;
-    private LinkedHashMap<String, ClassTypeElement> baseElementMap = null;
+    // Lazily computed, and published only once complete, so that types can be read concurrently once built
+    private volatile List<ClassTypeElement> sortedElements = null;
+    private volatile LinkedHashMap<String, ClassTypeElement> baseElementMap = null;
+    // Indexes of the elements and searches declared by this type, by name. Built on first use and rebuilt if elements
+    // or searches are added to this type afterwards. Inherited members are looked up in the indexes of the base types,
+    // so members added to a base type are found by its derived types.
+    private volatile Map<String, ClassTypeElement> elementIndex = null;
+    private volatile Map<String, SearchType> searchIndex = null;
 
     public List<ClassTypeElement> getElements() {
         return elements;
     }
 
     private LinkedHashMap<String, ClassTypeElement> getBaseElementMap() {
-        if (baseElementMap == null) {
-            baseElementMap = new LinkedHashMap<>();
+        LinkedHashMap<String, ClassTypeElement> result = baseElementMap;
+        if (result == null) {
+            result = new LinkedHashMap<>();
             if (getBaseType() instanceof ClassType) {
-                ((ClassType)getBaseType()).gatherElements(baseElementMap);
+                ((ClassType)getBaseType()).gatherElements(result);
             }
+            baseElementMap = result;
         }
 
-        return baseElementMap;
+        return result;
     }
 
     private void gatherElements(LinkedHashMap<String, ClassTypeElement> elementMap) {
@@ -254,15 +263,62 @@ public class ClassType extends DataType implements NamedType {
         }
     }
 
-    public List<ClassTypeElement> getAllElements() {
-        // Get the baseClass elements into a map by name
-        LinkedHashMap<String, ClassTypeElement> elementMap = new LinkedHashMap<>(getBaseElementMap());
+    private Map<String, ClassTypeElement> getElementIndex() {
+        Map<String, ClassTypeElement> result = elementIndex;
+        if (result == null) {
+            result = new HashMap<>();
+            for (ClassTypeElement element : elements) {
+                result.put(element.getName(), element);
+            }
+            elementIndex = result;
+        }
 
-        // Add this class's elements, overwriting baseClass definitions where applicable
-        for (ClassTypeElement el : elements) {
-            elementMap.put(el.getName(), el);
+        return result;
+    }
+
+    private Map<String, SearchType> getSearchIndex() {
+        Map<String, SearchType> result = searchIndex;
+        if (result == null) {
+            result = new HashMap<>();
+            for (SearchType search : searches) {
+                result.put(search.getName(), search);
+            }
+            searchIndex = result;
         }
 
+        return result;
+    }
+
+    /**
+     * Returns the element with the given name, declared by this type or inherited from a base type, or null if there
+     * is no such element.
+     */
+    public ClassTypeElement resolveElement(String name) {
+        ClassTypeElement result = getElementIndex().get(name);
+        if (result == null && getBaseType() instanceof ClassType) {
+            result = ((ClassType)getBaseType()).resolveElement(name);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the search with the given name, declared by this type or inherited from a base type, or null if there
+     * is no such search.
+     */
+    public SearchType resolveSearch(String name) {
+        SearchType result = getSearchIndex().get(name);
+        if (result == null && getBaseType() instanceof ClassType) {
+            result = ((ClassType)getBaseType()).resolveSearch(name);
+        }
+
+        return result;
+    }
+
+    public List<ClassTypeElement> getAllElements() {
+        // Gather the base class elements, then this class's elements, overwriting base class definitions where applicable
+        LinkedHashMap<String, ClassTypeElement> elementMap = new LinkedHashMap<>();
+        gatherElements(elementMap);
         return new ArrayList<>(elementMap.values());
     }
 
@@ -304,6 +360,7 @@ public class ClassType extends DataType implements NamedType {
     {
         internalAddElement(element);
         sortedElements = null;
+        elementIndex = null;
         tupleType = null;
     }
 
@@ -313,16 +370,19 @@ public class ClassType extends DataType implements NamedType {
         }
 
         sortedElements = null;
+        elementIndex = null;
         tupleType = null;
     }
 
     private List<ClassTypeElement> getSortedElements() {
-        if (sortedElements == null) {
-            sortedElements = new ArrayList<>(elements);
-            Collections.sort(sortedElements, (left, right) -> left.getName().compareTo(right.getName()));
+        List<ClassTypeElement> result = sortedElements;
+        if (result == null) {
+            result = new ArrayList<>(elements);
+            Collections.sort(result, (left, right) -> left.getName().compareTo(right.getName()));
+            sortedElements = result;
         }
 
-        return sortedElements;
+        return result;
     }
 
     @Override
@@ -350,13 +410,15 @@ public class ClassType extends DataType implements NamedType {
         return this.label == null ? this.name : this.label;
     }
 
-    private TupleType tupleType;
+    private volatile TupleType tupleType;
     public TupleType getTupleType() {
-        if (tupleType == null) {
-            tupleType = buildTupleType();
+        TupleType result = tupleType;
+        if (result == null) {
+            result = buildTupleType();
+            tupleType = result;
         }
 
-        return tupleType;
+        return result;
     }
 
     private void addTupleElements(ClassType classType, LinkedHashMap<String, TupleTypeElement> elements) {
@@ -1,5 +1,9 @@
 package org.hl7.cql.model;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
 public abstract class DataType {
     public DataType() {
         this(null);
@@ -13,31 +17,41 @@ public abstract class DataType {
         return baseType;
     }
 
+    // The canonical list and interval types of this type, see TypeInterner
+    volatile ListType listType;
+    volatile IntervalType intervalType;
+
     public String toLabel() {
         return toString();
     }
 
-    public boolean isSubTypeOf(DataType other) {
-        DataType currentType = this;
-        while (currentType != null) {
-            if (currentType.equals(other)) {
-                return true;
+    // The base types of this type, computed on first use. The base type of a type never changes, so neither does this set
+    private volatile Set<DataType> ancestors;
+    private Set<DataType> getAncestors() {
+        Set<DataType> result = ancestors;
+        if (result == null) {
+            if (baseType == null) {
+                result = Collections.emptySet();
             }
-            currentType = currentType.baseType;
+            else if (baseType == DataType.ANY) {
+                result = ANY_ANCESTORS;
+            }
+            else {
+                result = new HashSet<>(baseType.getAncestors());
+                result.add(baseType);
+            }
+            ancestors = result;
         }
 
-        return false;
+        return result;
     }
 
-    public boolean isSuperTypeOf(DataType other) {
-        while (other != null) {
-            if (equals(other)) {
-                return true;
-            }
-            other = other.baseType;
-        }
+    public boolean isSubTypeOf(DataType other) {
+        return this.equals(other) || (other != null && getAncestors().contains(other));
+    }
 
-        return false;
+    public boolean isSuperTypeOf(DataType other) {
+        return other != null && (equals(other) || other.getAncestors().contains(this));
     }
 
     /**
@@ -79,4 +93,5 @@ public abstract class DataType {
     public abstract DataType instantiate(InstantiationContext context);
 
     public static final SimpleType ANY = new SimpleType("System.Any");
+    private static final Set<DataType> ANY_ANCESTORS = Collections.singleton(ANY);
 }
@@ -24,6 +24,10 @@ public class ListType extends DataType {
 
     @Override
     public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+
         if (o instanceof ListType) {
             ListType that = (ListType)o;
             return this.elementType.equals(that.elementType);
@@ -95,6 +99,6 @@ public class ListType extends DataType {
 
     @Override
     public DataType instantiate(InstantiationContext context) {
-        return new ListType(elementType.instantiate(context));
+        return TypeInterner.listOf(elementType.instantiate(context));
     }
 }
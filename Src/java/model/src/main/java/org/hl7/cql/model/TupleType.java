@@ -4,7 +4,8 @@ import java.util.*;
 
 public class TupleType extends DataType {
     private List<TupleTypeElement> elements = new ArrayList<TupleTypeElement>();
-    private List<TupleTypeElement> sortedElements = null;
+    private volatile List<TupleTypeElement> sortedElements = null;
+    private volatile int hashCode = 0;
 
     public TupleType(Collection<TupleTypeElement> elements) {
         super();
@@ -26,27 +27,36 @@ public class TupleType extends DataType {
     {
         this.elements.add(element);
         sortedElements = null;
+        hashCode = 0;
     }
 
     public void addElements(Collection<TupleTypeElement> elements) {
         this.elements.addAll(elements);
         sortedElements = null;
+        hashCode = 0;
     }
 
     private List<TupleTypeElement> getSortedElements() {
-        if (sortedElements == null) {
-            sortedElements = new ArrayList<>(elements);
-            Collections.sort(sortedElements, (left, right) -> left.getName().compareTo(right.getName()));
+        List<TupleTypeElement> result = sortedElements;
+        if (result == null) {
+            result = new ArrayList<>(elements);
+            Collections.sort(result, (left, right) -> left.getName().compareTo(right.getName()));
+            sortedElements = result;
         }
 
-        return sortedElements;
+        return result;
     }
 
+    // The hash code is computed on first use, and again after elements are added
     @Override
     public int hashCode() {
-        int result = 13;
-        for (int i = 0; i < elements.size(); i++) {
-            result += (37 * elements.get(i).hashCode());
+        int result = hashCode;
+        if (result == 0) {
+            result = 13;
+            for (int i = 0; i < elements.size(); i++) {
+                result += (37 * elements.get(i).hashCode());
+            }
+            hashCode = result;
         }
 
         return result;
@@ -54,10 +64,14 @@ public class TupleType extends DataType {
 
     @Override
     public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+
         if (o instanceof TupleType) {
             TupleType that = (TupleType)o;
 
-            if (this.elements.size() == that.elements.size()) {
+            if (this.elements.size() == that.elements.size() && this.hashCode() == that.hashCode()) {
                 List<TupleTypeElement> theseElements = this.getSortedElements();
                 List<TupleTypeElement> thoseElements = that.getSortedElements();
                 for (int i = 0; i < theseElements.size(); i++) {
@@ -0,0 +1,119 @@
+package org.hl7.cql.model;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Creates canonical instances of the structural types (list, interval, choice and tuple types), so that types
+ * constructed from the same component types are represented by a single instance. This saves the memory of repeatedly
+ * allocated result types, and allows equality checks between them to succeed on the reference check.
+ *
+ * Types are only canonical for the same component type instances: types with components that are equal but distinct
+ * instances (e.g. class types of the same name from different versions of a model) are not merged, so the components
+ * of a type returned by this class are always the ones it was requested with. Canonical types are held weakly and are
+ * discarded once they are no longer referenced.
+ *
+ * Types returned by this class are shared and must not be modified.
+ */
+public final class TypeInterner {
+    private static final Map<DataType, WeakReference<DataType>> types = new WeakHashMap<>();
+
+    private TypeInterner() {
+    }
+
+    public static ListType listOf(DataType elementType) {
+        if (elementType == null) {
+            throw new IllegalArgumentException("elementType");
+        }
+
+        ListType result = elementType.listType;
+        if (result == null) {
+            result = new ListType(elementType);
+            elementType.listType = result;
+        }
+
+        return result;
+    }
+
+    public static IntervalType intervalOf(DataType pointType) {
+        if (pointType == null) {
+            throw new IllegalArgumentException("pointType");
+        }
+
+        IntervalType result = pointType.intervalType;
+        if (result == null) {
+            result = new IntervalType(pointType);
+            pointType.intervalType = result;
+        }
+
+        return result;
+    }
+
+    public static ChoiceType choiceOf(Iterable<DataType> types) {
+        return intern(new ChoiceType(types));
+    }
+
+    /**
+     * Returns the canonical instance of the given choice type.
+     */
+    public static ChoiceType intern(ChoiceType type) {
+        return (ChoiceType)internType(type);
+    }
+
+    /**
+     * Returns the canonical instance of the given tuple type. The tuple type must be complete, no elements may be
+     * added to it afterwards.
+     */
+    public static TupleType intern(TupleType type) {
+        return (TupleType)internType(type);
+    }
+
+    private static DataType internType(DataType type) {
+        synchronized (types) {
+            WeakReference<DataType> reference = types.get(type);
+            DataType result = reference != null ? reference.get() : null;
+            if (result == null) {
+                types.put(type, new WeakReference<>(type));
+                return type;
+            }
+
+            return hasSameComponents(result, type) ? result : type;
+        }
+    }
+
+    private static boolean hasSameComponents(DataType left, DataType right) {
+        if (left instanceof ChoiceType && right instanceof ChoiceType) {
+            Iterator<DataType> rightTypes = ((ChoiceType)right).getTypes().iterator();
+            for (DataType leftType : ((ChoiceType)left).getTypes()) {
+                if (!rightTypes.hasNext() || leftType != rightTypes.next()) {
+                    return false;
+                }
+            }
+
+            return !rightTypes.hasNext();
+        }
+
+        if (left instanceof TupleType && right instanceof TupleType) {
+            // Equal tuple types have the same element names, in any order
+            for (TupleTypeElement leftElement : ((TupleType)left).getElements()) {
+                boolean found = false;
+                for (TupleTypeElement rightElement : ((TupleType)right).getElements()) {
+                    if (leftElement.getName().equals(rightElement.getName())) {
+                        found = leftElement.getType() == rightElement.getType();
+                        break;
+                    }
+                }
+
+                if (!found) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        return false;
+    }
+}
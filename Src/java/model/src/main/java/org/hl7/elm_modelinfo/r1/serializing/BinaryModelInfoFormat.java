@@ -0,0 +1,120 @@
+package org.hl7.elm_modelinfo.r1.serializing;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+Describes the binary model info format shared by BinaryModelInfoWriter and BinaryModelInfoReader.
+
+The format is a header (MAGIC, VERSION), followed by the root ModelInfo object. Strings and classes are written in full
+the first time they occur, and as a reference to that first occurrence afterwards. The first occurrence of a class lists
+the names and kinds of its fields, so that a reader can reject content written for a different version of the model info
+classes. Objects are then written as the values of their fields, in that order.
+
+Values are encoded by field kind:
+    STRING, ENUM: a string reference (see below), enums by name
+    BOOLEAN: a byte, 0 for null, 1 for false, 2 for true
+    INTEGER: a byte, 0 for null, 1 followed by the int value
+    LIST: a varint, 0 for null, otherwise the size + 1, followed by the elements as objects
+    OBJECT: a class reference (see below), followed by the values of the fields of that class
+
+References are varints: 0 for null, 1 for a new string or class that follows, and the index + 2 of a string or class
+that has already been written.
+ */
+class BinaryModelInfoFormat {
+    static final int MAGIC = 0x43514d49; // "CQMI"
+    static final int VERSION = 1;
+
+    static final int NULL_REFERENCE = 0;
+    static final int NEW_REFERENCE = 1;
+    static final int FIRST_INDEX = 2;
+
+    enum FieldKind {
+        STRING,
+        BOOLEAN,
+        INTEGER,
+        ENUM,
+        LIST,
+        OBJECT
+    }
+
+    static class FieldLayout {
+        private final Field field;
+        private final FieldKind kind;
+
+        FieldLayout(Field field, FieldKind kind) {
+            this.field = field;
+            this.kind = kind;
+        }
+
+        Field getField() {
+            return field;
+        }
+
+        FieldKind getKind() {
+            return kind;
+        }
+    }
+
+    private static final Map<Class<?>, List<FieldLayout>> layouts = new ConcurrentHashMap<>();
+
+    /*
+    Returns the serialized fields of the given model info class: all instance fields, including inherited fields, base
+    class fields first, each class's fields ordered by name.
+     */
+    static List<FieldLayout> getLayout(Class<?> type) {
+        return layouts.computeIfAbsent(type, BinaryModelInfoFormat::buildLayout);
+    }
+
+    private static List<FieldLayout> buildLayout(Class<?> type) {
+        List<FieldLayout> result = new ArrayList<>();
+        if (type.getSuperclass() != null && type.getSuperclass() != Object.class) {
+            result.addAll(getLayout(type.getSuperclass()));
+        }
+
+        List<Field> fields = new ArrayList<>();
+        for (Field field : type.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) && !field.isSynthetic()) {
+                fields.add(field);
+            }
+        }
+        fields.sort(Comparator.comparing(Field::getName));
+
+        for (Field field : fields) {
+            field.setAccessible(true);
+            result.add(new FieldLayout(field, getKind(field)));
+        }
+
+        return result;
+    }
+
+    private static FieldKind getKind(Field field) {
+        Class<?> fieldType = field.getType();
+        if (fieldType == String.class) {
+            return FieldKind.STRING;
+        }
+        if (fieldType == Boolean.class) {
+            return FieldKind.BOOLEAN;
+        }
+        if (fieldType == Integer.class) {
+            return FieldKind.INTEGER;
+        }
+        if (fieldType.isEnum()) {
+            return FieldKind.ENUM;
+        }
+        if (List.class.isAssignableFrom(fieldType)) {
+            return FieldKind.LIST;
+        }
+        if (fieldType.isPrimitive() || fieldType.isArray() || !fieldType.getPackage().getName().startsWith("org.hl7.elm_modelinfo")) {
+            throw new IllegalArgumentException(String.format("Field %s.%s of type %s is not supported by the binary model info format.",
+                    field.getDeclaringClass().getName(), field.getName(), fieldType.getName()));
+        }
+
+        return FieldKind.OBJECT;
+    }
+}
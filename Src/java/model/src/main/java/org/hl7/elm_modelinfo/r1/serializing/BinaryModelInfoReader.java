@@ -0,0 +1,225 @@
+package org.hl7.elm_modelinfo.r1.serializing;
+
+import org.hl7.elm_modelinfo.r1.ModelInfo;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hl7.elm_modelinfo.r1.serializing.BinaryModelInfoFormat.*;
+
+/**
+ * Reads model info written in the binary model info format by BinaryModelInfoWriter. The format is a compact encoding
+ * of the model info object graph that can be read without XML parsing. It is only readable with the same version of the
+ * model info classes it was written with, content written with a different version is rejected with an IOException.
+ */
+public class BinaryModelInfoReader {
+    private final DataInputStream in;
+    private final List<String> strings = new ArrayList<>();
+    private final List<ClassReader> classes = new ArrayList<>();
+
+    private static class ClassReader {
+        private final Constructor<?> constructor;
+        private final List<FieldLayout> layout;
+
+        ClassReader(Constructor<?> constructor, List<FieldLayout> layout) {
+            this.constructor = constructor;
+            this.layout = layout;
+        }
+    }
+
+    private BinaryModelInfoReader(InputStream in) {
+        this.in = new DataInputStream(new BufferedInputStream(in));
+    }
+
+    public static ModelInfo read(InputStream in) throws IOException {
+        if (in == null) {
+            throw new IllegalArgumentException("in is null");
+        }
+
+        BinaryModelInfoReader reader = new BinaryModelInfoReader(in);
+        if (reader.in.readInt() != MAGIC) {
+            throw new IOException("Content is not in the binary model info format.");
+        }
+
+        int version = reader.in.readInt();
+        if (version != VERSION) {
+            throw new IOException(String.format("Unsupported binary model info format version %d.", version));
+        }
+
+        Object result = reader.readObject();
+        if (!(result instanceof ModelInfo)) {
+            throw new IOException("Content does not contain model info.");
+        }
+
+        return (ModelInfo)result;
+    }
+
+    private int readVarInt() throws IOException {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            result |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+
+        throw new IOException("Malformed binary model info content.");
+    }
+
+    private String readString() throws IOException {
+        int reference = readVarInt();
+        if (reference == NULL_REFERENCE) {
+            return null;
+        }
+
+        if (reference == NEW_REFERENCE) {
+            int length = readVarInt();
+            if (length < 0) {
+                throw new IOException("Malformed binary model info content.");
+            }
+
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            String result = new String(bytes, StandardCharsets.UTF_8);
+            strings.add(result);
+            return result;
+        }
+
+        int index = reference - FIRST_INDEX;
+        if (index < 0 || index >= strings.size()) {
+            throw new IOException("Malformed binary model info content.");
+        }
+
+        return strings.get(index);
+    }
+
+    private ClassReader readClass(int reference) throws IOException {
+        if (reference != NEW_REFERENCE) {
+            int index = reference - FIRST_INDEX;
+            if (index < 0 || index >= classes.size()) {
+                throw new IOException("Malformed binary model info content.");
+            }
+
+            return classes.get(index);
+        }
+
+        String className = readString();
+        Class<?> type;
+        try {
+            type = Class.forName(className, false, ModelInfo.class.getClassLoader());
+        }
+        catch (ClassNotFoundException e) {
+            throw new IOException(String.format("Unknown model info class %s.", className), e);
+        }
+
+        // Only model info classes are instantiated
+        if (type.getPackage() != ModelInfo.class.getPackage()) {
+            throw new IOException(String.format("Class %s is not a model info class.", className));
+        }
+
+        List<FieldLayout> layout = getLayout(type);
+        int fieldCount = readVarInt();
+        if (fieldCount != layout.size()) {
+            throw new IOException(String.format("Binary model info content does not match model info class %s.", className));
+        }
+
+        for (FieldLayout field : layout) {
+            String fieldName = readString();
+            int kind = in.readUnsignedByte();
+            if (!field.getField().getName().equals(fieldName) || field.getKind().ordinal() != kind) {
+                throw new IOException(String.format("Binary model info content does not match model info class %s.", className));
+            }
+        }
+
+        try {
+            ClassReader result = new ClassReader(type.getDeclaredConstructor(), layout);
+            classes.add(result);
+            return result;
+        }
+        catch (NoSuchMethodException e) {
+            throw new IOException(String.format("Model info class %s cannot be instantiated.", className), e);
+        }
+    }
+
+    private Object readObject() throws IOException {
+        int reference = readVarInt();
+        if (reference == NULL_REFERENCE) {
+            return null;
+        }
+
+        ClassReader classReader = readClass(reference);
+        Object result;
+        try {
+            result = classReader.constructor.newInstance();
+            for (FieldLayout field : classReader.layout) {
+                Object value = readValue(field);
+                if (value != null) {
+                    field.getField().set(result, value);
+                }
+            }
+        }
+        catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new IOException(String.format("Model info class %s cannot be instantiated.",
+                    classReader.constructor.getDeclaringClass().getName()), e);
+        }
+        catch (IllegalArgumentException e) {
+            throw new IOException("Malformed binary model info content.", e);
+        }
+
+        return result;
+    }
+
+    private Object readValue(FieldLayout field) throws IOException {
+        switch (field.getKind()) {
+            case STRING:
+                return readString();
+
+            case BOOLEAN:
+                int b = in.readUnsignedByte();
+                return b == 0 ? null : Boolean.valueOf(b == 2);
+
+            case INTEGER:
+                return in.readUnsignedByte() == 0 ? null : Integer.valueOf(in.readInt());
+
+            case ENUM:
+                String name = readString();
+                if (name == null) {
+                    return null;
+                }
+
+                @SuppressWarnings({ "unchecked", "rawtypes" })
+                Object result = Enum.valueOf((Class<? extends Enum>)field.getField().getType(), name);
+                return result;
+
+            case LIST:
+                int size = readVarInt();
+                if (size < 0) {
+                    throw new IOException("Malformed binary model info content.");
+                }
+
+                if (size == 0) {
+                    return null;
+                }
+
+                List<Object> list = new ArrayList<>(size - 1);
+                for (int i = 1; i < size; i++) {
+                    list.add(readObject());
+                }
+                return list;
+
+            case OBJECT:
+                return readObject();
+
+            default:
+                throw new IllegalStateException(field.getKind().toString());
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package org.hl7.elm_modelinfo.r1.serializing;
+
+import org.hl7.elm_modelinfo.r1.ModelInfo;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hl7.elm_modelinfo.r1.serializing.BinaryModelInfoFormat.*;
+
+/**
+ * Writes model info in the binary model info format, see BinaryModelInfoReader.
+ */
+public class BinaryModelInfoWriter {
+    private final DataOutputStream out;
+    private final Map<String, Integer> strings = new HashMap<>();
+    private final Map<Class<?>, Integer> classes = new HashMap<>();
+
+    private BinaryModelInfoWriter(OutputStream out) {
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+    }
+
+    public static void write(ModelInfo modelInfo, OutputStream out) throws IOException {
+        if (modelInfo == null) {
+            throw new IllegalArgumentException("modelInfo is null");
+        }
+
+        BinaryModelInfoWriter writer = new BinaryModelInfoWriter(out);
+        writer.out.writeInt(MAGIC);
+        writer.out.writeInt(VERSION);
+        writer.writeObject(modelInfo);
+        writer.out.flush();
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            writeVarInt(NULL_REFERENCE);
+            return;
+        }
+
+        Integer index = strings.get(value);
+        if (index != null) {
+            writeVarInt(index + FIRST_INDEX);
+            return;
+        }
+
+        strings.put(value, strings.size());
+        writeVarInt(NEW_REFERENCE);
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private void writeClass(Class<?> type) throws IOException {
+        Integer index = classes.get(type);
+        if (index != null) {
+            writeVarInt(index + FIRST_INDEX);
+            return;
+        }
+
+        classes.put(type, classes.size());
+        writeVarInt(NEW_REFERENCE);
+        writeString(type.getName());
+        List<FieldLayout> layout = getLayout(type);
+        writeVarInt(layout.size());
+        for (FieldLayout field : layout) {
+            writeString(field.getField().getName());
+            out.writeByte(field.getKind().ordinal());
+        }
+    }
+
+    private void writeObject(Object value) throws IOException {
+        if (value == null) {
+            writeVarInt(NULL_REFERENCE);
+            return;
+        }
+
+        writeClass(value.getClass());
+        for (FieldLayout field : getLayout(value.getClass())) {
+            Object fieldValue;
+            try {
+                fieldValue = field.getField().get(value);
+            }
+            catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+
+            switch (field.getKind()) {
+                case STRING:
+                    writeString((String)fieldValue);
+                    break;
+
+                case BOOLEAN:
+                    out.writeByte(fieldValue == null ? 0 : ((Boolean)fieldValue ? 2 : 1));
+                    break;
+
+                case INTEGER:
+                    if (fieldValue == null) {
+                        out.writeByte(0);
+                    }
+                    else {
+                        out.writeByte(1);
+                        out.writeInt((Integer)fieldValue);
+                    }
+                    break;
+
+                case ENUM:
+                    writeString(fieldValue == null ? null : ((Enum<?>)fieldValue).name());
+                    break;
+
+                case LIST:
+                    if (fieldValue == null) {
+                        writeVarInt(0);
+                    }
+                    else {
+                        List<?> list = (List<?>)fieldValue;
+                        writeVarInt(list.size() + 1);
+                        for (Object element : list) {
+                            writeObject(element);
+                        }
+                    }
+                    break;
+
+                case OBJECT:
+                    writeObject(fieldValue);
+                    break;
+            }
+        }
+    }
+}
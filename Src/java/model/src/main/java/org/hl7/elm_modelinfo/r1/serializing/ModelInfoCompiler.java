@@ -0,0 +1,71 @@
+package org.hl7.elm_modelinfo.r1.serializing;
+
+import org.hl7.elm_modelinfo.r1.ModelInfo;
+
+import javax.xml.bind.JAXB;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Precompiles the model info resources in a directory into the binary model info format. Used by the build to package
+ * the binary form alongside the XML model info resources (see ModelInfoResources).
+ *
+ * Usage: ModelInfoCompiler inputDirectory outputDirectory
+ *
+ * Every file named *modelinfo*.xml under the input directory is written to the same relative path under the output
+ * directory, with a .bin extension.
+ */
+public class ModelInfoCompiler {
+    public static void compile(Path inputFile, Path outputFile) throws IOException {
+        ModelInfo modelInfo;
+        try (InputStream is = Files.newInputStream(inputFile)) {
+            modelInfo = JAXB.unmarshal(is, ModelInfo.class);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryModelInfoWriter.write(modelInfo, bytes);
+
+        // Verify the binary form reads back to the same model info before writing it
+        ModelInfo roundTripped = BinaryModelInfoReader.read(new ByteArrayInputStream(bytes.toByteArray()));
+        if (!modelInfo.equals(roundTripped)) {
+            throw new IOException(String.format("Binary form of model info %s does not match the model info.", inputFile));
+        }
+
+        if (outputFile.getParent() != null) {
+            Files.createDirectories(outputFile.getParent());
+        }
+        Files.write(outputFile, bytes.toByteArray());
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("Usage: ModelInfoCompiler inputDirectory outputDirectory");
+        }
+
+        Path inputDirectory = Paths.get(args[0]);
+        Path outputDirectory = Paths.get(args[1]);
+        List<Path> inputFiles;
+        try (Stream<Path> paths = Files.walk(inputDirectory)) {
+            inputFiles = paths
+                    .filter(p -> {
+                        String fileName = p.getFileName().toString();
+                        return fileName.contains("modelinfo") && fileName.endsWith(".xml");
+                    })
+                    .collect(Collectors.toList());
+        }
+
+        for (Path inputFile : inputFiles) {
+            Path relativePath = inputDirectory.relativize(inputFile);
+            Path outputFile = outputDirectory.resolve(ModelInfoResources.getBinaryResourceName(relativePath.toString()));
+            compile(inputFile, outputFile);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package org.hl7.elm_modelinfo.r1.serializing;
+
+import org.hl7.elm_modelinfo.r1.ModelInfo;
+
+import javax.xml.bind.JAXB;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Loads model info resources. A model info resource may be accompanied by a precompiled binary form (see
+ * ModelInfoCompiler), which is loaded in preference to the XML as it can be read much faster. The XML is used if there
+ * is no binary form, or if it cannot be read, in which case a warning is logged.
+ */
+public class ModelInfoResources {
+    private static final Logger logger = Logger.getLogger(ModelInfoResources.class.getName());
+
+    public static String getBinaryResourceName(String resourceName) {
+        if (resourceName.endsWith(".xml")) {
+            return resourceName.substring(0, resourceName.length() - ".xml".length()) + ".bin";
+        }
+
+        return resourceName + ".bin";
+    }
+
+    public static ModelInfo load(Class<?> resourceClass, String resourceName) {
+        return load(resourceName, resourceClass::getResourceAsStream);
+    }
+
+    static ModelInfo load(String resourceName, Function<String, InputStream> resources) {
+        String binaryResourceName = getBinaryResourceName(resourceName);
+        InputStream binary = resources.apply(binaryResourceName);
+        if (binary != null) {
+            try (InputStream is = binary) {
+                return BinaryModelInfoReader.read(is);
+            }
+            catch (IOException | RuntimeException e) {
+                // e.g. the binary form was written for a different version of the model info classes
+                logger.log(Level.WARNING, String.format("Could not read binary model info %s, loading %s instead: %s",
+                        binaryResourceName, resourceName, e.getMessage()), e);
+            }
+        }
+
+        return JAXB.unmarshal(resources.apply(resourceName), ModelInfo.class);
+    }
+}
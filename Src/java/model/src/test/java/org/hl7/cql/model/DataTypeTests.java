@@ -0,0 +1,111 @@
+package org.hl7.cql.model;
+
+import org.testng.annotations.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+public class DataTypeTests {
+
+    @Test
+    public void testSubTypeOfBaseTypes() {
+        ClassType resource = new ClassType("FHIR.Resource", null);
+        ClassType domainResource = new ClassType("FHIR.DomainResource", resource);
+        ClassType patient = new ClassType("FHIR.Patient", domainResource);
+        ClassType observation = new ClassType("FHIR.Observation", domainResource);
+
+        assertTrue(patient.isSubTypeOf(patient));
+        assertTrue(patient.isSubTypeOf(domainResource));
+        assertTrue(patient.isSubTypeOf(resource));
+        assertTrue(patient.isSubTypeOf(DataType.ANY));
+        assertFalse(patient.isSubTypeOf(observation));
+        assertFalse(resource.isSubTypeOf(patient));
+        assertFalse(patient.isSubTypeOf(null));
+
+        // Equal types resolve to the same ancestors
+        assertTrue(patient.isSubTypeOf(new ClassType("FHIR.Resource", null)));
+
+        assertTrue(resource.isSuperTypeOf(patient));
+        assertTrue(DataType.ANY.isSuperTypeOf(patient));
+        assertTrue(DataType.ANY.isSuperTypeOf(DataType.ANY));
+        assertFalse(patient.isSuperTypeOf(resource));
+        assertFalse(observation.isSuperTypeOf(patient));
+        assertFalse(patient.isSuperTypeOf(null));
+    }
+
+    @Test
+    public void testTupleHashCodeAfterAddElement() {
+        SimpleType integer = new SimpleType("System.Integer");
+        SimpleType string = new SimpleType("System.String");
+
+        TupleType first = new TupleType(Arrays.asList(new TupleTypeElement("a", integer)));
+        TupleType second = new TupleType(Arrays.asList(new TupleTypeElement("b", string), new TupleTypeElement("a", integer)));
+        assertNotEquals(first, second);
+
+        first.addElement(new TupleTypeElement("b", string));
+        assertEquals(first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+    }
+
+    @Test
+    public void testInternedTypes() {
+        SimpleType integer = new SimpleType("System.Integer");
+        SimpleType string = new SimpleType("System.String");
+
+        assertSame(TypeInterner.listOf(integer), TypeInterner.listOf(integer));
+        assertSame(TypeInterner.intervalOf(integer), TypeInterner.intervalOf(integer));
+        assertSame(TypeInterner.listOf(integer).getElementType(), integer);
+        assertEquals(TypeInterner.listOf(integer), new ListType(integer));
+
+        // Equal components that are distinct instances are not merged
+        SimpleType otherInteger = new SimpleType("System.Integer");
+        assertNotSame(TypeInterner.listOf(integer), TypeInterner.listOf(otherInteger));
+        assertSame(TypeInterner.listOf(otherInteger).getElementType(), otherInteger);
+
+        ChoiceType choice = TypeInterner.choiceOf(Arrays.asList(integer, string));
+        assertSame(choice, TypeInterner.choiceOf(Arrays.asList(integer, string)));
+        assertNotSame(choice, TypeInterner.choiceOf(Arrays.asList(otherInteger, string)));
+
+        TupleType tuple = TypeInterner.intern(new TupleType(Arrays.asList(new TupleTypeElement("a", integer), new TupleTypeElement("b", string))));
+        assertSame(tuple, TypeInterner.intern(new TupleType(Arrays.asList(new TupleTypeElement("b", string), new TupleTypeElement("a", integer)))));
+        assertNotSame(tuple, TypeInterner.intern(new TupleType(Arrays.asList(new TupleTypeElement("a", otherInteger), new TupleTypeElement("b", string)))));
+    }
+
+    @Test
+    public void testClassTypeMemberIndex() {
+        SimpleType integer = new SimpleType("System.Integer");
+        SimpleType string = new SimpleType("System.String");
+
+        ClassType base = new ClassType("Test.Base", null);
+        base.addElement(new ClassTypeElement("id", string));
+        base.addElement(new ClassTypeElement("value", DataType.ANY));
+        base.addSearch(new SearchType("identifier", "id", string));
+
+        ClassType derived = new ClassType("Test.Derived", base);
+        derived.addElement(new ClassTypeElement("value", integer));
+        derived.addElement(new ClassTypeElement("name", string));
+
+        assertSame(derived.resolveElement("id"), base.resolveElement("id"));
+        assertEquals(integer, derived.resolveElement("value").getType());
+        assertEquals(DataType.ANY, base.resolveElement("value").getType());
+        assertNull(base.resolveElement("name"));
+        assertNull(derived.resolveElement("missing"));
+        assertEquals("identifier", derived.resolveSearch("identifier").getName());
+        assertNull(derived.resolveSearch("id"));
+
+        assertEquals(Arrays.asList("id", "value", "name"), Arrays.asList(derived.getAllElements().stream().map(ClassTypeElement::getName).toArray()));
+
+        derived.addElement(new ClassTypeElement("status", string));
+        derived.addSearch(new SearchType("status", "status", string));
+        assertEquals(string, derived.resolveElement("status").getType());
+        assertEquals("status", derived.resolveSearch("status").getPath());
+
+        // Members added to the base type after the derived type has been used are found through the derived type
+        base.addElement(new ClassTypeElement("code", string));
+        base.addSearch(new SearchType("code", "code", string));
+        assertSame(derived.resolveElement("code"), base.resolveElement("code"));
+        assertSame(derived.resolveSearch("code"), base.resolveSearch("code"));
+        assertEquals(Arrays.asList("id", "value", "code", "name", "status"), Arrays.asList(derived.getAllElements().stream().map(ClassTypeElement::getName).toArray()));
+    }
+}
@@ -0,0 +1,123 @@
+package org.hl7.elm_modelinfo.r1.serializing;
+
+import org.hl7.cql.model.ModelInfoComparer;
+import org.hl7.elm_modelinfo.r1.ModelInfo;
+import org.testng.annotations.Test;
+
+import javax.xml.bind.JAXB;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ModelInfoResourcesTest {
+
+    private static final String SYSTEM_MODEL_INFO = "/org/hl7/elm/r1/system-modelinfo.xml";
+    private static final String FHIR_MODEL_INFO = "/org/hl7/cql/model/a-modelinfo.xml";
+
+    private static ModelInfo unmarshal(String resourceName) {
+        return JAXB.unmarshal(ModelInfoComparer.class.getResourceAsStream(resourceName), ModelInfo.class);
+    }
+
+    private static byte[] toBinary(ModelInfo modelInfo) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryModelInfoWriter.write(modelInfo, bytes);
+        return bytes.toByteArray();
+    }
+
+    /*
+    Loads the given model info resource with the given content for its binary form, returning the warnings logged
+     */
+    private static List<LogRecord> load(String resourceName, byte[] binary, ModelInfo expected) {
+        Map<String, byte[]> resources = new HashMap<>();
+        if (binary != null) {
+            resources.put(ModelInfoResources.getBinaryResourceName(resourceName), binary);
+        }
+
+        List<LogRecord> records = new ArrayList<>();
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                records.add(record);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        Logger logger = Logger.getLogger(ModelInfoResources.class.getName());
+        logger.addHandler(handler);
+        try {
+            ModelInfo modelInfo = ModelInfoResources.load(resourceName, name -> {
+                byte[] content = resources.get(name);
+                if (content != null) {
+                    return new ByteArrayInputStream(content);
+                }
+                return name.equals(resourceName) ? ModelInfoComparer.class.getResourceAsStream(name) : null;
+            });
+            assertThat(modelInfo, is(expected));
+        }
+        finally {
+            logger.removeHandler(handler);
+        }
+
+        return records;
+    }
+
+    @Test
+    public void testBinaryRoundTrip() throws IOException {
+        for (String resourceName : Arrays.asList(SYSTEM_MODEL_INFO, FHIR_MODEL_INFO)) {
+            ModelInfo modelInfo = unmarshal(resourceName);
+            ModelInfo roundTripped = BinaryModelInfoReader.read(new ByteArrayInputStream(toBinary(modelInfo)));
+            assertThat(roundTripped, not(sameInstance(modelInfo)));
+            assertThat(roundTripped, is(modelInfo));
+        }
+    }
+
+    @Test
+    public void testLoadBinary() throws IOException {
+        ModelInfo modelInfo = unmarshal(FHIR_MODEL_INFO);
+        assertThat(load(FHIR_MODEL_INFO, toBinary(modelInfo), modelInfo), empty());
+    }
+
+    @Test
+    public void testLoadWithoutBinary() {
+        assertThat(load(FHIR_MODEL_INFO, null, unmarshal(FHIR_MODEL_INFO)), empty());
+        assertThat(ModelInfoResources.load(ModelInfoComparer.class, SYSTEM_MODEL_INFO), is(unmarshal(SYSTEM_MODEL_INFO)));
+    }
+
+    @Test
+    public void testLoadCorruptBinary() throws IOException {
+        ModelInfo modelInfo = unmarshal(FHIR_MODEL_INFO);
+        byte[] binary = toBinary(modelInfo);
+
+        byte[] truncated = Arrays.copyOf(binary, binary.length / 2);
+        byte[] wrongVersion = binary.clone();
+        wrongVersion[7]++;
+        byte[] notBinary = "<modelInfo/>".getBytes(StandardCharsets.UTF_8);
+
+        for (byte[] content : Arrays.asList(truncated, wrongVersion, notBinary)) {
+            List<LogRecord> records = load(FHIR_MODEL_INFO, content, modelInfo);
+            assertThat(records.size(), is(1));
+            assertThat(records.get(0).getLevel(), is(Level.WARNING));
+            assertThat(records.get(0).getMessage(), containsString(ModelInfoResources.getBinaryResourceName(FHIR_MODEL_INFO)));
+        }
+    }
+}